@@ -0,0 +1,81 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.domain.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Committed balance reads of a few accounts, alone and next to a thread depositing to and
+ * withdrawing from the same accounts. Reads per millisecond should grow with the reading threads
+ * in both groups, and the writer should not slow down as readers are added.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AccountReadBenchmark {
+
+    @Param({"16"})
+    public int accounts;
+
+    private Account[] accountArray;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        accountArray = new Account[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountArray[i] = new Account("account-" + i, BigDecimal.TEN);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(ThreadParams threadParams) {
+            next = threadParams.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    @Group("reads")
+    @GroupThreads(4)
+    public long readOnly(ThreadState state) {
+        return nextAccount(state).readBalanceUnits();
+    }
+
+    @Benchmark
+    @Group("readsNextToWrites")
+    @GroupThreads(3)
+    public long read(ThreadState state) {
+        return nextAccount(state).readBalanceUnits();
+    }
+
+    @Benchmark
+    @Group("readsNextToWrites")
+    @GroupThreads(1)
+    public boolean write(ThreadState state) {
+        Account account = nextAccount(state);
+        account.deposit(1);
+        return account.withdraw(1);
+    }
+
+    private Account nextAccount(ThreadState state) {
+        state.next = state.next + 1 == accounts ? 0 : state.next + 1;
+        return accountArray[state.next];
+    }
+}
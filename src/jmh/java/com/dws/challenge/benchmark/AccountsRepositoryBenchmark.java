@@ -0,0 +1,79 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.offheap.OffHeapAccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AccountsRepositoryBenchmark {
+
+    private static final int MAX_CREATED_ACCOUNTS = 10_000_000;
+
+    @Param({"10000", "1000000"})
+    public int accounts;
+
+    @Param({"MEMORY", "OFF_HEAP"})
+    public RepositoryProperties.Type type;
+
+    private AccountsRepository accountsRepository;
+    private String[] accountIds;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if (type == RepositoryProperties.Type.OFF_HEAP) {
+            var properties = new RepositoryProperties();
+            properties.getOffHeap().setCapacity(accounts + MAX_CREATED_ACCOUNTS);
+            properties.getOffHeap().setMaxIdBytes(40);
+            accountsRepository = new OffHeapAccountsRepository(properties);
+        } else {
+            accountsRepository = new AccountsRepositoryInMemory();
+        }
+        accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = "account-" + i;
+            accountsRepository.createAccount(new Account(accountIds[i], BigDecimal.TEN));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private String idPrefix;
+        private long created;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(ThreadParams threadParams) {
+            idPrefix = "new-" + threadParams.getThreadIndex() + "-" + System.nanoTime() + "-";
+            next = threadParams.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    public Account getAccount(ThreadState state) {
+        state.next = state.next + 1 == accounts ? 0 : state.next + 1;
+        return accountsRepository.getAccount(accountIds[state.next]);
+    }
+
+    @Benchmark
+    public void createAccount(ThreadState state) {
+        accountsRepository.createAccount(new Account(state.idPrefix + state.created++, BigDecimal.TEN));
+    }
+}
@@ -0,0 +1,101 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResponse;
+import com.dws.challenge.web.TransferJsonCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * (De)serialization of the transfer DTOs as done for every transfer request:
+ * <ul>
+ *     <li>{@code DATABIND} - {@code ObjectMapper.readValue} and {@code writeValueAsBytes}, which
+ *     look up the type on every call, like the generic Spring MVC Jackson converter.</li>
+ *     <li>{@code BLACKBIRD} - an {@code ObjectReader} and {@code ObjectWriter} built once from an
+ *     {@code ObjectMapper} with the Blackbird module.</li>
+ *     <li>{@code STREAMING} - the hand-written {@link TransferJsonCodec}.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferJsonBenchmark {
+
+    public enum Codec {
+        DATABIND,
+        BLACKBIRD,
+        STREAMING
+    }
+
+    @Param
+    private Codec codec;
+
+    private final byte[] requestJson = "{\"account_id_from\":\"account-1\",\"account_id_to\":\"account-2\",\"amount\":123.45}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final TransferResponse response = TransferResponse.builder()
+            .transferId(UUID.randomUUID())
+            .accountIdFrom("account-1")
+            .accountIdTo("account-2")
+            .amount(new BigDecimal("123.45"))
+            .build();
+
+    private ObjectMapper objectMapper;
+    private ObjectReader requestReader;
+    private ObjectWriter responseWriter;
+    private TransferJsonCodec transferJsonCodec;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        if (codec == Codec.BLACKBIRD) {
+            objectMapper.registerModule(new BlackbirdModule());
+        }
+        requestReader = objectMapper.readerFor(TransferRequest.class);
+        responseWriter = objectMapper.writerFor(TransferResponse.class);
+        transferJsonCodec = new TransferJsonCodec(objectMapper.getFactory());
+    }
+
+    @Benchmark
+    public TransferRequest readTransferRequest() throws IOException {
+        switch (codec) {
+            case DATABIND:
+                return objectMapper.readValue(requestJson, TransferRequest.class);
+            case BLACKBIRD:
+                return requestReader.readValue(requestJson);
+            default:
+                return transferJsonCodec.readRequest(requestJson);
+        }
+    }
+
+    @Benchmark
+    public byte[] writeTransferResponse() throws IOException {
+        switch (codec) {
+            case DATABIND:
+                return objectMapper.writeValueAsBytes(response);
+            case BLACKBIRD:
+                return responseWriter.writeValueAsBytes(response);
+            default:
+                var out = new ByteArrayOutputStream(128);
+                transferJsonCodec.writeResponse(response, out);
+                return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.dws.challenge.benchmark;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.TransferResponse;
+import com.dws.challenge.engine.HotAccountDetector;
+import com.dws.challenge.engine.LockFreeTransferEngine;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.engine.OptimisticTransferEngine;
+import com.dws.challenge.engine.ShardedTransferEngine;
+import com.dws.challenge.engine.SnapshotBarrier;
+import com.dws.challenge.engine.TransferEngine;
+import com.dws.challenge.exception.CannotExecuteTransferException;
+import com.dws.challenge.mapper.TransferMapper;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.TransferJournal;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link TransferService#transfer} per engine and workload. Run with
+ * {@code -Pjmh.threads=1..64} to see how each engine scales under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TransferServiceBenchmark {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000);
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+    private static final int PAIRS_PER_THREAD = 1 << 16;
+
+    @Param({"LOCKING", "SHARDED", "LOCK_FREE", "OPTIMISTIC"})
+    public TransferProperties.Engine engine;
+
+    @Param({"UNIFORM", "ZIPF", "TWO_HOT_ACCOUNTS"})
+    public Workload workload;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private TransferEngine transferEngine;
+    private TransferJournal transferJournal;
+    private TransferService transferService;
+    private String[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AccountsRepository accountsRepository = new AccountsRepositoryInMemory();
+        accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = "account-" + i;
+            accountsRepository.createAccount(new Account(accountIds[i], INITIAL_BALANCE));
+        }
+
+        var transferMetrics = new TransferMetrics(new SimpleMeterRegistry());
+        var properties = new TransferProperties();
+        properties.setEngine(engine);
+        switch (engine) {
+            case SHARDED:
+                transferEngine = new ShardedTransferEngine(properties, accountsRepository, transferMetrics, new SnapshotBarrier());
+                break;
+            case LOCK_FREE:
+                transferEngine = new LockFreeTransferEngine(properties, accountsRepository, transferMetrics, new SnapshotBarrier());
+                break;
+            case OPTIMISTIC:
+                transferEngine = new OptimisticTransferEngine(properties, accountsRepository, transferMetrics, new SnapshotBarrier());
+                break;
+            default:
+                transferEngine = new LockingTransferEngine(properties, accountsRepository, transferMetrics,
+                        new HotAccountDetector(properties), new SnapshotBarrier());
+        }
+        NotificationService notificationService = (account, transferDescription) -> {
+        };
+        transferJournal = new TransferJournal();
+        transferService = new TransferService(accountsRepository, transferEngine, notificationService, new TransferMapper(), transferJournal,
+                transferMetrics, Optional.empty());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        transferJournal.destroy();
+        if (transferEngine instanceof DisposableBean) {
+            ((DisposableBean) transferEngine).destroy();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pairs {
+
+        private int[] pairs;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(TransferServiceBenchmark benchmark, ThreadParams threadParams) {
+            var random = new SplittableRandom(threadParams.getThreadIndex());
+            pairs = benchmark.workload.pairs(benchmark.accounts, PAIRS_PER_THREAD, random);
+        }
+
+        private int nextPair() {
+            int pair = next;
+            next = (next + 2) & (pairs.length - 1);
+            return pair;
+        }
+    }
+
+    @Benchmark
+    public TransferResponse transfer(Pairs pairs) {
+        int pair = pairs.nextPair();
+        try {
+            return transferService.transfer(accountIds[pairs.pairs[pair]], accountIds[pairs.pairs[pair + 1]], AMOUNT);
+        } catch (CannotExecuteTransferException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.dws.challenge.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Distributions of the accounts taking part in a transfer. Pairs are generated up front so
+ * that random number generation is not part of the measurement.
+ */
+public enum Workload {
+
+    /**
+     * Every account is equally likely to be the source or the destination.
+     */
+    UNIFORM {
+        @Override
+        int[] pairs(int accounts, int count, SplittableRandom random) {
+            int[] pairs = new int[count * 2];
+            for (int i = 0; i < count; i++) {
+                int from = random.nextInt(accounts);
+                pairs[2 * i] = from;
+                pairs[2 * i + 1] = other(from, random.nextInt(accounts - 1));
+            }
+            return pairs;
+        }
+    },
+
+    /**
+     * Accounts are picked with a Zipf distribution (exponent 1), so a few accounts take most transfers.
+     */
+    ZIPF {
+        @Override
+        int[] pairs(int accounts, int count, SplittableRandom random) {
+            double[] cumulative = new double[accounts];
+            double sum = 0;
+            for (int i = 0; i < accounts; i++) {
+                sum += 1.0 / (i + 1);
+                cumulative[i] = sum;
+            }
+            int[] pairs = new int[count * 2];
+            for (int i = 0; i < count; i++) {
+                int from = sample(cumulative, random.nextDouble() * sum);
+                int to = sample(cumulative, random.nextDouble() * sum);
+                pairs[2 * i] = from;
+                pairs[2 * i + 1] = to == from ? (from + 1) % accounts : to;
+            }
+            return pairs;
+        }
+
+        private int sample(double[] cumulative, double value) {
+            int low = 0;
+            int high = cumulative.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulative[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    },
+
+    /**
+     * Every transfer moves money between the same two accounts, in alternating directions.
+     */
+    TWO_HOT_ACCOUNTS {
+        @Override
+        int[] pairs(int accounts, int count, SplittableRandom random) {
+            int[] pairs = new int[count * 2];
+            for (int i = 0; i < count; i++) {
+                pairs[2 * i] = i & 1;
+                pairs[2 * i + 1] = (i + 1) & 1;
+            }
+            return pairs;
+        }
+    };
+
+    /**
+     * @return {@code count} pairs of account indexes, flattened as {@code [from0, to0, from1, to1, ...]}
+     */
+    abstract int[] pairs(int accounts, int count, SplittableRandom random);
+
+    private static int other(int from, int candidate) {
+        return candidate >= from ? candidate + 1 : candidate;
+    }
+}
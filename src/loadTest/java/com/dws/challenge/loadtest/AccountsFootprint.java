@@ -0,0 +1,155 @@
+package com.dws.challenge.loadtest;
+
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.offheap.OffHeapAccountsRepository;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Fills each accounts repository with the same accounts and reports the memory taken per account
+ * and how long garbage collection pauses while the accounts are looked up.
+ * <p>
+ * Arguments: {@code accounts seconds}, defaults {@code 50000000 30}. Run with
+ * {@code ./gradlew accountsFootprint -Pfootprint.accounts=50000000}.
+ */
+public final class AccountsFootprint {
+
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(100);
+
+    private final int accounts;
+    private final int seconds;
+
+    private AccountsFootprint(int accounts, int seconds) {
+        this.accounts = accounts;
+        this.seconds = seconds;
+    }
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+        var footprint = new AccountsFootprint(accounts, seconds);
+        var results = List.of(footprint.run("MEMORY"), footprint.run("OFF_HEAP"));
+
+        System.out.printf("%n%d accounts, %d s of lookups%n", accounts, seconds);
+        System.out.printf("%-9s %12s %12s %12s %10s %12s %12s%n",
+                "type", "heap B/acc", "direct B/acc", "full GC ms", "young GCs", "avg pause ms", "max pause ms");
+        for (Result result : results) {
+            System.out.printf("%-9s %12.1f %12.1f %12d %10d %12.2f %12d%n", result.type,
+                    (double) result.heapBytes / accounts, (double) result.directBytes / accounts, result.fullGcMillis,
+                    result.collections, result.collections == 0 ? 0.0 : (double) result.collectionMillis / result.collections,
+                    result.maxPauseMillis);
+        }
+    }
+
+    private Result run(String type) {
+        long heapBefore = usedHeapAfterGc();
+        long directBefore = usedDirectMemory();
+
+        AccountsRepository repository = type.equals("MEMORY") ? new AccountsRepositoryInMemory() : offHeapRepository();
+        for (int i = 0; i < accounts; i++) {
+            repository.createAccount(new Account(accountId(i), INITIAL_BALANCE));
+        }
+
+        var result = new Result(type);
+        result.heapBytes = usedHeapAfterGc() - heapBefore;
+        result.directBytes = usedDirectMemory() - directBefore;
+
+        long started = System.nanoTime();
+        System.gc();
+        result.fullGcMillis = (System.nanoTime() - started) / 1_000_000;
+
+        // Looks accounts up, allocating an id per lookup as a request would, and samples the pauses this causes.
+        long collectionsBefore = collectionCount();
+        long collectionMillisBefore = collectionMillis();
+        var random = new SplittableRandom(42);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long checksum = 0;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 10_000; i++) {
+                checksum += repository.getAccount(accountId(random.nextInt(accounts))).getBalanceUnits();
+            }
+            long collections = collectionCount();
+            long millis = collectionMillis();
+            long newCollections = collections - collectionsBefore - result.collections;
+            if (newCollections > 0) {
+                long pause = (millis - collectionMillisBefore - result.collectionMillis) / newCollections;
+                result.maxPauseMillis = Math.max(result.maxPauseMillis, pause);
+                result.collections = collections - collectionsBefore;
+                result.collectionMillis = millis - collectionMillisBefore;
+            }
+        }
+        if (checksum == 42) {
+            System.out.println();
+        }
+
+        repository.clearAccounts();
+        return result;
+    }
+
+    private OffHeapAccountsRepository offHeapRepository() {
+        var properties = new RepositoryProperties();
+        properties.getOffHeap().setCapacity(accounts);
+        properties.getOffHeap().setMaxIdBytes(20);
+        return new OffHeapAccountsRepository(properties);
+    }
+
+    private static String accountId(int i) {
+        return "account-" + i;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirectMemory() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                used += pool.getMemoryUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += collector.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static long collectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += collector.getCollectionTime();
+        }
+        return millis;
+    }
+
+    private static final class Result {
+        private final String type;
+        private long heapBytes;
+        private long directBytes;
+        private long fullGcMillis;
+        private long collections;
+        private long collectionMillis;
+        private long maxPauseMillis;
+
+        private Result(String type) {
+            this.type = type;
+        }
+    }
+}
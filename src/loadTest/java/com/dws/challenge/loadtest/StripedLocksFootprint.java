@@ -0,0 +1,46 @@
+package com.dws.challenge.loadtest;
+
+import com.dws.challenge.engine.StripedLocks;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Locks and unlocks the stripe of each of many distinct accounts and reports how much the heap grew,
+ * which should not depend on the number of accounts.
+ * <p>
+ * Arguments: {@code accounts stripes}, defaults {@code 10000000 4096}. Run with
+ * {@code ./gradlew stripedLocksFootprint -Pfootprint.accounts=10000000}.
+ */
+public final class StripedLocksFootprint {
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int stripes = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+        var locks = new StripedLocks(stripes, false);
+        Set<Lock> distinctLocks = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        long heapBefore = usedHeapAfterGc();
+        for (int i = 0; i < accounts; i++) {
+            Lock lock = locks.lock(locks.stripeOf("account-" + i));
+            lock.lock();
+            lock.unlock();
+            distinctLocks.add(lock);
+        }
+        long heapGrowth = usedHeapAfterGc() - heapBefore;
+
+        System.out.printf("%d accounts locked using %d of %d locks, heap grew by %d KB%n",
+                accounts, distinctLocks.size(), locks.size(), heapGrowth / 1024);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
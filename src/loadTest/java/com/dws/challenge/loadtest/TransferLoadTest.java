@@ -0,0 +1,163 @@
+package com.dws.challenge.loadtest;
+
+import com.dws.challenge.ChallengeApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Starts the application once per execution mode and measures transfer latency with many
+ * concurrent clients, each sending its next transfer as soon as the previous one is answered.
+ * <p>
+ * Arguments: {@code clients requestsPerClient accounts engine}, defaults {@code 10000 20 1000 SHARDED}.
+ * Run with {@code ./gradlew loadTest -PloadTest.clients=10000}; the number of open files may have to
+ * be raised ({@code ulimit -n}) for that many connections.
+ */
+public final class TransferLoadTest {
+
+    private static final String[] MODES = {"SERVLET", "ASYNC"};
+
+    private final int clients;
+    private final int requestsPerClient;
+    private final int accounts;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+
+    private TransferLoadTest(int clients, int requestsPerClient, int accounts) {
+        this.clients = clients;
+        this.requestsPerClient = requestsPerClient;
+        this.accounts = accounts;
+    }
+
+    public static void main(String[] args) {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int accounts = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        String engine = args.length > 3 ? args[3] : "SHARDED";
+
+        var loadTest = new TransferLoadTest(clients, requestsPerClient, accounts);
+        var results = new Result[MODES.length];
+        for (int i = 0; i < MODES.length; i++) {
+            results[i] = loadTest.run(MODES[i], engine);
+        }
+
+        System.out.printf("%n%d clients x %d transfers, %d accounts, %s engine%n", clients, requestsPerClient, accounts, engine);
+        System.out.printf("%-8s %10s %8s %10s %10s %10s %10s%n", "mode", "ok", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+        for (int i = 0; i < MODES.length; i++) {
+            Result result = results[i];
+            System.out.printf("%-8s %10d %8d %10.0f %10.1f %10.1f %10.1f%n", MODES[i], result.ok, result.errors,
+                    result.throughput(), result.percentileMillis(0.50), result.percentileMillis(0.99),
+                    result.percentileMillis(0.999));
+        }
+        System.exit(0);
+    }
+
+    private Result run(String mode, String engine) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.max-connections=" + (clients + 1_000),
+                        "server.tomcat.accept-count=" + clients,
+                        "spring.mvc.async.request-timeout=60s",
+                        "logging.level.com.dws=WARN",
+                        "challenge.web.execution-mode=" + mode,
+                        "challenge.transfer.engine=" + engine,
+                        "challenge.transfer.shard-queue-capacity=" + clients,
+                        "challenge.notification.async.overflow-policy=DROP",
+                        // Every client of the load test connects from the same address.
+                        "challenge.rate-limit.enabled=false")
+                .run();
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            for (int i = 0; i < accounts; i++) {
+                post(baseUrl + "/v1/accounts", "{\"accountId\":\"load-" + i + "\",\"balance\":1000000}").join();
+            }
+
+            // Warm up the server and the connections before measuring.
+            execute(baseUrl, Math.min(clients, 1_000), 5);
+            return execute(baseUrl, clients, requestsPerClient);
+        } finally {
+            context.close();
+        }
+    }
+
+    private Result execute(String baseUrl, int clientCount, int requests) {
+        var result = new Result(clientCount * requests);
+        var futures = new CompletableFuture<?>[clientCount];
+        long started = System.nanoTime();
+        for (int client = 0; client < clientCount; client++) {
+            futures[client] = sendTransfers(baseUrl, new SplittableRandom(client), requests, result);
+        }
+        CompletableFuture.allOf(futures).join();
+        result.elapsedNanos = System.nanoTime() - started;
+        return result;
+    }
+
+    private CompletableFuture<Void> sendTransfers(String baseUrl, SplittableRandom random, int remaining, Result result) {
+        if (remaining == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int from = random.nextInt(accounts);
+        int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+        String body = "{\"account_id_from\":\"load-" + from + "\",\"account_id_to\":\"load-" + to + "\",\"amount\":0.01}";
+        long started = System.nanoTime();
+        return post(baseUrl + "/v1/transfers", body)
+                .handle((response, failure) -> {
+                    result.record(System.nanoTime() - started, failure == null && response.statusCode() == 201);
+                    return null;
+                })
+                .thenCompose(ignored -> sendTransfers(baseUrl, random, remaining - 1, result));
+    }
+
+    private CompletableFuture<HttpResponse<Void>> post(String url, String body) {
+        var request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static final class Result {
+
+        private final long[] latencies;
+        private int recorded;
+        private int ok;
+        private int errors;
+        private long elapsedNanos;
+
+        private Result(int capacity) {
+            this.latencies = new long[capacity];
+        }
+
+        private synchronized void record(long latencyNanos, boolean success) {
+            latencies[recorded++] = latencyNanos;
+            if (success) {
+                ok++;
+            } else {
+                errors++;
+            }
+        }
+
+        private double throughput() {
+            return recorded / (elapsedNanos / 1e9);
+        }
+
+        private double percentileMillis(double percentile) {
+            long[] sorted = Arrays.copyOf(latencies, recorded);
+            Arrays.sort(sorted);
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
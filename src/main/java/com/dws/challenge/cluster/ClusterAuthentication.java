@@ -0,0 +1,38 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.config.ClusterProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Tells the requests sent by another node of the cluster from client requests: only a request
+ * carrying the cluster secret is trusted, whatever else it claims.
+ */
+@Component
+@ConditionalOnProperty(prefix = "challenge.cluster", name = "enabled", havingValue = "true")
+public class ClusterAuthentication {
+
+    private final byte[] secret;
+
+    public ClusterAuthentication(ClusterProperties properties) {
+        String secret = properties.getSecret();
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("challenge.cluster.secret must be set when the cluster is enabled");
+        }
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return whether the request was sent by another node of the cluster
+     */
+    public boolean isFromClusterNode(HttpServletRequest request) {
+        String secret = request.getHeader(ClusterClient.SECRET_HEADER);
+        // Compares in constant time, so the secret cannot be guessed from response times.
+        return secret != null && request.getHeader(ClusterClient.FORWARDED_BY_HEADER) != null
+                && MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8));
+    }
+}
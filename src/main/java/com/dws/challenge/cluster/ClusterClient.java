@@ -0,0 +1,97 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.config.ClusterProperties;
+import com.dws.challenge.dto.ClusterTransactionResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Sends requests to the other nodes of the cluster over one shared {@link HttpClient}, which
+ * keeps connections to every node open between requests.
+ */
+@Component
+@ConditionalOnProperty(prefix = "challenge.cluster", name = "enabled", havingValue = "true")
+public class ClusterClient {
+
+    /**
+     * Marks a request forwarded by another node, which is handled locally instead of being forwarded again.
+     */
+    public static final String FORWARDED_BY_HEADER = "X-Cluster-Forwarded-By";
+    /**
+     * Carries the cluster secret, without which a request is not trusted as coming from another node.
+     */
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+    public static final String TRANSACTIONS_PATH = "/internal/cluster/transactions";
+
+    private final ClusterRouter clusterRouter;
+    private final String secret;
+    private final ObjectMapper objectMapper;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+
+    public ClusterClient(ClusterRouter clusterRouter, ObjectMapper objectMapper, ClusterProperties properties) {
+        this.clusterRouter = clusterRouter;
+        this.secret = properties.getSecret();
+        this.objectMapper = objectMapper;
+        this.requestTimeout = properties.getRequestTimeout();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout)
+                .build();
+    }
+
+    /**
+     * Sends a request to {@code nodeId} as forwarded by this node.
+     *
+     * @param pathAndQuery the path, with the query string if any
+     * @param headers      headers to send besides the forwarding marker and the cluster secret
+     * @throws IOException if the node did not answer within the request timeout
+     */
+    public HttpResponse<byte[]> send(String nodeId, String method, String pathAndQuery, byte[] body,
+                                     Map<String, String> headers) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(clusterRouter.uriOf(nodeId) + pathAndQuery))
+                .timeout(requestTimeout)
+                .header(FORWARDED_BY_HEADER, clusterRouter.getLocalNodeId())
+                .header(SECRET_HEADER, secret)
+                .method(method, body == null || body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        headers.forEach(request::header);
+        try {
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for cluster node " + nodeId);
+        }
+    }
+
+    /**
+     * Sends a request of the cross-node transfer protocol.
+     *
+     * @param action the action on the transaction, {@code null} to look its state up
+     * @param body   the request body, {@code null} for none
+     * @throws IOException if the node did not answer, or did not answer with a transaction state
+     */
+    ClusterTransactionResponse transaction(String nodeId, Object transactionId, String action, Object body) throws IOException {
+        String path = TRANSACTIONS_PATH + "/" + transactionId + (action == null ? "" : "/" + action);
+        HttpResponse<byte[]> response = send(nodeId, action == null ? "GET" : "POST", path,
+                body == null ? null : objectMapper.writeValueAsBytes(body),
+                Map.of(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE, HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE));
+        if (response.statusCode() != 200) {
+            throw new IOException("Cluster node " + nodeId + " answered " + path + " with status " + response.statusCode());
+        }
+        return objectMapper.readValue(response.body(), ClusterTransactionResponse.class);
+    }
+}
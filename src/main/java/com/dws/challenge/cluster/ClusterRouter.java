@@ -0,0 +1,51 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.config.ClusterProperties;
+import lombok.Getter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Knows which node of the cluster owns an account.
+ */
+@Component
+@ConditionalOnProperty(prefix = "challenge.cluster", name = "enabled", havingValue = "true")
+public class ClusterRouter {
+
+    @Getter
+    private final String localNodeId;
+    private final Map<String, URI> nodes;
+    private final HashRing ring;
+
+    public ClusterRouter(ClusterProperties properties) {
+        this.localNodeId = properties.getNodeId();
+        this.nodes = Map.copyOf(properties.getNodes());
+        if (localNodeId == null || !nodes.containsKey(localNodeId)) {
+            throw new IllegalStateException("challenge.cluster.node-id " + localNodeId
+                    + " is not one of challenge.cluster.nodes " + nodes.keySet());
+        }
+        this.ring = new HashRing(nodes.keySet(), properties.getVirtualNodes());
+    }
+
+    public String ownerOf(String accountId) {
+        return ring.ownerOf(accountId);
+    }
+
+    public boolean isLocal(String accountId) {
+        return localNodeId.equals(ring.ownerOf(accountId));
+    }
+
+    /**
+     * @return the base URL of {@code nodeId}
+     */
+    public URI uriOf(String nodeId) {
+        URI uri = nodes.get(nodeId);
+        if (uri == null) {
+            throw new IllegalArgumentException("Unknown cluster node " + nodeId);
+        }
+        return uri;
+    }
+}
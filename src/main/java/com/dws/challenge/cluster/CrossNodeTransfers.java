@@ -0,0 +1,614 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.config.ClusterProperties;
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.dto.ClusterPrepareRequest;
+import com.dws.challenge.dto.ClusterTransactionResponse;
+import com.dws.challenge.engine.TransferEngine;
+import com.dws.challenge.exception.CannotExecuteTransferException;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.TransferJournal;
+import com.dws.challenge.service.NotificationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.dws.challenge.engine.TransferEngine.BALANCE_OVERFLOW_MESSAGE;
+import static com.dws.challenge.engine.TransferEngine.INSUFFICIENT_BALANCE_MESSAGE;
+import static com.dws.challenge.service.TransferService.TRANSFER_MESSAGE_TO;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Transfers between accounts owned by different nodes as a two-phase commit coordinated by the
+ * node owning the source account:
+ * <ol>
+ *     <li>The source node records the intent, then debits the source account.</li>
+ *     <li>The destination node checks the destination account, records its intent and votes.</li>
+ *     <li>The source node records the decision; a commit is final from then on.</li>
+ *     <li>The destination node credits the destination account and records the commit.</li>
+ * </ol>
+ * The {@link IntentLog} of each node is the durable record of its halves of cross-node transfers:
+ * they are applied to the accounts in memory only, never appended to the accounts repository, and
+ * applied again from the log on startup. An intent still prepared on startup lost its balance
+ * change with the process; the source node then presumes an abort, and the destination node asks
+ * the source node for the decision. Decisions the other node may not have learned are sent again
+ * every {@code recovery-interval} until it answers.
+ * <p>
+ * A {@link RepositoryProperties.Type#LEDGER ledger} repository cannot be used with a cluster: its
+ * ledger is the only record of balances it answers reads from, and it would miss the balance
+ * changes kept in the intent log.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "challenge.cluster", name = "enabled", havingValue = "true")
+public class CrossNodeTransfers implements DisposableBean {
+
+    private static final String PREPARE = "prepare";
+    private static final String COMMIT = "commit";
+    private static final String ABORT = "abort";
+
+    private final ClusterRouter clusterRouter;
+    private final ClusterClient clusterClient;
+    private final AccountsRepository accountsRepository;
+    private final TransferEngine transferEngine;
+    private final NotificationService notificationService;
+    private final TransferJournal transferJournal;
+    private final TransferMetrics transferMetrics;
+    private final long requestTimeoutMillis;
+    private final long retentionMillis;
+
+    private final Map<UUID, Intent> intents = new ConcurrentHashMap<>();
+    private final IntentLog intentLog;
+    private final ScheduledExecutorService recoverer;
+
+    public CrossNodeTransfers(ClusterProperties properties, RepositoryProperties repositoryProperties,
+                              ClusterRouter clusterRouter, ClusterClient clusterClient,
+                              AccountsRepository accountsRepository, TransferEngine transferEngine,
+                              NotificationService notificationService, TransferJournal transferJournal,
+                              TransferMetrics transferMetrics) throws IOException {
+        if (repositoryProperties.getType() == RepositoryProperties.Type.LEDGER) {
+            throw new IllegalStateException("challenge.repository.type=LEDGER cannot be used with challenge.cluster.enabled,"
+                    + " the ledger would miss cross-node transfers");
+        }
+        this.clusterRouter = clusterRouter;
+        this.clusterClient = clusterClient;
+        this.accountsRepository = accountsRepository;
+        this.transferEngine = transferEngine;
+        this.notificationService = notificationService;
+        this.transferJournal = transferJournal;
+        this.transferMetrics = transferMetrics;
+        this.requestTimeoutMillis = properties.getRequestTimeout().toMillis();
+        this.retentionMillis = properties.getIntentRetention().toMillis();
+
+        var replay = new Replay();
+        intentLog = new IntentLog(properties.getIntentLog(), replay);
+        recover(replay);
+
+        recoverer = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "cross-node-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getRecoveryInterval().toMillis();
+        recoverer.scheduleWithFixedDelay(this::resolveQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isLocal(String accountId) {
+        return clusterRouter.isLocal(accountId);
+    }
+
+    /**
+     * Transfers from a local account to an account of another node.
+     *
+     * @return the transfer, once the commit is durable on this node
+     * @throws ResponseStatusException        if the balance is insufficient or the destination node refused the credit
+     * @throws CannotExecuteTransferException if the source account was not claimed in time or the destination node did not answer
+     */
+    public Transfer transfer(Account fromAccount, String accountIdTo, Money amount) {
+        var intent = new Intent(UUID.randomUUID(), Intent.Role.SOURCE, fromAccount.getAccountId(), accountIdTo,
+                amount.getUnits(), System.currentTimeMillis());
+        String destinationNode = clusterRouter.ownerOf(accountIdTo);
+        intent.setInFlight(true);
+        intents.put(intent.getTransactionId(), intent);
+        try {
+            synchronized (intent) {
+                record(() -> intentLog.prepared(intent));
+                debit(intent, fromAccount);
+            }
+
+            ClusterTransactionResponse vote;
+            try {
+                vote = clusterClient.transaction(destinationNode, intent.getTransactionId(), PREPARE,
+                        ClusterPrepareRequest.builder()
+                                .accountIdFrom(intent.getAccountIdFrom())
+                                .accountIdTo(accountIdTo)
+                                .amount(amount.toBigDecimal())
+                                .build());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Cannot prepare transfer {} on node {}: {}", intent.getTransactionId(), destinationNode, e.toString());
+                abortSource(intent);
+                transferMetrics.recordRejection(TransferMetrics.Rejection.NODE_UNAVAILABLE);
+                throw new CannotExecuteTransferException("Cannot reach the node of account " + accountIdTo);
+            }
+            if (vote.getState() != ClusterTransactionResponse.State.PREPARED) {
+                abortSource(intent);
+                throw new ResponseStatusException(BAD_REQUEST, vote.getReason() == null ? "Transfer was refused" : vote.getReason());
+            }
+
+            synchronized (intent) {
+                long now = System.currentTimeMillis();
+                record(() -> intentLog.decided(intent.getTransactionId(), Intent.State.COMMITTED, now));
+                intent.decide(Intent.State.COMMITTED, now);
+            }
+            sendDecision(intent);
+            return new Transfer(intent.getTransactionId(), intent.getAccountIdFrom(), accountIdTo, amount);
+        } finally {
+            intent.setInFlight(false);
+        }
+    }
+
+    /**
+     * Votes on the credit of a cross-node transfer to a local account, recording the intent before
+     * voting for it.
+     */
+    public ClusterTransactionResponse prepare(UUID transactionId, ClusterPrepareRequest request) {
+        Account account = accountsRepository.getAccount(request.getAccountIdTo());
+        long units;
+        try {
+            units = Money.toUnits(request.getAmount());
+        } catch (ArithmeticException e) {
+            return refused(transactionId, "Invalid amount");
+        }
+        if (units <= 0) {
+            return refused(transactionId, "Invalid amount");
+        }
+        if (account == null || !clusterRouter.isLocal(request.getAccountIdTo())) {
+            return refused(transactionId, "Cannot find an account");
+        }
+        if (account.getBalanceUnits() > Long.MAX_VALUE - units) {
+            return refused(transactionId, BALANCE_OVERFLOW_MESSAGE);
+        }
+
+        var prepared = new Intent(transactionId, Intent.Role.DESTINATION, request.getAccountIdFrom(),
+                request.getAccountIdTo(), units, System.currentTimeMillis());
+        Intent existing;
+        synchronized (prepared) {
+            existing = intents.putIfAbsent(transactionId, prepared);
+            if (existing == null) {
+                try {
+                    intentLog.prepared(prepared);
+                } catch (IOException e) {
+                    intents.remove(transactionId, prepared);
+                    throw new UncheckedIOException("Cannot record the intent of transfer " + transactionId, e);
+                }
+                return response(prepared);
+            }
+        }
+        synchronized (existing) {
+            return existing.getState() == Intent.State.ABORTED ? refused(transactionId, "Transfer was aborted") : response(existing);
+        }
+    }
+
+    /**
+     * Credits the destination account of a prepared cross-node transfer. Committing again is a no-op.
+     * <p>
+     * The vote for the transfer is binding, but local transfers may have credited the account since:
+     * a credit that would overflow the balance is committed all the same and applied by recovery
+     * once the balance has room for it, instead of failing every commit sent by the source node.
+     */
+    public ClusterTransactionResponse commit(UUID transactionId) {
+        Intent intent = intents.get(transactionId);
+        if (intent == null) {
+            return response(transactionId, ClusterTransactionResponse.State.UNKNOWN);
+        }
+        synchronized (intent) {
+            if (intent.getRole() != Intent.Role.DESTINATION || intent.isDecided()) {
+                return response(intent);
+            }
+            Account account = accountsRepository.getAccount(intent.getAccountIdTo());
+            boolean credited = credit(account, intent.getAmountUnits());
+            long now = System.currentTimeMillis();
+            try {
+                intentLog.decided(transactionId, Intent.State.COMMITTED, now);
+            } catch (IOException e) {
+                if (credited) {
+                    changeBalance(account, -intent.getAmountUnits());
+                }
+                throw new UncheckedIOException("Cannot record the commit of transfer " + transactionId, e);
+            }
+            intent.decide(Intent.State.COMMITTED, now);
+            if (!credited) {
+                intent.setCreditPending(true);
+                log.error("Crediting transfer {} would overflow the balance of account {}, crediting it once there is room",
+                        transactionId, intent.getAccountIdTo());
+                return response(intent);
+            }
+        }
+        credited(intent);
+        return response(intent);
+    }
+
+    /**
+     * Aborts a cross-node transfer to a local account. A transfer this node did not know yet is
+     * remembered as aborted, so a prepare arriving after the abort is refused.
+     */
+    public ClusterTransactionResponse abort(UUID transactionId) {
+        long now = System.currentTimeMillis();
+        Intent created = Intent.aborted(transactionId, now);
+        Intent intent;
+        synchronized (created) {
+            intent = intents.putIfAbsent(transactionId, created);
+            if (intent == null) {
+                record(() -> intentLog.decided(transactionId, Intent.State.ABORTED, now));
+                return response(created);
+            }
+        }
+        synchronized (intent) {
+            if (intent.getRole() == Intent.Role.DESTINATION && !intent.isDecided()) {
+                record(() -> intentLog.decided(transactionId, Intent.State.ABORTED, now));
+                intent.decide(Intent.State.ABORTED, now);
+            }
+            return response(intent);
+        }
+    }
+
+    /**
+     * @return the state of a transaction, asked by the other node while it waits for the decision
+     */
+    public ClusterTransactionResponse state(UUID transactionId) {
+        Intent intent = intents.get(transactionId);
+        return intent == null ? response(transactionId, ClusterTransactionResponse.State.UNKNOWN) : response(intent);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        recoverer.shutdownNow();
+        intentLog.close();
+    }
+
+    /**
+     * Sends decisions the other node may have missed and asks for decisions this node is waiting for.
+     */
+    void resolve() {
+        long now = System.currentTimeMillis();
+        for (Intent intent : intents.values()) {
+            if (intent.isInFlight()) {
+                continue;
+            }
+            if (intent.getRole() == Intent.Role.SOURCE) {
+                if (!intent.isDecided()) {
+                    // Only left prepared by a failure to record the decision.
+                    abortSource(intent);
+                } else if (!intent.isAcknowledged()) {
+                    sendDecision(intent);
+                }
+            } else if (!intent.isDecided() && now - intent.getCreatedAtMillis() > requestTimeoutMillis) {
+                askForDecision(intent);
+            } else if (intent.isCreditPending()) {
+                retryCredit(intent);
+            }
+            if (isSettled(intent, now)) {
+                intents.remove(intent.getTransactionId(), intent);
+            }
+        }
+    }
+
+    private void resolveQuietly() {
+        try {
+            resolve();
+        } catch (RuntimeException e) {
+            log.error("Cannot resolve cross-node transfers", e);
+        }
+    }
+
+    private void debit(Intent intent, Account fromAccount) {
+        Optional<Boolean> debited = transferEngine.executeExclusively(List.of(fromAccount), () -> {
+            long balance = fromAccount.getBalanceUnits();
+            if (balance < intent.getAmountUnits()) {
+                return false;
+            }
+            fromAccount.setBalanceUnits(balance - intent.getAmountUnits());
+            return true;
+        });
+        if (debited.orElse(false)) {
+            intent.setDebited(true);
+            return;
+        }
+        decideAbort(intent);
+        // Nothing was prepared on the destination node.
+        intent.setAcknowledged(true);
+        if (debited.isPresent()) {
+            throw new ResponseStatusException(BAD_REQUEST, INSUFFICIENT_BALANCE_MESSAGE);
+        }
+        throw new CannotExecuteTransferException("Cannot claim account " + fromAccount.getAccountId());
+    }
+
+    /**
+     * Refunds the source account if it was debited, records the abort and tells the destination node.
+     */
+    private void abortSource(Intent intent) {
+        synchronized (intent) {
+            if (intent.isDecided()) {
+                return;
+            }
+            if (intent.isDebited()) {
+                changeBalance(accountsRepository.getAccount(intent.getAccountIdFrom()), intent.getAmountUnits());
+                intent.setDebited(false);
+            }
+            decideAbort(intent);
+        }
+        sendDecision(intent);
+    }
+
+    private void decideAbort(Intent intent) {
+        long now = System.currentTimeMillis();
+        try {
+            intentLog.decided(intent.getTransactionId(), Intent.State.ABORTED, now);
+        } catch (IOException e) {
+            // Without the record the intent is presumed aborted on startup anyway.
+            log.warn("Cannot record the abort of transfer {}", intent.getTransactionId(), e);
+        }
+        intent.decide(Intent.State.ABORTED, now);
+    }
+
+    private void sendDecision(Intent intent) {
+        String node = clusterRouter.ownerOf(intent.getAccountIdTo());
+        ClusterTransactionResponse response;
+        try {
+            response = clusterClient.transaction(node, intent.getTransactionId(),
+                    intent.getState() == Intent.State.COMMITTED ? COMMIT : ABORT, null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot send the decision on transfer {} to node {}, retrying later: {}", intent.getTransactionId(),
+                    node, e.toString());
+            return;
+        }
+        if (intent.getState() == Intent.State.COMMITTED && response.getState() != ClusterTransactionResponse.State.COMMITTED) {
+            log.error("Node {} answered the commit of transfer {} with {}", node, intent.getTransactionId(), response.getState());
+        }
+        intent.setAcknowledged(true);
+        try {
+            intentLog.acknowledged(intent.getTransactionId());
+        } catch (IOException e) {
+            log.warn("Cannot record that node {} learned the decision on transfer {}", node, intent.getTransactionId(), e);
+        }
+    }
+
+    private void askForDecision(Intent intent) {
+        String node = clusterRouter.ownerOf(intent.getAccountIdFrom());
+        ClusterTransactionResponse response;
+        try {
+            response = clusterClient.transaction(node, intent.getTransactionId(), null, null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot ask node {} for the decision on transfer {}: {}", node, intent.getTransactionId(), e.toString());
+            return;
+        }
+        switch (response.getState()) {
+            case COMMITTED:
+                commit(intent.getTransactionId());
+                break;
+            case ABORTED:
+            case UNKNOWN:
+                abort(intent.getTransactionId());
+                break;
+            default:
+                // The source node has not decided yet.
+        }
+    }
+
+    private void retryCredit(Intent intent) {
+        synchronized (intent) {
+            if (!intent.isCreditPending()
+                    || !credit(accountsRepository.getAccount(intent.getAccountIdTo()), intent.getAmountUnits())) {
+                return;
+            }
+            intent.setCreditPending(false);
+        }
+        log.info("Credited transfer {} to account {} after it was committed", intent.getTransactionId(), intent.getAccountIdTo());
+        credited(intent);
+    }
+
+    /**
+     * Journals the credit of a committed transfer and notifies the owner of the destination account.
+     */
+    private void credited(Intent intent) {
+        var amount = Money.ofUnits(intent.getAmountUnits());
+        transferJournal.append(new Transfer(intent.getTransactionId(), intent.getAccountIdFrom(), intent.getAccountIdTo(), amount));
+        notificationService.notifyAboutTransfer(accountsRepository.getAccount(intent.getAccountIdTo()), TRANSFER_MESSAGE_TO,
+                amount, intent.getAccountIdFrom());
+    }
+
+    /**
+     * Credits a local account with exclusive access, waiting as long as it takes, since the credit
+     * was already decided.
+     *
+     * @return {@code false} if the credit would overflow the balance, which is then left unchanged
+     */
+    private boolean credit(Account account, long units) {
+        if (account == null) {
+            throw new IllegalStateException("A cross-node transfer changes an unknown account");
+        }
+        Optional<Boolean> credited;
+        while ((credited = transferEngine.executeExclusively(List.of(account), () -> {
+            long balance = account.getBalanceUnits();
+            if (balance > Long.MAX_VALUE - units) {
+                return false;
+            }
+            account.setBalanceUnits(balance + units);
+            return true;
+        })).isEmpty()) {
+            log.warn("Cannot claim account {} for a cross-node transfer, retrying", account.getAccountId());
+        }
+        return credited.get();
+    }
+
+    /**
+     * Changes the balance of a local account with exclusive access, waiting as long as it takes,
+     * since the change was already decided.
+     */
+    private void changeBalance(Account account, long deltaUnits) {
+        if (account == null) {
+            throw new IllegalStateException("A cross-node transfer changes an unknown account");
+        }
+        while (transferEngine.executeExclusively(List.of(account), () -> {
+            account.setBalanceUnits(Math.addExact(account.getBalanceUnits(), deltaUnits));
+            return true;
+        }).isEmpty()) {
+            log.warn("Cannot claim account {} for a cross-node transfer, retrying", account.getAccountId());
+        }
+    }
+
+    private void recover(Replay replay) throws IOException {
+        var adjustments = new HashMap<String, Long>(replay.adjustments);
+        for (Intent intent : replay.unfolded) {
+            if (intent.getState() == Intent.State.COMMITTED) {
+                adjustments.merge(intent.localAccountId(), intent.localDeltaUnits(), Long::sum);
+            }
+        }
+        adjustments.values().removeIf(deltaUnits -> deltaUnits == 0);
+        List<String> unapplied = new ArrayList<>();
+        adjustments.forEach((accountId, deltaUnits) -> {
+            Account account = accountsRepository.getAccount(accountId);
+            try {
+                if (account == null) {
+                    unapplied.add(accountId);
+                } else {
+                    account.setBalanceUnits(Math.addExact(account.getBalanceUnits(), deltaUnits));
+                }
+            } catch (ArithmeticException e) {
+                unapplied.add(accountId);
+            }
+        });
+        if (!unapplied.isEmpty()) {
+            // Kept in the log, so they are applied on a later start that finds the accounts and room for them.
+            log.error("Cannot apply the cross-node balance adjustments of missing or overflowing accounts {}", unapplied);
+        }
+
+        long now = System.currentTimeMillis();
+        List<Intent> retained = new ArrayList<>();
+        for (Intent intent : replay.intents.values()) {
+            if (intent.getRole() == Intent.Role.SOURCE && !intent.isDecided()) {
+                // The debit was lost with the process.
+                intent.decide(Intent.State.ABORTED, now);
+            }
+            if (!isSettled(intent, now)) {
+                retained.add(intent);
+                intents.put(intent.getTransactionId(), intent);
+            }
+        }
+        intentLog.rewrite(adjustments, retained);
+        log.info("Recovered {} cross-node balance adjustments and {} cross-node transfers, {} of them unresolved",
+                adjustments.size() - unapplied.size(), retained.size(),
+                retained.stream().filter(intent -> !intent.isDecided()
+                        || intent.getRole() == Intent.Role.SOURCE && !intent.isAcknowledged()).count());
+    }
+
+    /**
+     * Whether the intent can be forgotten: the source node forgets a transfer once the destination
+     * node learned the decision, the destination node remembers it for the retention period in
+     * case the decision is sent again.
+     */
+    private boolean isSettled(Intent intent, long now) {
+        if (!intent.isDecided()) {
+            return false;
+        }
+        return intent.getRole() == Intent.Role.SOURCE
+                ? intent.isAcknowledged()
+                : !intent.isCreditPending() && now - intent.getDecidedAtMillis() > retentionMillis;
+    }
+
+    private static ClusterTransactionResponse refused(UUID transactionId, String reason) {
+        return ClusterTransactionResponse.builder()
+                .transactionId(transactionId)
+                .state(ClusterTransactionResponse.State.ABORTED)
+                .reason(reason)
+                .build();
+    }
+
+    private static ClusterTransactionResponse response(Intent intent) {
+        return response(intent.getTransactionId(), ClusterTransactionResponse.State.valueOf(intent.getState().name()));
+    }
+
+    private static ClusterTransactionResponse response(UUID transactionId, ClusterTransactionResponse.State state) {
+        return ClusterTransactionResponse.builder()
+                .transactionId(transactionId)
+                .state(state)
+                .build();
+    }
+
+    private static void record(IntentRecord record) {
+        try {
+            record.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the cross-node transfer intent log", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IntentRecord {
+
+        void write() throws IOException;
+    }
+
+    /**
+     * Rebuilds the intents and balance adjustments from the log.
+     */
+    private static final class Replay implements IntentLog.Visitor {
+
+        private final Map<String, Long> adjustments = new HashMap<>();
+        private final Map<UUID, Intent> intents = new HashMap<>();
+        private final List<Intent> unfolded = new ArrayList<>();
+
+        @Override
+        public void prepared(Intent intent) {
+            intents.put(intent.getTransactionId(), intent);
+            unfolded.add(intent);
+        }
+
+        @Override
+        public void decided(UUID transactionId, Intent.State state, long decidedAtMillis) {
+            Intent intent = intents.get(transactionId);
+            if (intent == null) {
+                intents.put(transactionId, Intent.aborted(transactionId, decidedAtMillis));
+            } else {
+                intent.decide(state, decidedAtMillis);
+            }
+        }
+
+        @Override
+        public void acknowledged(UUID transactionId) {
+            Intent intent = intents.get(transactionId);
+            if (intent != null) {
+                intent.setAcknowledged(true);
+            }
+        }
+
+        @Override
+        public void adjusted(String accountId, long deltaUnits) {
+            adjustments.merge(accountId, deltaUnits, Long::sum);
+        }
+
+        @Override
+        public void retained(Intent intent) {
+            intents.put(intent.getTransactionId(), intent);
+        }
+    }
+}
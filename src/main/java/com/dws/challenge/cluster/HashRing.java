@@ -0,0 +1,70 @@
+package com.dws.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Consistent-hash ring placing {@code virtualNodes} points per node. An account belongs to the
+ * node of the first point at or after the hash of its id, so adding or removing a node only moves
+ * the accounts between its points and their predecessors.
+ * <p>
+ * The hash depends on nothing but the UTF-8 bytes of the key, so every node computes the same
+ * ring from the same node ids.
+ */
+public final class HashRing {
+
+    private final long[] points;
+    private final String[] owners;
+
+    public HashRing(Collection<String> nodeIds, int virtualNodes) {
+        if (nodeIds.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A hash ring needs at least one node and one virtual node per node");
+        }
+        List<long[]> entries = new ArrayList<>(nodeIds.size() * virtualNodes);
+        List<String> ids = new ArrayList<>(nodeIds);
+        ids.sort(null);
+        for (int node = 0; node < ids.size(); node++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                entries.add(new long[]{hash(ids.get(node) + "#" + point), node});
+            }
+        }
+        // Ties, however unlikely, are broken by node id so every node builds the same ring.
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        points = new long[entries.size()];
+        owners = new String[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            points[i] = entries.get(i)[0];
+            owners[i] = ids.get((int) entries.get(i)[1]);
+        }
+    }
+
+    public String ownerOf(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes followed by the MurmurHash3 finalizer, which spreads the
+     * similar ids accounts usually have over the whole ring.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,120 @@
+package com.dws.challenge.cluster;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * One half of a cross-node transfer: the debit of the source account on the node owning it, or
+ * the credit of the destination account on the node owning that one. State changes are made while
+ * holding the monitor of the intent.
+ */
+@Getter
+@ToString
+final class Intent {
+
+    enum Role {
+        /**
+         * This node owns the source account and coordinates the transfer.
+         */
+        SOURCE,
+        /**
+         * This node owns the destination account.
+         */
+        DESTINATION
+    }
+
+    enum State {
+        PREPARED,
+        COMMITTED,
+        ABORTED
+    }
+
+    private final UUID transactionId;
+    private final Role role;
+    private final String accountIdFrom;
+    private final String accountIdTo;
+    private final long amountUnits;
+    private final long createdAtMillis;
+
+    private volatile State state = State.PREPARED;
+    private volatile long decidedAtMillis;
+    /**
+     * Whether the other node learned the decision; only tracked by the {@link Role#SOURCE}.
+     */
+    private volatile boolean acknowledged;
+    /**
+     * Whether the source account was debited in this process; only tracked by the {@link Role#SOURCE}.
+     */
+    private volatile boolean debited;
+    /**
+     * Whether the destination account of a committed intent could not be credited yet, because the
+     * credit would overflow its balance; only tracked by the {@link Role#DESTINATION}.
+     */
+    private volatile boolean creditPending;
+    /**
+     * Whether a request of the coordinating thread is running, so recovery leaves the intent alone.
+     */
+    private volatile boolean inFlight;
+
+    Intent(UUID transactionId, Role role, String accountIdFrom, String accountIdTo, long amountUnits, long createdAtMillis) {
+        this.transactionId = transactionId;
+        this.role = role;
+        this.accountIdFrom = accountIdFrom;
+        this.accountIdTo = accountIdTo;
+        this.amountUnits = amountUnits;
+        this.createdAtMillis = createdAtMillis;
+    }
+
+    /**
+     * An intent for a transaction aborted before this node learned about it, so a late prepare is refused.
+     */
+    static Intent aborted(UUID transactionId, long decidedAtMillis) {
+        var intent = new Intent(transactionId, Role.DESTINATION, "", "", 0, decidedAtMillis);
+        intent.decide(State.ABORTED, decidedAtMillis);
+        return intent;
+    }
+
+    boolean isDecided() {
+        return state != State.PREPARED;
+    }
+
+    void decide(State decided, long atMillis) {
+        state = decided;
+        decidedAtMillis = atMillis;
+    }
+
+    void restore(State restored, long decidedAt, boolean acknowledgedBefore) {
+        state = restored;
+        decidedAtMillis = decidedAt;
+        acknowledged = acknowledgedBefore;
+    }
+
+    void setAcknowledged(boolean acknowledged) {
+        this.acknowledged = acknowledged;
+    }
+
+    void setDebited(boolean debited) {
+        this.debited = debited;
+    }
+
+    void setCreditPending(boolean creditPending) {
+        this.creditPending = creditPending;
+    }
+
+    void setInFlight(boolean inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * @return the change of the local balance if the intent is committed
+     */
+    long localDeltaUnits() {
+        return role == Role.SOURCE ? -amountUnits : amountUnits;
+    }
+
+    String localAccountId() {
+        return role == Role.SOURCE ? accountIdFrom : accountIdTo;
+    }
+}
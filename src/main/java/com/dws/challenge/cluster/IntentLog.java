@@ -0,0 +1,249 @@
+package com.dws.challenge.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file recording the cross-node transfers of this node. Every record is a length, a
+ * CRC32 of the payload and the payload, whose first byte is the record type; a record torn by a
+ * crash fails the check and is cut off, with everything after it, when the log is opened.
+ * <p>
+ * Only the records a decision depends on are forced to disk before returning.
+ */
+@Slf4j
+final class IntentLog implements Closeable {
+
+    private static final byte PREPARED = 1;
+    private static final byte COMMITTED = 2;
+    private static final byte ABORTED = 3;
+    private static final byte ACKNOWLEDGED = 4;
+    private static final byte ADJUSTED = 5;
+    private static final byte RETAINED = 6;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private final Path file;
+    private FileChannel channel;
+
+    interface Visitor {
+
+        /**
+         * An intent whose balance change, if it was committed, is not part of any {@link #adjusted} record.
+         */
+        void prepared(Intent intent);
+
+        void decided(UUID transactionId, Intent.State state, long decidedAtMillis);
+
+        void acknowledged(UUID transactionId);
+
+        /**
+         * The net balance change of committed intents folded together by {@link #rewrite}.
+         */
+        void adjusted(String accountId, long deltaUnits);
+
+        /**
+         * An intent kept by {@link #rewrite} whose balance change is part of an {@link #adjusted} record.
+         */
+        void retained(Intent intent);
+    }
+
+    /**
+     * Opens the log, creating it if needed, after passing every intact record to {@code visitor}.
+     */
+    IntentLog(Path file, Visitor visitor) throws IOException {
+        this.file = file;
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end = replay(visitor);
+        if (end < channel.size()) {
+            log.warn("Cutting off {} bytes of torn records at the end of {}", channel.size() - end, file);
+            channel.truncate(end);
+            channel.force(true);
+        }
+        channel.position(end);
+    }
+
+    synchronized void prepared(Intent intent) throws IOException {
+        append(intent(PREPARED, intent), true);
+    }
+
+    synchronized void decided(UUID transactionId, Intent.State state, long decidedAtMillis) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 8);
+        record.put(state == Intent.State.COMMITTED ? COMMITTED : ABORTED);
+        putId(record, transactionId).putLong(decidedAtMillis);
+        append(record.flip(), true);
+    }
+
+    /**
+     * Records that the other node learned the decision. Not forced to disk: if the record is lost,
+     * the decision is sent once more.
+     */
+    synchronized void acknowledged(UUID transactionId) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(1 + 16);
+        record.put(ACKNOWLEDGED);
+        append(putId(record, transactionId).flip(), false);
+    }
+
+    /**
+     * Atomically replaces the log by the balance changes {@code adjustments} and the intents
+     * {@code retained}, whose balance changes must be part of {@code adjustments}.
+     */
+    synchronized void rewrite(Map<String, Long> adjustments, Collection<Intent> retained) throws IOException {
+        Path rewritten = file.resolveSibling(file.getFileName() + ".rewrite");
+        try (FileChannel out = FileChannel.open(rewritten, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, Long> adjustment : adjustments.entrySet()) {
+                byte[] id = encodeId(adjustment.getKey());
+                ByteBuffer record = ByteBuffer.allocate(1 + 2 + id.length + 8);
+                record.put(ADJUSTED).putShort((short) id.length).put(id).putLong(adjustment.getValue());
+                write(out, record.flip());
+            }
+            for (Intent intent : retained) {
+                write(out, intent(RETAINED, intent));
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(rewritten, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(ByteBuffer payload, boolean force) throws IOException {
+        write(channel, payload);
+        if (force) {
+            channel.force(false);
+        }
+    }
+
+    private static void write(FileChannel out, ByteBuffer payload) throws IOException {
+        var crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] buffers = {header, payload};
+        while (header.hasRemaining() || payload.hasRemaining()) {
+            out.write(buffers);
+        }
+    }
+
+    private long replay(Visitor visitor) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            int length = header.getInt(0);
+            if (length <= 0 || length > MAX_RECORD_SIZE || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            while (payload.hasRemaining() && channel.read(payload, position + HEADER_SIZE + payload.position()) > 0) {
+                // Read until the payload is complete.
+            }
+            var crc = new CRC32();
+            crc.update(payload.flip().duplicate());
+            if ((int) crc.getValue() != header.getInt(4)) {
+                break;
+            }
+            decode(payload, visitor);
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private static void decode(ByteBuffer record, Visitor visitor) {
+        byte type = record.get();
+        switch (type) {
+            case PREPARED:
+                visitor.prepared(decodeIntent(record));
+                break;
+            case COMMITTED:
+            case ABORTED:
+                visitor.decided(getId(record), type == COMMITTED ? Intent.State.COMMITTED : Intent.State.ABORTED, record.getLong());
+                break;
+            case ACKNOWLEDGED:
+                visitor.acknowledged(getId(record));
+                break;
+            case ADJUSTED:
+                visitor.adjusted(decodeString(record), record.getLong());
+                break;
+            case RETAINED:
+                visitor.retained(decodeIntent(record));
+                break;
+            default:
+                throw new IllegalStateException("Unknown intent log record type " + type);
+        }
+    }
+
+    private static ByteBuffer intent(byte type, Intent intent) {
+        byte[] from = encodeId(intent.getAccountIdFrom());
+        byte[] to = encodeId(intent.getAccountIdTo());
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 1 + 2 + from.length + 2 + to.length + 8 + 8 + 1 + 8 + 1);
+        record.put(type);
+        putId(record, intent.getTransactionId())
+                .put((byte) intent.getRole().ordinal())
+                .putShort((short) from.length).put(from)
+                .putShort((short) to.length).put(to)
+                .putLong(intent.getAmountUnits())
+                .putLong(intent.getCreatedAtMillis())
+                .put((byte) intent.getState().ordinal())
+                .putLong(intent.getDecidedAtMillis())
+                .put((byte) (intent.isAcknowledged() ? 1 : 0));
+        return record.flip();
+    }
+
+    private static Intent decodeIntent(ByteBuffer record) {
+        UUID transactionId = getId(record);
+        Intent.Role role = Intent.Role.values()[record.get()];
+        String from = decodeString(record);
+        String to = decodeString(record);
+        var intent = new Intent(transactionId, role, from, to, record.getLong(), record.getLong());
+        intent.restore(Intent.State.values()[record.get()], record.getLong(), record.get() == 1);
+        return intent;
+    }
+
+    private static ByteBuffer putId(ByteBuffer record, UUID id) {
+        return record.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID getId(ByteBuffer record) {
+        return new UUID(record.getLong(), record.getLong());
+    }
+
+    private static byte[] encodeId(String accountId) {
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Account id is too long: " + id.length + " bytes");
+        }
+        return id;
+    }
+
+    private static String decodeString(ByteBuffer record) {
+        var id = new byte[record.getShort()];
+        record.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.cluster")
+public class ClusterProperties {
+
+    /**
+     * Whether accounts are spread across the nodes of {@code nodes}.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The id of this node, one of the keys of {@code nodes}.
+     */
+    private String nodeId;
+
+    /**
+     * The base URL of every node of the cluster, by node id. Every node must be given the same map.
+     */
+    private Map<String, URI> nodes = new LinkedHashMap<>();
+
+    /**
+     * The secret the nodes authenticate their requests to each other with. Every node must be
+     * given the same secret, and it must be set when the cluster is enabled.
+     */
+    private String secret;
+
+    /**
+     * Points of every node on the hash ring. More points spread accounts more evenly.
+     */
+    private int virtualNodes = 128;
+
+    /**
+     * How long a request to another node may take.
+     */
+    private Duration requestTimeout = Duration.ofSeconds(2);
+
+    /**
+     * The file cross-node transfers of this node are recorded in, distinct for every node.
+     */
+    private Path intentLog = Path.of("data/cluster/intents.log");
+
+    /**
+     * How often undecided or unacknowledged cross-node transfers are retried.
+     */
+    private Duration recoveryInterval = Duration.ofSeconds(1);
+
+    /**
+     * How long the destination node remembers decided cross-node transfers, so a decision sent
+     * again is answered consistently.
+     */
+    private Duration intentRetention = Duration.ofHours(1);
+}
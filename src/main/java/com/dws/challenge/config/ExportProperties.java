@@ -0,0 +1,22 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.export")
+public class ExportProperties {
+
+    /**
+     * Directory balance snapshots are exported to as files.
+     */
+    private Path directory = Path.of("data", "exports");
+
+    /**
+     * Size of the buffer rows are encoded into before they are written to the channel.
+     */
+    private DataSize bufferSize = DataSize.ofKilobytes(64);
+}
@@ -0,0 +1,28 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * How long the response of a transfer is replayed for requests with the same {@code Idempotency-Key}.
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * Maximum number of remembered keys. Keys are only forgotten once expired, so requests with a
+     * new key are rejected while the cache is full; it should hold {@code ttl} times the rate of
+     * requests with a key.
+     */
+    private int maxEntries = 100_000;
+
+    /**
+     * Number of independently locked parts of the cache.
+     */
+    private int shards = 16;
+}
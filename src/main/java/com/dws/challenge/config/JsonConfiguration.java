@@ -0,0 +1,36 @@
+package com.dws.challenge.config;
+
+import com.dws.challenge.web.TransferJsonHttpMessageConverter;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class JsonConfiguration {
+
+    /**
+     * Replaces reflection in the {@code ObjectMapper} Spring Boot builds with generated lambdas
+     * for reading and writing bean properties.
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public WebMvcConfigurer transferJsonConfigurer(ObjectMapper objectMapper, WebExecutionProperties webExecutionProperties) {
+        var converter = new TransferJsonHttpMessageConverter(objectMapper, webExecutionProperties.getJsonCodec());
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.add(0, converter);
+            }
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.notification.async")
+public class NotificationProperties {
+
+    /**
+     * Whether notifications are queued and sent off the transfer thread.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of notifications waiting to be sent.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * Maximum number of notifications sent in one batch.
+     */
+    private int maxBatchSize = 256;
+
+    /**
+     * What to do with a notification when the queue is full.
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * How long a {@link OverflowPolicy#BLOCK} producer waits for space in the queue before the notification is dropped.
+     */
+    private Duration offerTimeout = Duration.ofMillis(10);
+
+    /**
+     * How long queued notifications may take to be sent on shutdown.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(5);
+
+    public enum OverflowPolicy {
+        /**
+         * Slow the transfer thread down for up to {@code offerTimeout}, then drop the notification.
+         */
+        BLOCK,
+        /**
+         * Drop the notification immediately.
+         */
+        DROP
+    }
+}
@@ -0,0 +1,38 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.notification.outbox")
+public class OutboxProperties {
+
+    /**
+     * Whether transfer notifications are relayed from the transfers recorded by a {@code WAL} or
+     * {@code LEDGER} repository instead of being sent by the transfers.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of log records read and delivered between two checkpoints.
+     */
+    private int maxBatchSize = 4096;
+
+    /**
+     * Maximum time the relay waits for new transfers before it polls again.
+     */
+    private Duration pollInterval = Duration.ofMillis(100);
+
+    /**
+     * Longest wait between two attempts to send a failed notification. The first retry waits
+     * {@code poll-interval}, and every failure doubles the wait up to this.
+     */
+    private Duration maxRetryBackoff = Duration.ofSeconds(30);
+
+    /**
+     * How long the relay may take to deliver its current batch on shutdown.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(5);
+}
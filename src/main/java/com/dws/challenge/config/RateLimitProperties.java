@@ -0,0 +1,60 @@
+package com.dws.challenge.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * Whether transfer requests are rate limited and admitted only below the in-flight limit.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Transfer requests of one client, identified by remote address.
+     */
+    private Limit client = new Limit(1_000, 2_000);
+
+    /**
+     * Transfer requests debiting one account.
+     */
+    private Limit account = new Limit(200, 400);
+
+    /**
+     * Transfer requests per second the node is expected to sustain.
+     */
+    private int targetThroughput = 20_000;
+
+    /**
+     * Latency a transfer request is expected to stay under. Together with {@code target-throughput}
+     * it bounds the requests in flight: {@code target-throughput * target-latency}.
+     */
+    private Duration targetLatency = Duration.ofMillis(50);
+
+    /**
+     * How often buckets that filled up again are dropped.
+     */
+    private Duration evictionInterval = Duration.ofSeconds(10);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        /**
+         * Sustained requests per second.
+         */
+        private double rate;
+
+        /**
+         * Requests allowed at once after being idle.
+         */
+        private int burst;
+    }
+}
@@ -0,0 +1,102 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.repository")
+public class RepositoryProperties {
+
+    /**
+     * Where accounts are stored.
+     */
+    private Type type = Type.MEMORY;
+
+    private final Wal wal = new Wal();
+
+    private final OffHeap offHeap = new OffHeap();
+
+    private final Ledger ledger = new Ledger();
+
+    public enum Type {
+        /**
+         * Accounts live in memory only and are lost on restart.
+         */
+        MEMORY,
+        /**
+         * Accounts live in memory, account creations and transfers are appended to a write-ahead log on disk.
+         */
+        WAL,
+        /**
+         * Accounts live in an open-addressing hash table outside the Java heap and are lost on restart.
+         */
+        OFF_HEAP,
+        /**
+         * Account creations and transfers are appended to a ledger on disk that is never compacted; balances are
+         * rebuilt from it on startup and read from a projection of it.
+         */
+        LEDGER
+    }
+
+    @Data
+    public static class Wal {
+
+        /**
+         * Directory holding the log segments and snapshots.
+         */
+        private Path directory = Path.of("data", "wal");
+
+        /**
+         * Size of each memory-mapped log segment.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Maximum time between two forces of the log to disk when nobody waits for one.
+         */
+        private Duration flushInterval = Duration.ofMillis(10);
+
+        /**
+         * Time between two snapshots folding the completed log segments, which are then deleted.
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Ledger {
+
+        /**
+         * Directory holding the ledger segments.
+         */
+        private Path directory = Path.of("data", "ledger");
+
+        /**
+         * Size of each memory-mapped ledger segment.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Maximum time between two forces of the ledger to disk when nobody waits for one.
+         */
+        private Duration flushInterval = Duration.ofMillis(10);
+    }
+
+    @Data
+    public static class OffHeap {
+
+        /**
+         * Maximum number of accounts. The table is allocated up front for this many accounts.
+         */
+        private int capacity = 1_000_000;
+
+        /**
+         * Maximum length of an account id in UTF-8 bytes. Each account takes this plus 20 bytes,
+         * rounded up to a multiple of 8.
+         */
+        private int maxIdBytes = 28;
+    }
+}
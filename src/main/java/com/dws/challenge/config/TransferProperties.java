@@ -0,0 +1,130 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.transfer")
+public class TransferProperties {
+
+    /**
+     * Which engine applies transfers to account balances.
+     */
+    private Engine engine = Engine.LOCKING;
+
+    /**
+     * How account locks are acquired for a transfer.
+     */
+    private LockMode lockMode = LockMode.ORDERED;
+
+    /**
+     * Maximum time to wait for each account lock in {@link LockMode#ORDERED} mode.
+     */
+    private Duration lockTimeout = Duration.ofMillis(500);
+
+    /**
+     * Whether account locks are granted to waiting threads in arrival order.
+     */
+    private boolean fairLocks = false;
+
+    /**
+     * Number of locks shared by all accounts in the {@link Engine#LOCKING} engine, rounded up to a power of two.
+     */
+    private int lockStripes = 4096;
+
+    /**
+     * Number of single-writer shards used by the {@link Engine#SHARDED} engine.
+     */
+    private int shards = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximum number of transfers waiting for each shard before new ones are rejected.
+     */
+    private int shardQueueCapacity = 10_000;
+
+    private final HotAccounts hotAccounts = new HotAccounts();
+
+    private final Optimistic optimistic = new Optimistic();
+
+    public enum Engine {
+        /**
+         * Balances are updated by request threads holding a lock per account.
+         */
+        LOCKING,
+        /**
+         * Balances are updated by one thread per shard of accounts, without locks.
+         */
+        SHARDED,
+        /**
+         * Balances are updated with compare-and-set on the account, without locks.
+         */
+        LOCK_FREE,
+        /**
+         * Balances are read without locking and committed only if neither account changed meanwhile,
+         * conflicting transfers are retried.
+         */
+        OPTIMISTIC
+    }
+
+    @Data
+    public static class HotAccounts {
+
+        /**
+         * Whether the {@link Engine#LOCKING} engine collects credits to hot accounts without taking their lock.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Contended lock acquisitions of an account within about one decay interval from which it is hot.
+         */
+        private int threshold = 1000;
+
+        /**
+         * Number of counters in each row of the count-min sketch of contended accounts, rounded up to a power of two.
+         */
+        private int sketchWidth = 4096;
+
+        /**
+         * Time after which all contention counters are halved. An account stops being hot once its count drops
+         * below half the threshold.
+         */
+        private Duration decayInterval = Duration.ofSeconds(1);
+
+        /**
+         * Maximum time collected credits wait before they are added to the balance of a hot account.
+         */
+        private Duration reconcileInterval = Duration.ofMillis(10);
+    }
+
+    @Data
+    public static class Optimistic {
+
+        /**
+         * Maximum number of commit attempts of a transfer in the {@link Engine#OPTIMISTIC} engine before it is rejected.
+         */
+        private int maxAttempts = 32;
+
+        /**
+         * Upper bound of the random backoff before the first retry, doubled for every further retry.
+         */
+        private Duration initialBackoff = Duration.ofNanos(1000);
+
+        /**
+         * Upper bound of the random backoff before any retry.
+         */
+        private Duration maxBackoff = Duration.ofMillis(1);
+    }
+
+    public enum LockMode {
+        /**
+         * Fail the transfer immediately if any of the account locks is taken.
+         */
+        TRY_LOCK,
+        /**
+         * Take the account locks in account id order, waiting up to {@code lockTimeout} for each.
+         */
+        ORDERED
+    }
+}
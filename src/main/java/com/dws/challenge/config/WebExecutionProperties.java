@@ -0,0 +1,42 @@
+package com.dws.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "challenge.web")
+public class WebExecutionProperties {
+
+    /**
+     * How transfer requests are executed by the REST layer.
+     */
+    private ExecutionMode executionMode = ExecutionMode.SERVLET;
+
+    /**
+     * How transfer request and response bodies are (de)serialized.
+     */
+    private JsonCodec jsonCodec = JsonCodec.STREAMING;
+
+    public enum ExecutionMode {
+        /**
+         * A servlet thread handles each transfer request until the transfer completes.
+         */
+        SERVLET,
+        /**
+         * The servlet thread is released while a transfer waits for the engine and for durability,
+         * so in-flight transfers are not capped by the servlet thread pool.
+         */
+        ASYNC
+    }
+
+    public enum JsonCodec {
+        /**
+         * Jackson databind through an {@code ObjectReader} and {@code ObjectWriter} built once.
+         */
+        DATABIND,
+        /**
+         * A hand-written codec on the streaming parser and generator.
+         */
+        STREAMING
+    }
+}
@@ -1,34 +1,297 @@
 package com.dws.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigDecimal;
-import lombok.Data;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import lombok.Getter;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 
-@Data
+/**
+ * An account whose balance is held as a {@code long} of {@link Money} minor units, so balance
+ * updates do not allocate.
+ * <p>
+ * Every balance change increments a version. The version is odd while the balance is being
+ * written or while the account is claimed by an exclusive multi-account action (see
+ * {@link #tryClaim(long)}); {@link #deposit} and {@link #withdraw} compare-and-set the version
+ * instead of taking a lock, and wait while it is odd: they spin briefly, then yield their core
+ * and finally park between attempts, so writers held up by a long claim do not burn a core each.
+ * Every change publishes the new balance as
+ * the committed balance before the version becomes even again, so {@link #readBalanceUnits}
+ * reads the balance of the last completed change without waiting for writers or claims.
+ */
 public class Account {
 
+  private static final VarHandle VERSION;
+
+  /**
+   * Attempts of a writer waiting for a change or claim to complete before it yields its core, and
+   * before it parks between attempts.
+   */
+  private static final int SPINS_BEFORE_YIELD = 64;
+  private static final int ATTEMPTS_BEFORE_PARK = 128;
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  static {
+    try {
+      VERSION = MethodHandles.lookup().findVarHandle(Account.class, "version", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  @Getter
   @NotNull
   @NotEmpty
   private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  private volatile long balance;
+
+  private volatile long committedBalance;
+
+  private volatile long version;
 
   public Account(String accountId) {
-    this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this(accountId, BigDecimal.ZERO);
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
     @JsonProperty("balance") BigDecimal balance) {
+    if (balance == null) {
+      throw new IllegalArgumentException("Balance must not be null");
+    }
     this.accountId = accountId;
-    this.balance = balance;
+    this.balance = Money.toUnits(balance);
+    this.committedBalance = this.balance;
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Initial balance must be positive.")
+  public BigDecimal getBalance() {
+    return Money.toBigDecimal(loadBalance());
+  }
+
+  @JsonIgnore
+  public long getBalanceUnits() {
+    return loadBalance();
+  }
+
+  /**
+   * Reads the balance as of the last completed change, without locking, waiting or allocating: a
+   * change in progress or a claimed account is read as of before it. Readers never hold writers up.
+   */
+  @JsonIgnore
+  public long readBalanceUnits() {
+    return loadCommittedBalance();
+  }
+
+  /**
+   * Incremented on every balance change, odd while the balance is written or the account is claimed.
+   */
+  @JsonIgnore
+  public long getVersion() {
+    return loadVersion();
+  }
+
+  public void setBalance(BigDecimal amount) {
+    setBalanceUnits(Money.toUnits(amount));
+  }
+
+  /**
+   * Sets the balance. The caller must have exclusive access to the account: hold its lock, own
+   * its shard or have claimed it.
+   */
+  public void setBalanceUnits(long units) {
+    long current = loadVersion();
+    if (isOdd(current)) {
+      // Claimed by the caller, the claim is released by release().
+      storeBalance(units);
+      return;
+    }
+    storeVersion(current + 1);
+    storeBalance(units);
+    storeCommittedBalance(units);
+    storeVersion(current + 2);
+  }
+
+  /**
+   * @throws ArithmeticException if the new balance does not fit into a {@code long}
+   */
+  public void deposit(long units) {
+    long current = beginWrite();
+    long newBalance;
+    try {
+      newBalance = Math.addExact(loadBalance(), units);
+    } catch (ArithmeticException e) {
+      storeVersion(current);
+      throw e;
+    }
+    storeBalance(newBalance);
+    storeCommittedBalance(newBalance);
+    storeVersion(current + 2);
+  }
+
+  /**
+   * @return false, without changing the balance, if the balance is lower than {@code units}
+   */
+  public boolean withdraw(long units) {
+    long current = beginWrite();
+    long currentBalance = loadBalance();
+    if (currentBalance < units) {
+      storeVersion(current);
+      return false;
+    }
+    storeBalance(currentBalance - units);
+    storeCommittedBalance(currentBalance - units);
+    storeVersion(current + 2);
+    return true;
+  }
+
+  /**
+   * Claims the account for the calling thread, which may then change the balance with
+   * {@link #setBalanceUnits} until it calls {@link #release()}.
+   *
+   * @return false if another claim was not released before {@code deadlineNanos} ({@link System#nanoTime()})
+   */
+  public boolean tryClaim(long deadlineNanos) {
+    int attempts = 0;
+    while (true) {
+      long current = loadVersion();
+      if (!isOdd(current) && compareAndSetVersion(current, current + 1)) {
+        return true;
+      }
+      if (System.nanoTime() - deadlineNanos >= 0) {
+        return false;
+      }
+      backOff(++attempts);
+    }
+  }
+
+  /**
+   * Claims the account like {@link #tryClaim(long)}, waiting as long as another claim is held.
+   */
+  public void claim() {
+    beginWrite();
+  }
+
+  public void release() {
+    storeCommittedBalance(loadBalance());
+    storeVersion(loadVersion() + 1);
+  }
+
+  /**
+   * Claims the account like {@link #tryClaim(long)}, but only if its version is still
+   * {@code expectedVersion}, without waiting.
+   *
+   * @return false if the balance changed since {@code expectedVersion} was read or the account is claimed
+   */
+  public boolean tryClaimAt(long expectedVersion) {
+    return !isOdd(expectedVersion) && compareAndSetVersion(expectedVersion, expectedVersion + 1);
+  }
+
+  /**
+   * Gives a claim up without having changed the balance. The version goes back to the one before
+   * the claim, so readers of the balance do not see a change.
+   */
+  public void cancelClaim() {
+    storeVersion(loadVersion() - 1);
+  }
+
+  /**
+   * Whether {@code other} refers to the same balance as this account, and not to an account that
+   * replaced it.
+   */
+  public boolean isSameAccount(Account other) {
+    return this == other;
+  }
+
+  /**
+   * Makes the version odd and returns its previous, even value.
+   */
+  private long beginWrite() {
+    int attempts = 0;
+    while (true) {
+      long current = loadVersion();
+      if (!isOdd(current) && compareAndSetVersion(current, current + 1)) {
+        return current;
+      }
+      backOff(++attempts);
+    }
+  }
+
+  private static void backOff(int attempts) {
+    if (attempts < SPINS_BEFORE_YIELD) {
+      Thread.onSpinWait();
+    } else if (attempts < ATTEMPTS_BEFORE_PARK) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  private static boolean isOdd(long version) {
+    return (version & 1) != 0;
+  }
+
+  // The balance, the committed balance and the version are only accessed through the methods below, so subclasses can
+  // keep them elsewhere, e.g. off-heap. All accesses must have volatile semantics.
+
+  protected long loadVersion() {
+    return version;
+  }
+
+  protected void storeVersion(long newVersion) {
+    version = newVersion;
+  }
+
+  protected boolean compareAndSetVersion(long expectedVersion, long newVersion) {
+    return VERSION.compareAndSet(this, expectedVersion, newVersion);
+  }
+
+  protected long loadBalance() {
+    return balance;
+  }
+
+  protected void storeBalance(long units) {
+    balance = units;
+  }
+
+  protected long loadCommittedBalance() {
+    return committedBalance;
+  }
+
+  protected void storeCommittedBalance(long units) {
+    committedBalance = units;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Account)) {
+      return false;
+    }
+    Account other = (Account) o;
+    return Objects.equals(accountId, other.accountId) && loadBalance() == other.loadBalance();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(accountId, loadBalance());
+  }
+
+  @Override
+  public String toString() {
+    return "Account(accountId=" + accountId + ", balance=" + getBalance() + ")";
   }
 }
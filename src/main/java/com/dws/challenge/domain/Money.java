@@ -0,0 +1,98 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money with a fixed scale of {@value #SCALE} decimal places, held as a {@code long}
+ * of minor units. Arithmetic fails with an {@link ArithmeticException} instead of overflowing.
+ * <p>
+ * Conversion from and to {@link BigDecimal} happens only at the JSON boundary; balances are
+ * updated with plain {@code long} arithmetic.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long units;
+
+    private Money(long units) {
+        this.units = units;
+    }
+
+    public static Money ofUnits(long units) {
+        return units == 0 ? ZERO : new Money(units);
+    }
+
+    /**
+     * @throws ArithmeticException if {@code amount} has more than {@value #SCALE} decimal places or does not fit into a {@code long}
+     */
+    public static Money of(BigDecimal amount) {
+        return ofUnits(toUnits(amount));
+    }
+
+    /**
+     * @throws ArithmeticException if {@code amount} has more than {@value #SCALE} decimal places or does not fit into a {@code long}
+     */
+    public static long toUnits(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Amount " + amount.toPlainString() + " cannot be represented with "
+                    + SCALE + " decimal places");
+        }
+    }
+
+    /**
+     * @return the amount with the smallest non-negative scale representing it, e.g. {@code 1000} rather than {@code 1000.00}
+     */
+    public static BigDecimal toBigDecimal(long units) {
+        if (units == 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal amount = BigDecimal.valueOf(units, SCALE).stripTrailingZeros();
+        return amount.scale() < 0 ? amount.setScale(0) : amount;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(units);
+    }
+
+    public Money plus(Money other) {
+        return ofUnits(Math.addExact(units, other.units));
+    }
+
+    public Money minus(Money other) {
+        return ofUnits(Math.subtractExact(units, other.units));
+    }
+
+    public boolean isPositive() {
+        return units > 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Money && units == ((Money) o).units;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
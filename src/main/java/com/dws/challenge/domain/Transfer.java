@@ -4,7 +4,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
 @Data
@@ -14,6 +13,10 @@ public class Transfer {
     private UUID transferId;
     private String accountIdFrom;
     private String accountIdTo;
-    private BigDecimal amount;
+    private Money amount;
+
+    public static Transfer of(String accountIdFrom, String accountIdTo, Money amount) {
+        return new Transfer(UUID.randomUUID(), accountIdFrom, accountIdTo, amount);
+    }
 
 }
@@ -0,0 +1,31 @@
+package com.dws.challenge.dto;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * An account as of one committed balance, serialized like {@link Account}. Unlike the live
+ * account it cannot change while it is being written out.
+ */
+@Value
+public class AccountResponse {
+
+    @JsonProperty("accountId")
+    String accountId;
+    @JsonIgnore
+    long balanceUnits;
+
+    public static AccountResponse of(Account account) {
+        return new AccountResponse(account.getAccountId(), account.readBalanceUnits());
+    }
+
+    @JsonProperty("balance")
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(balanceUnits);
+    }
+}
@@ -0,0 +1,26 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceExportResponse {
+
+    @JsonProperty("file")
+    private String file;
+    @JsonProperty("taken_at")
+    private Instant takenAt;
+    @JsonProperty("accounts")
+    private long accounts;
+    @JsonProperty("total_balance")
+    private BigDecimal totalBalance;
+}
@@ -0,0 +1,43 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferRequest {
+
+    public static final int MAX_TRANSFERS = 10_000;
+
+    @NotNull
+    @JsonProperty("mode")
+    private Mode mode;
+
+    @NotNull
+    @NotEmpty
+    @Size(max = MAX_TRANSFERS, message = "Batch cannot contain more than " + MAX_TRANSFERS + " transfers.")
+    @JsonProperty("transfers")
+    private List<TransferRequest> transfers;
+
+    public enum Mode {
+        /**
+         * Either every transfer of the batch is executed or none of them is.
+         */
+        ALL_OR_NOTHING,
+        /**
+         * Every transfer which can be executed is executed, the others are reported as failed.
+         */
+        BEST_EFFORT
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResponse {
+
+    @JsonProperty("mode")
+    private BatchTransferRequest.Mode mode;
+    @JsonProperty("executed")
+    private int executed;
+    @JsonProperty("failed")
+    private int failed;
+    @JsonProperty("aborted")
+    private int aborted;
+    @JsonProperty("results")
+    private List<BatchTransferResult> results;
+
+}
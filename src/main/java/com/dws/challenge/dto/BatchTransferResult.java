@@ -0,0 +1,36 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTransferResult {
+
+    @JsonProperty("index")
+    private int index;
+    @JsonProperty("status")
+    private Status status;
+    @JsonProperty("transfer")
+    private TransferResponse transfer;
+    @JsonProperty("error")
+    private String error;
+
+    public enum Status {
+        EXECUTED,
+        FAILED,
+        /**
+         * The transfer itself was valid, but was not executed because another transfer of an
+         * all-or-nothing batch failed.
+         */
+        ABORTED
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one line of a bulk account creation.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkAccountResult {
+
+    @JsonProperty("line")
+    private long line;
+    @JsonProperty("account_id")
+    private String accountId;
+    @JsonProperty("status")
+    private Status status;
+    @JsonProperty("error")
+    private String error;
+
+    public enum Status {
+        /**
+         * The account was created.
+         */
+        CREATED,
+        /**
+         * The line was invalid or the account could not be created; see the error.
+         */
+        FAILED
+    }
+}
@@ -0,0 +1,30 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance of the account of one line of a bulk balance lookup, or why it could not be looked up.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkBalanceResult {
+
+    @JsonProperty("line")
+    private long line;
+    @JsonProperty("account_id")
+    private String accountId;
+    @JsonProperty("balance")
+    private BigDecimal balance;
+    @JsonProperty("error")
+    private String error;
+}
@@ -0,0 +1,36 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * Asks the node owning the destination account to prepare the credit of a cross-node transfer.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterPrepareRequest {
+
+    @NotNull
+    @NotEmpty
+    @JsonProperty("account_id_from")
+    private String accountIdFrom;
+
+    @NotNull
+    @NotEmpty
+    @JsonProperty("account_id_to")
+    private String accountIdTo;
+
+    @NotNull
+    @JsonProperty("amount")
+    private BigDecimal amount;
+
+}
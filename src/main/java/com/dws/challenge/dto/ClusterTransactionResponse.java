@@ -0,0 +1,37 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterTransactionResponse {
+
+    @JsonProperty("transaction_id")
+    private UUID transactionId;
+    @JsonProperty("state")
+    private State state;
+    /**
+     * Why a prepare was refused, {@code null} otherwise.
+     */
+    @JsonProperty("reason")
+    private String reason;
+
+    public enum State {
+        PREPARED,
+        COMMITTED,
+        ABORTED,
+        /**
+         * The node does not know the transaction, or no longer remembers it.
+         */
+        UNKNOWN
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotAccountResponse {
+
+    @JsonProperty("account_id")
+    private String accountId;
+    @JsonProperty("contended_acquisitions")
+    private int contendedAcquisitions;
+    @JsonProperty("hot_since")
+    private Instant hotSince;
+}
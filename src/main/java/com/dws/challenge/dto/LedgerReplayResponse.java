@@ -0,0 +1,25 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerReplayResponse {
+
+    @JsonProperty("entries")
+    private long entries;
+    @JsonProperty("accounts")
+    private int accounts;
+    @JsonProperty("elapsed_ms")
+    private long elapsedMs;
+    @JsonProperty("entries_per_second")
+    private long entriesPerSecond;
+    @JsonProperty("balanced")
+    private boolean balanced;
+}
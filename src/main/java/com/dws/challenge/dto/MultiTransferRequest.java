@@ -0,0 +1,34 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultiTransferRequest {
+
+    public static final int MAX_LEGS = 10_000;
+
+    @NotNull
+    @NotEmpty
+    @JsonProperty("account_id_from")
+    private String accountIdFrom;
+
+    @NotNull
+    @NotEmpty
+    @Size(max = MAX_LEGS, message = "Transfer cannot contain more than " + MAX_LEGS + " legs.")
+    @JsonProperty("legs")
+    private List<@Valid @NotNull TransferLeg> legs;
+
+}
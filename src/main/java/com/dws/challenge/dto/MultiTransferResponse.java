@@ -0,0 +1,31 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultiTransferResponse {
+
+    @JsonProperty("multi_transfer_id")
+    private UUID multiTransferId;
+    @JsonProperty("account_id_from")
+    private String accountIdFrom;
+    @JsonProperty("total_amount")
+    private BigDecimal totalAmount;
+    /**
+     * One transfer per leg, in the order of the legs.
+     */
+    @JsonProperty("transfers")
+    private List<TransferResponse> transfers;
+
+}
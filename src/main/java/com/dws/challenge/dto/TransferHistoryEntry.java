@@ -0,0 +1,42 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferHistoryEntry {
+
+    @JsonProperty("transfer_id")
+    private UUID transferId;
+    @JsonProperty("account_id_from")
+    private String accountIdFrom;
+    @JsonProperty("account_id_to")
+    private String accountIdTo;
+    @JsonProperty("amount")
+    private BigDecimal amount;
+    @JsonProperty("direction")
+    private Direction direction;
+    @JsonProperty("executed_at")
+    private Instant executedAt;
+
+    public enum Direction {
+        /**
+         * The amount left the queried account.
+         */
+        DEBIT,
+        /**
+         * The amount arrived on the queried account.
+         */
+        CREDIT
+    }
+}
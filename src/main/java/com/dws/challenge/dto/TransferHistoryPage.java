@@ -0,0 +1,28 @@
+package com.dws.challenge.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Transfers of an account, newest first. {@code nextCursor} is absent on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferHistoryPage {
+
+    @JsonProperty("account_id")
+    private String accountId;
+    @JsonProperty("transfers")
+    private List<TransferHistoryEntry> transfers;
+    @JsonProperty("next_cursor")
+    private Long nextCursor;
+}
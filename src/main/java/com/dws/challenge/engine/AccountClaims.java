@@ -0,0 +1,60 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.metrics.TransferMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Exclusive actions of the engines which claim accounts through their version instead of locking them.
+ */
+@Slf4j
+final class AccountClaims {
+
+    private AccountClaims() {
+    }
+
+    /**
+     * Claims {@code accounts} in account id order, so two callers never wait for each other's
+     * accounts, and runs {@code action} while they are claimed.
+     *
+     * @return the result of the action, or empty if an account was not claimed within {@code timeout}
+     */
+    static <T> Optional<T> executeClaimed(Collection<Account> accounts, Duration timeout, TransferMetrics transferMetrics,
+                                          SnapshotBarrier snapshotBarrier, Supplier<T> action) {
+        var accountsById = new TreeMap<String, Account>();
+        for (Account account : accounts) {
+            accountsById.put(account.getAccountId(), account);
+        }
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<Account> claimedAccounts = new ArrayList<>(accountsById.size());
+        snapshotBarrier.enter();
+        try {
+            for (Account account : accountsById.values()) {
+                if (!account.tryClaim(deadline)) {
+                    transferMetrics.recordRejection(TransferMetrics.Rejection.CLAIM_TIMEOUT);
+                    log.warn("Cannot claim account {}", account.getAccountId());
+                    return Optional.empty();
+                }
+                claimedAccounts.add(account);
+            }
+            for (Account account : claimedAccounts) {
+                snapshotBarrier.beforeWrite(account);
+            }
+            return Optional.of(action.get());
+        } finally {
+            for (int i = claimedAccounts.size() - 1; i >= 0; i--) {
+                claimedAccounts.get(i).release();
+            }
+            snapshotBarrier.exit();
+        }
+    }
+}
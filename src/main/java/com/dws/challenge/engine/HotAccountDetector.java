@@ -0,0 +1,130 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.TransferProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Finds the accounts whose locks are contended most. Contended lock acquisitions are counted in a
+ * count-min sketch of fixed size, so memory use does not depend on the number of accounts, and
+ * the estimate of an account is never lower than its true count.
+ * <p>
+ * An account becomes hot when its estimate reaches the threshold. {@link #decay()} halves every
+ * counter, so the estimates follow the recent contention rate, and cools down accounts whose
+ * estimate dropped below half the threshold.
+ */
+@Slf4j
+@Component
+public class HotAccountDetector implements MeterBinder {
+
+    private static final int[] ROW_SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final TransferProperties.HotAccounts properties;
+    private final AtomicIntegerArray counters;
+    private final int width;
+    private final Map<String, Instant> hotAccounts = new ConcurrentHashMap<>();
+
+    public HotAccountDetector(TransferProperties transferProperties) {
+        this.properties = transferProperties.getHotAccounts();
+        int sketchWidth = properties.getSketchWidth();
+        if (sketchWidth < 1 || sketchWidth > 1 << 24) {
+            throw new IllegalArgumentException("Sketch width must be between 1 and 2^24: " + sketchWidth);
+        }
+        this.width = sketchWidth == 1 ? 1 : Integer.highestOneBit(sketchWidth - 1) << 1;
+        this.counters = new AtomicIntegerArray(ROW_SEEDS.length * width);
+    }
+
+    /**
+     * Counts one acquisition of the lock of {@code accountId} that found the lock taken.
+     */
+    public void recordContention(String accountId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        int hash = accountId.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < ROW_SEEDS.length; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, hash)));
+        }
+        if (estimate >= properties.getThreshold() && !hotAccounts.containsKey(accountId)
+                && hotAccounts.putIfAbsent(accountId, Instant.now()) == null) {
+            log.info("Account {} is hot after {} contended lock acquisitions", accountId, estimate);
+        }
+    }
+
+    public boolean isHot(String accountId) {
+        return !hotAccounts.isEmpty() && hotAccounts.containsKey(accountId);
+    }
+
+    /**
+     * @return an upper bound of the contended lock acquisitions of {@code accountId}, halved every decay
+     */
+    public int estimate(String accountId) {
+        int hash = accountId.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < ROW_SEEDS.length; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter and cools down hot accounts that are no longer contended.
+     * Increments racing with the halving may be lost, which only lowers the estimates.
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            if (counters.get(i) != 0) {
+                counters.getAndUpdate(i, count -> count >>> 1);
+            }
+        }
+        int coolDownThreshold = properties.getThreshold() / 2;
+        for (String accountId : hotAccounts.keySet()) {
+            if (estimate(accountId) < coolDownThreshold && hotAccounts.remove(accountId) != null) {
+                log.info("Account {} is no longer hot", accountId);
+            }
+        }
+    }
+
+    /**
+     * @return the hot accounts, most contended first
+     */
+    public List<HotAccount> getHotAccounts() {
+        var result = new ArrayList<HotAccount>(hotAccounts.size());
+        hotAccounts.forEach((accountId, hotSince) -> result.add(new HotAccount(accountId, estimate(accountId), hotSince)));
+        result.sort(Comparator.comparingInt(HotAccount::getContendedAcquisitions).reversed());
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transfer.hot.accounts", hotAccounts, Map::size)
+                .description("Accounts whose locks are currently hot")
+                .register(registry);
+    }
+
+    private int index(int row, int hash) {
+        int h = hash * ROW_SEEDS[row];
+        h ^= h >>> 16;
+        return row * width + (h & (width - 1));
+    }
+
+    @Value
+    public static class HotAccount {
+        String accountId;
+        int contendedAcquisitions;
+        Instant hotSince;
+    }
+}
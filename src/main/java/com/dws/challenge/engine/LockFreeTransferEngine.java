@@ -0,0 +1,135 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Updates balances with compare-and-set on the account versions, without lock objects.
+ * <p>
+ * A transfer is a withdrawal from {@code fromAccount} followed by a deposit to {@code toAccount},
+ * so a concurrent reader may briefly see the amount debited but not yet credited. The deposit is
+ * made under a claim of {@code toAccount}, and the transfer is logged before the claim releases
+ * the credit, so a later debit of the credited amount is always logged after it. Exclusive
+ * multi-account actions claim the accounts in account id order instead of locking them.
+ * <p>
+ * While a snapshot is being taken, balances are changed under a claim of the account instead,
+ * so the balance recorded for the snapshot is the one the change replaces.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "challenge.transfer", name = "engine", havingValue = "lock_free")
+public class LockFreeTransferEngine implements TransferEngine {
+
+    private final TransferProperties transferProperties;
+    private final AccountsRepository accountsRepository;
+    private final TransferMetrics transferMetrics;
+    private final SnapshotBarrier snapshotBarrier;
+
+    @Override
+    public Optional<Transfer> transfer(@NonNull Account fromAccount, @NonNull Account toAccount, @NonNull Money amount) {
+        snapshotBarrier.enter();
+        try {
+            if (!withdraw(fromAccount, amount.getUnits())) {
+                throw new ResponseStatusException(BAD_REQUEST, INSUFFICIENT_BALANCE_MESSAGE);
+            }
+            Transfer transfer = Transfer.of(fromAccount.getAccountId(), toAccount.getAccountId(), amount);
+            try {
+                depositAndAppend(toAccount, transfer);
+            } catch (RuntimeException e) {
+                // Neither credited nor logged, so the debit is given back.
+                deposit(fromAccount, amount.getUnits());
+                if (e instanceof ArithmeticException) {
+                    throw new ResponseStatusException(BAD_REQUEST, BALANCE_OVERFLOW_MESSAGE);
+                }
+                throw e;
+            }
+            log.debug("Successfully made a transfer {}", transfer);
+            return Optional.of(transfer);
+        } finally {
+            snapshotBarrier.exit();
+        }
+    }
+
+    @Override
+    public <T> Optional<T> executeExclusively(@NonNull Collection<Account> accounts, @NonNull Supplier<T> action) {
+        return AccountClaims.executeClaimed(accounts, transferProperties.getLockTimeout(), transferMetrics, snapshotBarrier, action);
+    }
+
+    private boolean withdraw(Account account, long units) {
+        if (!snapshotBarrier.isTakingSnapshot()) {
+            return account.withdraw(units);
+        }
+        account.claim();
+        try {
+            long balance = account.getBalanceUnits();
+            if (balance < units) {
+                return false;
+            }
+            snapshotBarrier.beforeWrite(account);
+            account.setBalanceUnits(balance - units);
+            return true;
+        } finally {
+            account.release();
+        }
+    }
+
+    /**
+     * @throws ArithmeticException if the new balance does not fit into a {@code long}
+     */
+    private void deposit(Account account, long units) {
+        if (!snapshotBarrier.isTakingSnapshot()) {
+            account.deposit(units);
+            return;
+        }
+        account.claim();
+        try {
+            long balance = Math.addExact(account.getBalanceUnits(), units);
+            snapshotBarrier.beforeWrite(account);
+            account.setBalanceUnits(balance);
+        } finally {
+            account.release();
+        }
+    }
+
+    /**
+     * Credits the transfer to {@code account} and logs it while the account is claimed, before the
+     * credit becomes visible. Leaves the balance unchanged if the transfer cannot be logged.
+     *
+     * @throws ArithmeticException if the new balance does not fit into a {@code long}
+     */
+    private void depositAndAppend(Account account, Transfer transfer) {
+        account.claim();
+        boolean credited = false;
+        try {
+            long balance = Math.addExact(account.getBalanceUnits(), transfer.getAmount().getUnits());
+            accountsRepository.appendTransfer(transfer);
+            snapshotBarrier.beforeWrite(account);
+            account.setBalanceUnits(balance);
+            credited = true;
+        } finally {
+            if (credited) {
+                account.release();
+            } else {
+                account.cancelClaim();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,426 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Mutates account balances on the calling thread while holding the lock stripes of the accounts.
+ * <p>
+ * Contended lock acquisitions are reported to the {@link HotAccountDetector}. A transfer to a hot
+ * account takes only the lock of the source account and adds the amount to the pending credits
+ * of the hot account, a {@link LongAdder} that absorbs concurrent credits without contention.
+ * Room for the credit next to the balance and the other pending credits is reserved beforehand
+ * by a compare-and-set on their total, so concurrent credits cannot overflow the balance together.
+ * Pending credits are added to the balance by a reconciler every {@code reconcileInterval} and
+ * by every action holding the lock of the account before it reads the balance, so debits and
+ * exclusive actions always see them.
+ * <p>
+ * Transfers, exclusive actions and reconciliations pass the {@link SnapshotBarrier} and record
+ * balances for a snapshot being taken before they change them.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "challenge.transfer", name = "engine", havingValue = "locking", matchIfMissing = true)
+public class LockingTransferEngine implements TransferEngine, DisposableBean {
+
+    private final TransferProperties transferProperties;
+    private final AccountsRepository accountsRepository;
+    private final TransferMetrics transferMetrics;
+    private final HotAccountDetector hotAccountDetector;
+    private final SnapshotBarrier snapshotBarrier;
+    private final StripedLocks accountLocks;
+    private final Map<String, PendingCredits> pendingCredits = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService hotAccountsExecutor;
+
+    public LockingTransferEngine(TransferProperties transferProperties, AccountsRepository accountsRepository,
+                                 TransferMetrics transferMetrics, HotAccountDetector hotAccountDetector,
+                                 SnapshotBarrier snapshotBarrier) {
+        this.transferProperties = transferProperties;
+        this.accountsRepository = accountsRepository;
+        this.transferMetrics = transferMetrics;
+        this.hotAccountDetector = hotAccountDetector;
+        this.snapshotBarrier = snapshotBarrier;
+        this.accountLocks = new StripedLocks(transferProperties.getLockStripes(), transferProperties.isFairLocks());
+
+        var hotAccounts = transferProperties.getHotAccounts();
+        if (hotAccounts.isEnabled()) {
+            hotAccountsExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "hot-accounts");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long decayMillis = hotAccounts.getDecayInterval().toMillis();
+            hotAccountsExecutor.scheduleWithFixedDelay(hotAccountDetector::decay, decayMillis, decayMillis, TimeUnit.MILLISECONDS);
+            long reconcileMillis = hotAccounts.getReconcileInterval().toMillis();
+            hotAccountsExecutor.scheduleWithFixedDelay(this::reconcilePendingCredits, reconcileMillis, reconcileMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            hotAccountsExecutor = null;
+        }
+
+        transferMetrics.gauge("transfer.lock.stripes", "Number of account lock stripes", accountLocks, StripedLocks::size);
+        transferMetrics.gauge("transfer.lock.stripes.locked", "Number of account lock stripes currently held",
+                accountLocks, StripedLocks::lockedCount);
+        transferMetrics.gauge("transfer.lock.waiting.threads", "Threads waiting for an account lock stripe",
+                accountLocks, StripedLocks::queueLength);
+    }
+
+    @Override
+    public Optional<Transfer> transfer(@NonNull Account fromAccount, @NonNull Account toAccount, @NonNull Money amount) {
+        snapshotBarrier.enter();
+        try {
+            return lockAndTransfer(fromAccount, toAccount, amount);
+        } finally {
+            snapshotBarrier.exit();
+        }
+    }
+
+    @Override
+    public <T> Optional<T> executeExclusively(@NonNull Collection<Account> accounts, @NonNull Supplier<T> action) {
+        var accountIds = new ArrayList<String>(accounts.size());
+        for (Account account : accounts) {
+            accountIds.add(account.getAccountId());
+        }
+        int[] stripes = accountLocks.stripesOf(accountIds);
+
+        snapshotBarrier.enter();
+        int acquired = 0;
+        try {
+            for (int stripe : stripes) {
+                if (!acquire(stripe, null)) {
+                    log.warn("Cannot acquire locks for {} accounts", accountIds.size());
+                    return Optional.empty();
+                }
+                acquired++;
+            }
+            for (Account account : accounts) {
+                applyPendingCredits(account);
+                snapshotBarrier.beforeWrite(account);
+            }
+            return Optional.of(action.get());
+        } finally {
+            for (int i = acquired - 1; i >= 0; i--) {
+                accountLocks.lock(stripes[i]).unlock();
+            }
+            snapshotBarrier.exit();
+        }
+    }
+
+    /**
+     * @return pending credits of accounts still in the repository
+     */
+    @Override
+    public Map<String, Long> pendingCredits() {
+        var pending = new HashMap<String, Long>();
+        for (PendingCredits credits : pendingCredits.values()) {
+            long units = credits.units.sum();
+            String accountId = credits.account.getAccountId();
+            Account account = accountsRepository.getAccount(accountId);
+            if (units != 0 && account != null && account.isSameAccount(credits.account)) {
+                pending.put(accountId, units);
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (hotAccountsExecutor == null) {
+            return;
+        }
+        hotAccountsExecutor.shutdown();
+        if (!hotAccountsExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Hot account reconciler did not stop in time");
+        }
+        reconcilePendingCredits();
+    }
+
+    private Optional<Transfer> lockAndTransfer(Account fromAccount, Account toAccount, Money amount) {
+        int fromStripe = accountLocks.stripeOf(fromAccount.getAccountId());
+        int toStripe = accountLocks.stripeOf(toAccount.getAccountId());
+
+        if (fromStripe != toStripe && hotAccountDetector.isHot(toAccount.getAccountId())) {
+            PendingCredits credits = pendingCreditsOf(toAccount);
+            // Without room for the credit, the transfer takes both locks and checks the balance with the credits applied.
+            if (credits.reserve(amount.getUnits())) {
+                return transferToHotAccount(amount, fromAccount, fromStripe, toAccount, credits);
+            }
+        }
+
+        // Stripes are always taken in index order, so two opposite transfers cannot deadlock.
+        boolean fromFirst = fromStripe <= toStripe;
+        Account firstAccount = fromFirst ? fromAccount : toAccount;
+        Account secondAccount = fromFirst ? toAccount : fromAccount;
+        int firstStripe = Math.min(fromStripe, toStripe);
+        int secondStripe = Math.max(fromStripe, toStripe);
+
+        Optional<Transfer> transfer = Optional.empty();
+        if (acquire(firstStripe, firstAccount.getAccountId())) {
+            Lock firstLock = accountLocks.lock(firstStripe);
+            try {
+                if (firstStripe == secondStripe) {
+                    transfer = executeTransfer(amount, fromAccount, toAccount);
+                } else if (acquire(secondStripe, secondAccount.getAccountId())) {
+                    Lock secondLock = accountLocks.lock(secondStripe);
+                    try {
+                        transfer = executeTransfer(amount, fromAccount, toAccount);
+                    } finally {
+                        secondLock.unlock();
+                    }
+                } else {
+                    log.warn("Cannot acquire lock for transfer from {} to {}", fromAccount.getAccountId(), toAccount.getAccountId());
+                }
+            } finally {
+                firstLock.unlock();
+            }
+        } else {
+            log.warn("Cannot acquire lock for transfer from {} to {}", fromAccount.getAccountId(), toAccount.getAccountId());
+        }
+        return transfer;
+    }
+
+    /**
+     * Debits {@code fromAccount} holding only its lock and adds the credit reserved in
+     * {@code credits} to the pending credits of the hot {@code toAccount}, or gives the reservation
+     * up. The transfer is logged before the credit becomes visible, so a later debit of the credited
+     * amount is always logged after it.
+     */
+    private Optional<Transfer> transferToHotAccount(Money amount, Account fromAccount, int fromStripe, Account toAccount,
+                                                    PendingCredits credits) {
+        boolean credited = false;
+        try {
+            if (!acquire(fromStripe, fromAccount.getAccountId())) {
+                log.warn("Cannot acquire lock for transfer from {} to hot account {}", fromAccount.getAccountId(), toAccount.getAccountId());
+                return Optional.empty();
+            }
+            Lock lock = accountLocks.lock(fromStripe);
+            try {
+                applyPendingCredits(fromAccount);
+                long fromBalance = fromAccount.getBalanceUnits();
+                if (fromBalance < amount.getUnits()) {
+                    throw new ResponseStatusException(BAD_REQUEST, INSUFFICIENT_BALANCE_MESSAGE);
+                }
+                snapshotBarrier.beforeWrite(fromAccount);
+                fromAccount.setBalanceUnits(fromBalance - amount.getUnits());
+
+                Transfer transfer = Transfer.of(fromAccount.getAccountId(), toAccount.getAccountId(), amount);
+                accountsRepository.appendTransfer(transfer);
+                credits.units.add(amount.getUnits());
+                credited = true;
+                log.debug("Successfully made a transfer {} to a hot account", transfer);
+                return Optional.of(transfer);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            if (!credited) {
+                credits.reserved.addAndGet(-amount.getUnits());
+            }
+        }
+    }
+
+    private PendingCredits pendingCreditsOf(Account account) {
+        PendingCredits credits = pendingCredits.get(account.getAccountId());
+        if (credits != null && credits.account.isSameAccount(account)) {
+            return credits;
+        }
+        // The account was replaced, e.g. by clearing the repository; credits of the old one are dropped with it.
+        return pendingCredits.compute(account.getAccountId(),
+                (accountId, current) -> current != null && current.account.isSameAccount(account) ? current : new PendingCredits(account));
+    }
+
+    /**
+     * @return the pending credits of {@code account}, or null if it never had any
+     */
+    private PendingCredits existingPendingCreditsOf(Account account) {
+        if (pendingCredits.isEmpty()) {
+            return null;
+        }
+        PendingCredits credits = pendingCredits.get(account.getAccountId());
+        return credits != null && credits.account.isSameAccount(account) ? credits : null;
+    }
+
+    /**
+     * Adds the pending credits of {@code account} to its balance. The caller must hold the lock of the account.
+     */
+    private void applyPendingCredits(Account account) {
+        PendingCredits credits = existingPendingCreditsOf(account);
+        if (credits == null) {
+            return;
+        }
+        long units = credits.units.sum();
+        if (units == 0) {
+            return;
+        }
+        long balance;
+        try {
+            balance = Math.addExact(account.getBalanceUnits(), units);
+        } catch (ArithmeticException e) {
+            log.error("Pending credits of {} overflow its balance, they stay pending", account.getAccountId());
+            return;
+        }
+        snapshotBarrier.beforeWrite(account);
+        account.setBalanceUnits(balance);
+        credits.units.add(-units);
+        // Released after the balance is set: a concurrent reservation may count the credits twice, never miss them.
+        credits.reserved.addAndGet(-units);
+    }
+
+    private void reconcilePendingCredits() {
+        for (PendingCredits credits : pendingCredits.values()) {
+            if (credits.units.sum() == 0) {
+                continue;
+            }
+            String accountId = credits.account.getAccountId();
+            Account account = accountsRepository.getAccount(accountId);
+            if (account == null || !account.isSameAccount(credits.account)) {
+                pendingCredits.remove(accountId, credits);
+                continue;
+            }
+            snapshotBarrier.enter();
+            try {
+                if (!applyPendingCreditsWithLock(account)) {
+                    return;
+                }
+            } finally {
+                snapshotBarrier.exit();
+            }
+        }
+    }
+
+    /**
+     * @return false if the calling thread was interrupted
+     */
+    private boolean applyPendingCreditsWithLock(Account account) {
+        Lock lock = accountLocks.lock(accountLocks.stripeOf(account.getAccountId()));
+        try {
+            if (!lock.tryLock(transferProperties.getLockTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            applyPendingCredits(account);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private boolean acquire(int stripe, String accountId) {
+        if (accountId != null && accountLocks.isLocked(stripe)) {
+            hotAccountDetector.recordContention(accountId);
+        }
+        Lock lock = accountLocks.lock(stripe);
+        long start = System.nanoTime();
+        boolean acquired;
+        TransferMetrics.Rejection rejection;
+        if (transferProperties.getLockMode() == TransferProperties.LockMode.TRY_LOCK) {
+            acquired = lock.tryLock();
+            rejection = TransferMetrics.Rejection.LOCK_BUSY;
+        } else {
+            try {
+                acquired = lock.tryLock(transferProperties.getLockTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            rejection = TransferMetrics.Rejection.LOCK_TIMEOUT;
+        }
+        transferMetrics.recordLockWait(System.nanoTime() - start,
+                acquired ? TransferMetrics.LockOutcome.ACQUIRED : TransferMetrics.LockOutcome.TIMED_OUT);
+        if (!acquired) {
+            transferMetrics.recordRejection(rejection);
+        }
+        return acquired;
+    }
+
+    private Optional<Transfer> executeTransfer(Money amount, Account fromAccount, Account toAccount) {
+        applyPendingCredits(fromAccount);
+        applyPendingCredits(toAccount);
+        long fromBalance = fromAccount.getBalanceUnits();
+        if (fromBalance < amount.getUnits()) {
+            throw new ResponseStatusException(BAD_REQUEST, INSUFFICIENT_BALANCE_MESSAGE);
+        }
+        // Credits to a hot account still arriving without its lock share the room left in its balance.
+        PendingCredits toCredits = existingPendingCreditsOf(toAccount);
+        if (toCredits != null && !toCredits.reserve(amount.getUnits())) {
+            throw new ResponseStatusException(BAD_REQUEST, BALANCE_OVERFLOW_MESSAGE);
+        }
+        try {
+            long toBalance = TransferEngine.credit(toAccount.getBalanceUnits(), amount.getUnits());
+            snapshotBarrier.beforeWrite(fromAccount);
+            snapshotBarrier.beforeWrite(toAccount);
+            fromAccount.setBalanceUnits(fromBalance - amount.getUnits());
+            toAccount.setBalanceUnits(toBalance);
+        } finally {
+            if (toCredits != null) {
+                toCredits.reserved.addAndGet(-amount.getUnits());
+            }
+        }
+
+        Transfer transfer = Transfer.of(fromAccount.getAccountId(), toAccount.getAccountId(), amount);
+        accountsRepository.appendTransfer(transfer);
+        log.debug("Successfully made a transfer {}", transfer);
+        return Optional.of(transfer);
+    }
+
+    private static final class PendingCredits {
+
+        private final Account account;
+        private final LongAdder units = new LongAdder();
+        /**
+         * Pending credits and credits reserved by transfers not yet logged.
+         */
+        private final AtomicLong reserved = new AtomicLong();
+
+        private PendingCredits(Account account) {
+            this.account = account;
+        }
+
+        /**
+         * @return false, without reserving, if the balance has no room for {@code amountUnits} next to the reserved credits
+         */
+        private boolean reserve(long amountUnits) {
+            while (true) {
+                long current = reserved.get();
+                // Read after the reserved credits: credits applied meanwhile are counted twice, never missed.
+                long balance = account.getBalanceUnits();
+                if (amountUnits > Long.MAX_VALUE - balance - current) {
+                    return false;
+                }
+                if (reserved.compareAndSet(current, current + amountUnits)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
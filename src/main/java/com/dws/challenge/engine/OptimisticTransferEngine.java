@@ -0,0 +1,109 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Reads both balances with their versions without locking, computes the new balances and commits
+ * them with {@link AccountsRepository#commitTransfer}, which applies them only if neither account
+ * changed in between.
+ * <p>
+ * A conflicting transfer is retried after a random backoff of up to {@code initialBackoff},
+ * doubled for every further retry up to {@code maxBackoff}, and rejected after
+ * {@code maxAttempts} attempts. Without contention a transfer costs two compare-and-sets and
+ * never waits; under heavy contention on few accounts the retries cost more than waiting for a lock.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "challenge.transfer", name = "engine", havingValue = "optimistic")
+public class OptimisticTransferEngine implements TransferEngine {
+
+    private final TransferProperties transferProperties;
+    private final AccountsRepository accountsRepository;
+    private final TransferMetrics transferMetrics;
+    private final SnapshotBarrier snapshotBarrier;
+
+    @Override
+    public Optional<Transfer> transfer(@NonNull Account fromAccount, @NonNull Account toAccount, @NonNull Money amount) {
+        TransferProperties.Optimistic optimistic = transferProperties.getOptimistic();
+        long units = amount.getUnits();
+        Transfer transfer = null;
+        for (int attempt = 1; ; attempt++) {
+            snapshotBarrier.enter();
+            try {
+                long fromVersion = fromAccount.getVersion();
+                long fromBalance = fromAccount.getBalanceUnits();
+                long toVersion = toAccount.getVersion();
+                long toBalance = toAccount.getBalanceUnits();
+                // Both balances are consistent if neither version is odd nor changed while they were read.
+                if (isStable(fromAccount, fromVersion) && isStable(toAccount, toVersion)) {
+                    if (fromBalance < units) {
+                        throw new ResponseStatusException(BAD_REQUEST, INSUFFICIENT_BALANCE_MESSAGE);
+                    }
+                    long newToBalance = TransferEngine.credit(toBalance, units);
+                    if (transfer == null) {
+                        transfer = Transfer.of(fromAccount.getAccountId(), toAccount.getAccountId(), amount);
+                    }
+                    snapshotBarrier.beforeWrite(fromAccount, fromBalance);
+                    snapshotBarrier.beforeWrite(toAccount, toBalance);
+                    if (accountsRepository.commitTransfer(transfer, fromAccount, fromVersion, fromBalance - units,
+                            toAccount, toVersion, newToBalance)) {
+                        log.debug("Successfully made a transfer {}", transfer);
+                        return Optional.of(transfer);
+                    }
+                }
+            } finally {
+                snapshotBarrier.exit();
+            }
+
+            if (attempt >= optimistic.getMaxAttempts()) {
+                transferMetrics.recordRejection(TransferMetrics.Rejection.CONFLICT);
+                log.warn("Cannot commit transfer from {} to {} after {} attempts", fromAccount.getAccountId(),
+                        toAccount.getAccountId(), attempt);
+                return Optional.empty();
+            }
+            transferMetrics.recordConflictRetry();
+            backOff(attempt, optimistic);
+        }
+    }
+
+    @Override
+    public <T> Optional<T> executeExclusively(@NonNull Collection<Account> accounts, @NonNull Supplier<T> action) {
+        return AccountClaims.executeClaimed(accounts, transferProperties.getLockTimeout(), transferMetrics, snapshotBarrier, action);
+    }
+
+    private static boolean isStable(Account account, long version) {
+        return (version & 1) == 0 && account.getVersion() == version;
+    }
+
+    /**
+     * Parks for a random time below the backoff bound of {@code attempt}, so conflicting transfers
+     * spread out instead of colliding again.
+     */
+    private static void backOff(int attempt, TransferProperties.Optimistic optimistic) {
+        long maxNanos = optimistic.getMaxBackoff().toNanos();
+        long boundNanos = Math.min(maxNanos, optimistic.getInitialBackoff().toNanos() << Math.min(attempt - 1, 30));
+        if (boundNanos > 0) {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(boundNanos + 1));
+        }
+    }
+}
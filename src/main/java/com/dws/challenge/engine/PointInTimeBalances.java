@@ -0,0 +1,60 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The balances all accounts had at one instant, read while transfers keep changing them.
+ * <p>
+ * Engines call {@link SnapshotBarrier#beforeWrite} before they change a balance, which records
+ * the balance of the account at the instant the first time it changes afterwards. Accounts that
+ * did not change since are read directly.
+ */
+public final class PointInTimeBalances {
+
+    /**
+     * Returned by {@link #balanceOf} for accounts created after the instant.
+     */
+    public static final long NOT_CREATED = Long.MIN_VALUE;
+
+    @Getter
+    private final Instant takenAt;
+    private final Map<String, Long> pendingCredits;
+    private final Map<String, Long> balancesAtInstant = new ConcurrentHashMap<>();
+
+    PointInTimeBalances(Instant takenAt, Map<String, Long> pendingCredits) {
+        this.takenAt = takenAt;
+        this.pendingCredits = pendingCredits;
+    }
+
+    /**
+     * @return the balance of {@code account} at the instant in minor units, or {@link #NOT_CREATED}
+     */
+    public long balanceOf(Account account) {
+        String accountId = account.getAccountId();
+        // Never waits for a write or claim in progress: a writer records the balance before it
+        // commits a change, so a committed balance without a recorded one dates from before the instant.
+        long balance = account.readBalanceUnits();
+        Long balanceAtInstant = balancesAtInstant.get(accountId);
+        return withPendingCredits(accountId, balanceAtInstant != null ? balanceAtInstant : balance);
+    }
+
+    void recordBalance(String accountId, long balanceUnits) {
+        balancesAtInstant.putIfAbsent(accountId, balanceUnits);
+    }
+
+    void recordCreation(String accountId) {
+        balancesAtInstant.putIfAbsent(accountId, NOT_CREATED);
+    }
+
+    private long withPendingCredits(String accountId, long balanceUnits) {
+        if (balanceUnits == NOT_CREATED) {
+            return NOT_CREATED;
+        }
+        return balanceUnits + pendingCredits.getOrDefault(accountId, 0L);
+    }
+}
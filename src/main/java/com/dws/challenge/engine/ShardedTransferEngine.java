@@ -0,0 +1,337 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Partitions accounts into shards, each owned by a single thread which is the only writer of
+ * the balances in its shard, so balances are updated without any locks.
+ * <p>
+ * A transfer between two shards is applied in two phases: the source shard debits the
+ * {@code fromAccount} and then hands the credit of {@code toAccount} off to the destination shard.
+ * Hand-offs are queued separately from new transfers and are never rejected, so a debited amount
+ * is always credited.
+ * <p>
+ * {@link #executeExclusively} parks every shard owning one of the accounts, one caller at a time,
+ * and runs the action while those shards are idle.
+ * <p>
+ * A transfer is appended to the repository by the shard applying its credit, before that shard
+ * can pass the credited amount on. If the append fails, the credit and the debit are undone and
+ * the transfer fails with the error of the append.
+ * <p>
+ * A transfer passes the {@link SnapshotBarrier} from its submission until its credit, or the undo
+ * of its debit, is applied.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "challenge.transfer", name = "engine", havingValue = "sharded")
+public class ShardedTransferEngine implements TransferEngine, DisposableBean {
+
+    private final AccountsRepository accountsRepository;
+    private final TransferMetrics transferMetrics;
+    private final SnapshotBarrier snapshotBarrier;
+    private final Shard[] shards;
+    private final ReentrantLock exclusiveLock = new ReentrantLock();
+    private final long exclusiveTimeoutNanos;
+
+    public ShardedTransferEngine(TransferProperties transferProperties, AccountsRepository accountsRepository,
+                                 TransferMetrics transferMetrics, SnapshotBarrier snapshotBarrier) {
+        this.accountsRepository = accountsRepository;
+        this.transferMetrics = transferMetrics;
+        this.snapshotBarrier = snapshotBarrier;
+        this.exclusiveTimeoutNanos = transferProperties.getLockTimeout().toNanos();
+        this.shards = new Shard[transferProperties.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, transferProperties.getShardQueueCapacity());
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+        transferMetrics.gauge("transfer.shard.queue.size", "Transfers waiting for any shard", this,
+                ShardedTransferEngine::queuedTransfers);
+    }
+
+    @Override
+    public Optional<Transfer> transfer(@NonNull Account fromAccount, @NonNull Account toAccount, @NonNull Money amount) {
+        try {
+            return transferAsync(fromAccount, toAccount, amount).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Completes the returned future on the shard thread applying the credit, the calling thread does not wait.
+     */
+    @Override
+    public CompletableFuture<Optional<Transfer>> transferAsync(@NonNull Account fromAccount, @NonNull Account toAccount,
+                                                               @NonNull Money amount) {
+        Shard fromShard = shardOf(fromAccount);
+        Shard toShard = shardOf(toAccount);
+        CompletableFuture<Transfer> result = new CompletableFuture<>();
+
+        long units = amount.getUnits();
+        Runnable debit = failing(result, () -> {
+            long fromBalance = fromAccount.getBalanceUnits();
+            if (fromBalance < units) {
+                result.completeExceptionally(new ResponseStatusException(BAD_REQUEST, INSUFFICIENT_BALANCE_MESSAGE));
+                return;
+            }
+            if (fromShard == toShard) {
+                long toBalance;
+                try {
+                    toBalance = TransferEngine.credit(toAccount.getBalanceUnits(), units);
+                } catch (ResponseStatusException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                snapshotBarrier.beforeWrite(fromAccount);
+                snapshotBarrier.beforeWrite(toAccount);
+                fromAccount.setBalanceUnits(fromBalance - units);
+                toAccount.setBalanceUnits(toBalance);
+                try {
+                    result.complete(appendTransfer(fromAccount, toAccount, amount));
+                } catch (RuntimeException e) {
+                    fromAccount.setBalanceUnits(fromBalance);
+                    toAccount.setBalanceUnits(toBalance - units);
+                    result.completeExceptionally(e);
+                }
+                return;
+            }
+
+            snapshotBarrier.beforeWrite(fromAccount);
+            fromAccount.setBalanceUnits(fromBalance - units);
+            toShard.handOff(failing(result, () -> {
+                long toBalance;
+                try {
+                    toBalance = TransferEngine.credit(toAccount.getBalanceUnits(), units);
+                } catch (ResponseStatusException e) {
+                    undoDebit(fromShard, fromAccount, units, result, e);
+                    return;
+                }
+                snapshotBarrier.beforeWrite(toAccount);
+                toAccount.setBalanceUnits(toBalance);
+                try {
+                    result.complete(appendTransfer(fromAccount, toAccount, amount));
+                } catch (RuntimeException e) {
+                    toAccount.setBalanceUnits(toBalance - units);
+                    undoDebit(fromShard, fromAccount, units, result, e);
+                }
+            }));
+        });
+
+        snapshotBarrier.enter();
+        if (!fromShard.offer(debit)) {
+            snapshotBarrier.exit();
+            transferMetrics.recordRejection(TransferMetrics.Rejection.SHARD_QUEUE_FULL);
+            log.warn("Cannot enqueue transfer, shard {} is full", fromShard.index);
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        result.whenComplete((transfer, failure) -> snapshotBarrier.exit());
+
+        return result.thenApply(transfer -> {
+            log.debug("Successfully made a transfer {}", transfer);
+            return Optional.of(transfer);
+        });
+    }
+
+    @Override
+    public <T> Optional<T> executeExclusively(@NonNull Collection<Account> accounts, @NonNull Supplier<T> action) {
+        Set<Shard> involvedShards = new LinkedHashSet<>();
+        for (Account account : accounts) {
+            involvedShards.add(shardOf(account));
+        }
+
+        snapshotBarrier.enter();
+        try {
+            return parkAndExecute(involvedShards, accounts, action);
+        } finally {
+            snapshotBarrier.exit();
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            shard.thread.join();
+        }
+    }
+
+    private <T> Optional<T> parkAndExecute(Set<Shard> involvedShards, Collection<Account> accounts, Supplier<T> action) {
+        // Only one caller parks shards at a time, otherwise two callers could each park a shard the other one waits for.
+        try {
+            if (!exclusiveLock.tryLock(exclusiveTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                transferMetrics.recordRejection(TransferMetrics.Rejection.LOCK_TIMEOUT);
+                log.warn("Cannot claim {} shards, another exclusive action is running", involvedShards.size());
+                return Optional.empty();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+        try {
+            var parked = new CountDownLatch(involvedShards.size());
+            var released = new CountDownLatch(1);
+            for (Shard shard : involvedShards) {
+                shard.handOff(() -> {
+                    parked.countDown();
+                    awaitUninterruptibly(released);
+                });
+            }
+            try {
+                awaitUninterruptibly(parked);
+                for (Account account : accounts) {
+                    snapshotBarrier.beforeWrite(account);
+                }
+                return Optional.of(action.get());
+            } finally {
+                released.countDown();
+            }
+        } finally {
+            exclusiveLock.unlock();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gives the debited amount back on the shard owning {@code fromAccount}, then fails the transfer.
+     */
+    private static void undoDebit(Shard fromShard, Account fromAccount, long units, CompletableFuture<Transfer> result,
+                                  RuntimeException failure) {
+        fromShard.handOff(() -> {
+            fromAccount.setBalanceUnits(fromAccount.getBalanceUnits() + units);
+            result.completeExceptionally(failure);
+        });
+    }
+
+    /**
+     * Fails the transfer if {@code task} throws, so its caller is never left waiting.
+     */
+    private static Runnable failing(CompletableFuture<Transfer> result, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                throw e;
+            }
+        };
+    }
+
+    private int queuedTransfers() {
+        int queued = 0;
+        for (Shard shard : shards) {
+            queued += shard.transfers.size();
+        }
+        return queued;
+    }
+
+    private Transfer appendTransfer(Account fromAccount, Account toAccount, Money amount) {
+        Transfer transfer = Transfer.of(fromAccount.getAccountId(), toAccount.getAccountId(), amount);
+        accountsRepository.appendTransfer(transfer);
+        return transfer;
+    }
+
+    private Shard shardOf(Account account) {
+        int hash = account.getAccountId().hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    private static final class Shard implements Runnable {
+
+        private final int index;
+        private final BlockingQueue<Runnable> transfers;
+        private final Queue<Runnable> handOffs = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Shard(int index, int queueCapacity) {
+            this.index = index;
+            this.transfers = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "transfer-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        private boolean offer(Runnable task) {
+            if (!transfers.offer(task)) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            return true;
+        }
+
+        private void handOff(Runnable task) {
+            handOffs.add(task);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                // Hand-offs first: they complete transfers which have already been debited.
+                Runnable task = handOffs.poll();
+                if (task == null) {
+                    task = transfers.poll();
+                }
+                if (task == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Unexpected failure on shard {}", index, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.CONFLICT;
+
+/**
+ * Takes {@link PointInTimeBalances} at an instant when no transfer is half applied, without
+ * stopping transfers for longer than the ones in flight take to finish.
+ * <p>
+ * Every change of balances, a transfer from its first to its last balance change or an account
+ * creation, runs between {@link #enter()} and {@link #exit()}. Entering increments a
+ * {@link LongAdder}, so transfers do not contend on the barrier. {@link #takeSnapshot} turns new
+ * entries away until the ones in flight have exited, and from then on until
+ * {@link #releaseSnapshot} engines record the balance of an account the first time they change it.
+ * Turned away entries wait on a monitor until the snapshot is taken, and the snapshot polls the
+ * entries in flight with short parks, so neither side keeps a core busy while transfers holding
+ * accounts for long finish.
+ */
+@Slf4j
+@Component
+public class SnapshotBarrier {
+
+    private static final int SPINS_BEFORE_PARK = 64;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final LongAdder inFlight = new LongAdder();
+    private final Object snapshotLock = new Object();
+    private final Object resumed = new Object();
+    private volatile boolean pausing;
+    private volatile PointInTimeBalances snapshot;
+
+    /**
+     * Waits while a snapshot is being taken. Calls must not be nested, a nested call could wait
+     * for the snapshot which waits for the outer call.
+     */
+    public void enter() {
+        while (true) {
+            inFlight.increment();
+            if (!pausing) {
+                return;
+            }
+            inFlight.decrement();
+            awaitResumed();
+        }
+    }
+
+    public void exit() {
+        inFlight.decrement();
+    }
+
+    public boolean isTakingSnapshot() {
+        return snapshot != null;
+    }
+
+    /**
+     * Records the balance of {@code account} for the snapshot being taken, if any. The caller must
+     * be between {@link #enter()} and {@link #exit()} and have exclusive access to the account.
+     */
+    public void beforeWrite(Account account) {
+        PointInTimeBalances current = snapshot;
+        if (current != null) {
+            current.recordBalance(account.getAccountId(), account.getBalanceUnits());
+        }
+    }
+
+    /**
+     * Like {@link #beforeWrite(Account)} for a caller without exclusive access, which read
+     * {@code balanceUnits} consistently with the version of the account after {@link #enter()}
+     * and changes the balance only if that version did not change.
+     */
+    public void beforeWrite(Account account, long balanceUnits) {
+        PointInTimeBalances current = snapshot;
+        if (current != null) {
+            current.recordBalance(account.getAccountId(), balanceUnits);
+        }
+    }
+
+    /**
+     * Excludes the account from the snapshot being taken, if any. The caller must be between
+     * {@link #enter()} and {@link #exit()} and must have checked that the account does not exist.
+     */
+    public void beforeCreate(String accountId) {
+        PointInTimeBalances current = snapshot;
+        if (current != null) {
+            current.recordCreation(accountId);
+        }
+    }
+
+    /**
+     * @param pendingCredits credits applied by transfers but not yet added to balances, read while no transfer is in flight
+     * @throws ResponseStatusException if another snapshot is being taken
+     */
+    public PointInTimeBalances takeSnapshot(Supplier<Map<String, Long>> pendingCredits) {
+        synchronized (snapshotLock) {
+            if (snapshot != null) {
+                throw new ResponseStatusException(CONFLICT, "Another balance snapshot is being taken");
+            }
+            long start = System.nanoTime();
+            pausing = true;
+            try {
+                int spins = 0;
+                while (inFlight.sum() != 0) {
+                    if (++spins < SPINS_BEFORE_PARK) {
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(PARK_NANOS);
+                    }
+                }
+                snapshot = new PointInTimeBalances(Instant.now(), pendingCredits.get());
+            } finally {
+                synchronized (resumed) {
+                    pausing = false;
+                    resumed.notifyAll();
+                }
+            }
+            log.info("Took a balance snapshot, transfers were paused for {} us", (System.nanoTime() - start) / 1000);
+            return snapshot;
+        }
+    }
+
+    private void awaitResumed() {
+        boolean interrupted = false;
+        synchronized (resumed) {
+            while (pausing) {
+                try {
+                    resumed.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void releaseSnapshot(PointInTimeBalances released) {
+        synchronized (snapshotLock) {
+            if (snapshot == released) {
+                snapshot = null;
+            }
+        }
+    }
+}
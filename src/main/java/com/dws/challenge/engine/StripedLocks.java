@@ -0,0 +1,98 @@
+package com.dws.challenge.engine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed pool of locks shared by all accounts. An account id always maps to the same stripe, so
+ * memory use does not depend on the number of accounts.
+ * <p>
+ * Several accounts can share a stripe. Callers must take stripes in ascending index order and
+ * take a shared stripe only once, which {@link #stripesOf(Collection)} takes care of.
+ */
+public final class StripedLocks {
+
+    private final Lock[] locks;
+    private final int shift;
+
+    public StripedLocks(int stripes, boolean fair) {
+        if (stripes < 1 || stripes > 1 << 30) {
+            throw new IllegalArgumentException("Number of lock stripes must be between 1 and 2^30: " + stripes);
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock(fair);
+        }
+        this.shift = 32 - Integer.numberOfTrailingZeros(size);
+    }
+
+    public int size() {
+        return locks.length;
+    }
+
+    public int stripeOf(String accountId) {
+        if (shift == 32) {
+            return 0;
+        }
+        // Fibonacci hashing spreads similar ids such as "acc-1", "acc-2" over all stripes.
+        return (accountId.hashCode() * 0x9E3779B9) >>> shift;
+    }
+
+    public Lock lock(int stripe) {
+        return locks[stripe];
+    }
+
+    /**
+     * @return whether the stripe is currently held, sampled without synchronization
+     */
+    public boolean isLocked(int stripe) {
+        return ((ReentrantLock) locks[stripe]).isLocked();
+    }
+
+    /**
+     * @return the number of stripes currently held, sampled without synchronization
+     */
+    public int lockedCount() {
+        int locked = 0;
+        for (Lock lock : locks) {
+            if (((ReentrantLock) lock).isLocked()) {
+                locked++;
+            }
+        }
+        return locked;
+    }
+
+    /**
+     * @return an estimate of the number of threads waiting for any stripe
+     */
+    public int queueLength() {
+        int waiting = 0;
+        for (Lock lock : locks) {
+            waiting += ((ReentrantLock) lock).getQueueLength();
+        }
+        return waiting;
+    }
+
+    /**
+     * @return distinct stripes of the given account ids in ascending order
+     */
+    public int[] stripesOf(Collection<String> accountIds) {
+        int[] stripes = new int[accountIds.size()];
+        int i = 0;
+        for (String accountId : accountIds) {
+            stripes[i++] = stripeOf(accountId);
+        }
+        Arrays.sort(stripes);
+
+        int distinct = 0;
+        for (int j = 0; j < stripes.length; j++) {
+            if (j == 0 || stripes[j] != stripes[distinct - 1]) {
+                stripes[distinct++] = stripes[j];
+            }
+        }
+        return Arrays.copyOf(stripes, distinct);
+    }
+}
@@ -0,0 +1,74 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Applies balance changes of a transfer between two already validated accounts.
+ */
+public interface TransferEngine {
+
+    String INSUFFICIENT_BALANCE_MESSAGE = "Insufficient balance in the fromAccount";
+    String BALANCE_OVERFLOW_MESSAGE = "Balance of the toAccount is too large";
+
+    /**
+     * Moves {@code amount} from {@code fromAccount} to {@code toAccount}.
+     *
+     * @return the executed transfer, or empty if the engine could not execute it right now
+     * @throws ResponseStatusException if the balance of {@code fromAccount} is insufficient or the balance of
+     *                                 {@code toAccount} would overflow
+     */
+    Optional<Transfer> transfer(Account fromAccount, Account toAccount, Money amount);
+
+    /**
+     * Like {@link #transfer}, but completes the returned future instead of blocking the calling
+     * thread where the engine can. By default the transfer runs on the calling thread.
+     */
+    default CompletableFuture<Optional<Transfer>> transferAsync(Account fromAccount, Account toAccount, Money amount) {
+        try {
+            return CompletableFuture.completedFuture(transfer(fromAccount, toAccount, amount));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Runs {@code action} on the calling thread while no other transfer can change the balances of
+     * {@code accounts}, so the action may read and update those balances directly.
+     *
+     * @return the result of the action, or empty if the accounts could not be claimed right now
+     */
+    <T> Optional<T> executeExclusively(Collection<Account> accounts, Supplier<T> action);
+
+    /**
+     * Credits of executed transfers which are not yet added to the balances of their accounts, read
+     * by {@link SnapshotBarrier#takeSnapshot} while no transfer is in flight.
+     *
+     * @return pending minor units by account id
+     */
+    default Map<String, Long> pendingCredits() {
+        return Map.of();
+    }
+
+    /**
+     * @return {@code balanceUnits + amountUnits}
+     * @throws ResponseStatusException if the sum does not fit into a {@code long}
+     */
+    static long credit(long balanceUnits, long amountUnits) {
+        try {
+            return Math.addExact(balanceUnits, amountUnits);
+        } catch (ArithmeticException e) {
+            throw new ResponseStatusException(BAD_REQUEST, BALANCE_OVERFLOW_MESSAGE);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.dws.challenge.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Answers a request with {@code 429 Too Many Requests} and the seconds to wait in {@code Retry-After}.
+ */
+public class TooManyRequestsException extends ResponseStatusException {
+
+  private final long retryAfterSeconds;
+
+  public TooManyRequestsException(String reason, long retryAfterSeconds) {
+    super(HttpStatus.TOO_MANY_REQUESTS, reason);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  @Override
+  public HttpHeaders getResponseHeaders() {
+    var headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    return headers;
+  }
+}
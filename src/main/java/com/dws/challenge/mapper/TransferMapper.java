@@ -13,7 +13,7 @@ public class TransferMapper {
                 .transferId(transfer.getTransferId())
                 .accountIdFrom(transfer.getAccountIdFrom())
                 .accountIdTo(transfer.getAccountIdTo())
-                .amount(transfer.getAmount())
+                .amount(transfer.getAmount().toBigDecimal())
                 .build();
     }
 }
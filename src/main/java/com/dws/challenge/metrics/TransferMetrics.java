@@ -0,0 +1,181 @@
+package com.dws.challenge.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters of the transfer hot path. Every meter is registered up front and looked up by enum
+ * ordinal, so recording a value does not allocate.
+ */
+@Component
+public class TransferMetrics {
+
+    private final MeterRegistry registry;
+    private final Timer[] transferTimers;
+    private final Timer[] lockWaitTimers;
+    private final Counter[] rejectionCounters;
+    private final Counter[] throttleCounters;
+    private final Timer repositoryLookupTimer;
+    private final Counter conflictRetryCounter;
+
+    public TransferMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        TransferOutcome[] outcomes = TransferOutcome.values();
+        transferTimers = new Timer[outcomes.length];
+        for (TransferOutcome outcome : outcomes) {
+            transferTimers[outcome.ordinal()] = latencyTimer("transfer.latency", "Time to execute a transfer")
+                    .tag("outcome", outcome.tagValue())
+                    .register(registry);
+        }
+
+        LockOutcome[] lockOutcomes = LockOutcome.values();
+        lockWaitTimers = new Timer[lockOutcomes.length];
+        for (LockOutcome outcome : lockOutcomes) {
+            lockWaitTimers[outcome.ordinal()] = latencyTimer("transfer.lock.wait", "Time spent acquiring an account lock")
+                    .tag("outcome", outcome.tagValue())
+                    .register(registry);
+        }
+
+        Rejection[] rejections = Rejection.values();
+        rejectionCounters = new Counter[rejections.length];
+        for (Rejection rejection : rejections) {
+            rejectionCounters[rejection.ordinal()] = Counter.builder("transfer.rejections")
+                    .description("Transfers rejected with CannotExecuteTransferException, by cause")
+                    .tag("reason", rejection.tagValue())
+                    .register(registry);
+        }
+
+        Throttle[] throttles = Throttle.values();
+        throttleCounters = new Counter[throttles.length];
+        for (Throttle throttle : throttles) {
+            throttleCounters[throttle.ordinal()] = Counter.builder("transfer.throttled")
+                    .description("Transfer requests answered with 429 Too Many Requests, by cause")
+                    .tag("reason", throttle.tagValue())
+                    .register(registry);
+        }
+
+        repositoryLookupTimer = latencyTimer("repository.lookup", "Time to look an account up in the repository")
+                .register(registry);
+        conflictRetryCounter = Counter.builder("transfer.conflict.retries")
+                .description("Optimistic transfer commits retried after a conflict")
+                .register(registry);
+    }
+
+    public void recordTransfer(long startNanos, TransferOutcome outcome) {
+        transferTimers[outcome.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLockWait(long waitNanos, LockOutcome outcome) {
+        lockWaitTimers[outcome.ordinal()].record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRejection(Rejection rejection) {
+        rejectionCounters[rejection.ordinal()].increment();
+    }
+
+    public void recordThrottle(Throttle throttle) {
+        throttleCounters[throttle.ordinal()].increment();
+    }
+
+    public void recordConflictRetry() {
+        conflictRetryCounter.increment();
+    }
+
+    public void recordRepositoryLookup(long startNanos) {
+        repositoryLookupTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers a gauge sampled from {@code source} whenever the metrics are scraped.
+     */
+    public <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value)
+                .description(description)
+                .register(registry);
+    }
+
+    /**
+     * @return a timer builder publishing a percentile histogram between 500ns and 10s
+     */
+    public static Timer.Builder latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(500))
+                .maximumExpectedValue(Duration.ofSeconds(10));
+    }
+
+    public enum TransferOutcome {
+        EXECUTED, REJECTED, FAILED;
+
+        private String tagValue() {
+            return name().toLowerCase();
+        }
+    }
+
+    public enum LockOutcome {
+        ACQUIRED, TIMED_OUT;
+
+        private String tagValue() {
+            return name().toLowerCase();
+        }
+    }
+
+    public enum Rejection {
+        /**
+         * An account lock was not acquired within the lock timeout.
+         */
+        LOCK_TIMEOUT,
+        /**
+         * An account lock was taken in {@code TRY_LOCK} mode.
+         */
+        LOCK_BUSY,
+        /**
+         * The queue of a shard was full.
+         */
+        SHARD_QUEUE_FULL,
+        /**
+         * An account was not claimed for an exclusive action within the lock timeout.
+         */
+        CLAIM_TIMEOUT,
+        /**
+         * Optimistic commits kept conflicting with other transfers until the retry budget ran out.
+         */
+        CONFLICT,
+        /**
+         * The node owning the destination account of a cross-node transfer did not answer.
+         */
+        NODE_UNAVAILABLE;
+
+        private String tagValue() {
+            return name().toLowerCase();
+        }
+    }
+
+    public enum Throttle {
+        /**
+         * The client sent more transfer requests than its rate limit allows.
+         */
+        CLIENT_RATE,
+        /**
+         * More transfer requests debited the account than its rate limit allows.
+         */
+        ACCOUNT_RATE,
+        /**
+         * The node already had as many transfer requests in flight as it admits.
+         */
+        CONCURRENCY;
+
+        private String tagValue() {
+            return name().toLowerCase();
+        }
+    }
+}
@@ -1,13 +1,151 @@
 package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transfer;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 public interface AccountsRepository {
 
+  /**
+   * Number of accounts bulk operations hand to one task of the common fork-join pool.
+   */
+  int BULK_CHUNK_SIZE = 1024;
+
   void createAccount(Account account) throws DuplicateAccountIdException;
 
   Account getAccount(String accountId);
 
+  /**
+   * Looks an account up to be shown rather than changed. Repositories that serve reads from a
+   * projection return a detached copy of the account from there.
+   */
+  default Account readAccount(String accountId) {
+    return getAccount(accountId);
+  }
+
+  /**
+   * Creates the accounts in parallel chunks. A failure to create one account does not stop the others.
+   *
+   * @return the failure to create each account in the order of {@code accounts}, {@code null} for created accounts
+   */
+  default List<RuntimeException> createAccounts(List<Account> accounts) {
+    var failures = new RuntimeException[accounts.size()];
+    forEachChunk(accounts.size(), (from, to) -> {
+      for (int i = from; i < to; i++) {
+        try {
+          createAccount(accounts.get(i));
+        } catch (RuntimeException e) {
+          failures[i] = e;
+        }
+      }
+    });
+    return Arrays.asList(failures);
+  }
+
+  /**
+   * Looks the accounts up in parallel chunks.
+   *
+   * @return the account of each id in the order of {@code accountIds}, {@code null} for unknown ids
+   */
+  default List<Account> getAccounts(List<String> accountIds) {
+    var accounts = new Account[accountIds.size()];
+    forEachChunk(accountIds.size(), (from, to) -> {
+      for (int i = from; i < to; i++) {
+        accounts[i] = getAccount(accountIds.get(i));
+      }
+    });
+    return Arrays.asList(accounts);
+  }
+
+  /**
+   * Runs {@code action} for every account on the calling thread. Accounts created during the
+   * iteration may or may not be passed to it.
+   */
+  void forEachAccount(Consumer<Account> action);
+
   void clearAccounts();
+
+  /**
+   * Records a transfer whose balance changes were already applied to the accounts. Engines call
+   * it before other transfers can change the balances of those accounts, so the recorded order
+   * of transfers matches the order of balance changes of every account.
+   */
+  default void appendTransfer(Transfer transfer) {
+  }
+
+  /**
+   * Applies a transfer computed from balances read optimistically: sets the balances of both
+   * accounts and appends the transfer, but only if neither account changed since its version was
+   * read. Both accounts are claimed while their balances change and the transfer is appended, so
+   * readers never see one balance changed without the other.
+   *
+   * @return false, without changing anything, if a version changed or an account is claimed
+   */
+  default boolean commitTransfer(Transfer transfer, Account fromAccount, long fromVersion, long fromBalanceUnits,
+                                 Account toAccount, long toVersion, long toBalanceUnits) {
+    if (!fromAccount.tryClaimAt(fromVersion)) {
+      return false;
+    }
+    if (!toAccount.tryClaimAt(toVersion)) {
+      fromAccount.cancelClaim();
+      return false;
+    }
+    try {
+      fromAccount.setBalanceUnits(fromBalanceUnits);
+      toAccount.setBalanceUnits(toBalanceUnits);
+      appendTransfer(transfer);
+    } finally {
+      toAccount.release();
+      fromAccount.release();
+    }
+    return true;
+  }
+
+  /**
+   * Blocks until every transfer appended before the call is durable.
+   */
+  default void awaitDurable() {
+  }
+
+  /**
+   * @return a future completed once every transfer appended before the call is durable
+   */
+  default CompletableFuture<Void> awaitDurableAsync() {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Opens the outbox of the transfers this repository makes durable. Once it is open the
+   * notifications of transfers are relayed from the outbox rather than sent by the transfers.
+   *
+   * @throws UnsupportedOperationException if the repository does not make transfers durable
+   */
+  default TransferOutbox openOutbox() throws IOException {
+    throw new UnsupportedOperationException("The accounts repository keeps no durable transfers to relay");
+  }
+
+  default boolean isOutboxOpen() {
+    return false;
+  }
+
+  /**
+   * Runs {@code action} for consecutive ranges of {@link #BULK_CHUNK_SIZE} indexes below {@code size}, in parallel.
+   */
+  static void forEachChunk(int size, ChunkAction action) {
+    int chunks = (size + BULK_CHUNK_SIZE - 1) / BULK_CHUNK_SIZE;
+    IntStream.range(0, chunks).parallel()
+      .forEach(chunk -> action.run(chunk * BULK_CHUNK_SIZE, Math.min(size, (chunk + 1) * BULK_CHUNK_SIZE)));
+  }
+
+  @FunctionalInterface
+  interface ChunkAction {
+
+    void run(int fromIndex, int toIndex);
+  }
 }
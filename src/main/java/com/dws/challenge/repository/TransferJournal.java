@@ -0,0 +1,248 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.dto.TransferHistoryEntry;
+import com.dws.challenge.dto.TransferHistoryPage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only history of completed transfers, queryable per account.
+ * <p>
+ * {@link #append} only enqueues the transfer; a single appender thread stores it in fixed-size
+ * columnar chunks of primitive arrays, with account ids interned to {@code int} indexes, and adds
+ * its sequence number to the posting list of both accounts. Readers never lock: every array slot
+ * is written before the size that covers it is published through a volatile write, and readers
+ * only look at slots below the size they read.
+ */
+@Repository
+public class TransferJournal implements MeterBinder, DisposableBean {
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Queue<PendingTransfer> pending = new ConcurrentLinkedQueue<>();
+    private final Thread appender;
+    private volatile boolean running = true;
+
+    // Written by the appender thread only.
+    private volatile Chunk[] chunks = new Chunk[16];
+    private volatile long size;
+    private final Map<String, Integer> accountIndexes = new ConcurrentHashMap<>();
+    private volatile String[] accountIds = new String[1024];
+    private volatile Postings[] postings = new Postings[1024];
+    private int accountCount;
+
+    public TransferJournal() {
+        appender = new Thread(this::appendLoop, "transfer-journal");
+        appender.setDaemon(true);
+        appender.start();
+    }
+
+    /**
+     * Queues {@code transfer} for the journal without waiting; it becomes visible to
+     * {@link #page} shortly afterwards.
+     */
+    public void append(Transfer transfer) {
+        pending.offer(new PendingTransfer(transfer, System.currentTimeMillis()));
+    }
+
+    /**
+     * @return up to {@code limit} transfers of {@code accountId} older than {@code cursor}, or the newest ones without a cursor
+     */
+    public TransferHistoryPage page(String accountId, Long cursor, int limit) {
+        var entries = new ArrayList<TransferHistoryEntry>(limit);
+        Integer accountIndex = accountIndexes.get(accountId);
+        if (accountIndex == null) {
+            return TransferHistoryPage.builder().accountId(accountId).transfers(entries).build();
+        }
+
+        Postings accountPostings = postings[accountIndex];
+        int postingCount = accountPostings.size;
+        long[] sequences = accountPostings.sequences;
+        int end = cursor == null ? postingCount : lowerBound(sequences, postingCount, cursor);
+        int start = Math.max(0, end - limit);
+        for (int i = end - 1; i >= start; i--) {
+            entries.add(read(sequences[i], accountIndex));
+        }
+        return TransferHistoryPage.builder()
+                .accountId(accountId)
+                .transfers(entries)
+                .nextCursor(start > 0 ? sequences[start] : null)
+                .build();
+    }
+
+    /**
+     * @return the number of transfers stored, not counting those still queued
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transfer.journal.size", this, TransferJournal::getSize)
+                .description("Transfers stored in the history journal")
+                .register(registry);
+        Gauge.builder("transfer.journal.pending", pending, Queue::size)
+                .description("Transfers queued for the history journal")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(appender);
+        appender.join();
+    }
+
+    private void appendLoop() {
+        while (true) {
+            PendingTransfer next = pending.poll();
+            if (next != null) {
+                store(next);
+            } else if (running) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void store(PendingTransfer pendingTransfer) {
+        Transfer transfer = pendingTransfer.transfer;
+        long sequence = size;
+        int chunkIndex = (int) (sequence >>> CHUNK_SHIFT);
+        Chunk[] currentChunks = chunks;
+        if (chunkIndex == currentChunks.length) {
+            currentChunks = Arrays.copyOf(currentChunks, currentChunks.length * 2);
+        }
+        if (currentChunks[chunkIndex] == null) {
+            currentChunks[chunkIndex] = new Chunk();
+            chunks = currentChunks;
+        }
+
+        int from = indexOf(transfer.getAccountIdFrom());
+        int to = indexOf(transfer.getAccountIdTo());
+        Chunk chunk = currentChunks[chunkIndex];
+        int slot = (int) (sequence & CHUNK_MASK);
+        chunk.idHigh[slot] = transfer.getTransferId().getMostSignificantBits();
+        chunk.idLow[slot] = transfer.getTransferId().getLeastSignificantBits();
+        chunk.from[slot] = from;
+        chunk.to[slot] = to;
+        chunk.amounts[slot] = transfer.getAmount().getUnits();
+        chunk.timestamps[slot] = pendingTransfer.timestamp;
+
+        postings[from].add(sequence);
+        postings[to].add(sequence);
+        size = sequence + 1;
+    }
+
+    private int indexOf(String accountId) {
+        Integer index = accountIndexes.get(accountId);
+        if (index != null) {
+            return index;
+        }
+        int newIndex = accountCount++;
+        if (newIndex == accountIds.length) {
+            accountIds = Arrays.copyOf(accountIds, newIndex * 2);
+            postings = Arrays.copyOf(postings, newIndex * 2);
+        }
+        accountIds[newIndex] = accountId;
+        postings[newIndex] = new Postings();
+        // Published last, so readers finding the index also find its id and postings.
+        accountIndexes.put(accountId, newIndex);
+        return newIndex;
+    }
+
+    private TransferHistoryEntry read(long sequence, int accountIndex) {
+        Chunk chunk = chunks[(int) (sequence >>> CHUNK_SHIFT)];
+        int slot = (int) (sequence & CHUNK_MASK);
+        String[] ids = accountIds;
+        return TransferHistoryEntry.builder()
+                .transferId(new UUID(chunk.idHigh[slot], chunk.idLow[slot]))
+                .accountIdFrom(ids[chunk.from[slot]])
+                .accountIdTo(ids[chunk.to[slot]])
+                .amount(Money.toBigDecimal(chunk.amounts[slot]))
+                .direction(chunk.from[slot] == accountIndex ? TransferHistoryEntry.Direction.DEBIT : TransferHistoryEntry.Direction.CREDIT)
+                .executedAt(Instant.ofEpochMilli(chunk.timestamps[slot]))
+                .build();
+    }
+
+    /**
+     * @return the position of the first of the {@code count} sorted sequences which is not lower than {@code sequence}
+     */
+    private static int lowerBound(long[] sequences, int count, long sequence) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sequences[middle] < sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static final class PendingTransfer {
+
+        private final Transfer transfer;
+        private final long timestamp;
+
+        private PendingTransfer(Transfer transfer, long timestamp) {
+            this.transfer = transfer;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private static final class Chunk {
+
+        private final long[] idHigh = new long[CHUNK_SIZE];
+        private final long[] idLow = new long[CHUNK_SIZE];
+        private final int[] from = new int[CHUNK_SIZE];
+        private final int[] to = new int[CHUNK_SIZE];
+        private final long[] amounts = new long[CHUNK_SIZE];
+        private final long[] timestamps = new long[CHUNK_SIZE];
+    }
+
+    /**
+     * Ascending sequence numbers of the transfers of one account. Readers read {@link #size} before
+     * {@link #sequences}: a grown array is published before the size that needs it, and holds a copy
+     * of every sequence number below the size it was grown at.
+     */
+    private static final class Postings {
+
+        private volatile long[] sequences = new long[4];
+        private volatile int size;
+
+        private void add(long sequence) {
+            int count = size;
+            long[] current = sequences;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, count * 2);
+                sequences = current;
+            }
+            current[count] = sequence;
+            size = count + 1;
+        }
+    }
+}
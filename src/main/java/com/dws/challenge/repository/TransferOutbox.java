@@ -0,0 +1,33 @@
+package com.dws.challenge.repository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * The transfers a repository made durable, read in the order they were recorded, so their
+ * notifications are sent from the same commit as the balance changes and survive a crash. Reading
+ * resumes after the last {@link #checkpoint}; transfers read and not checkpointed before a restart
+ * are read again.
+ */
+public interface TransferOutbox {
+
+    /**
+     * Passes up to {@code maxTransfers} transfers after the ones already read to {@code consumer},
+     * waiting up to {@code timeout} for one to become durable if there is none.
+     *
+     * @return the position to {@link #checkpoint} once the transfers read so far are handled
+     */
+    long poll(int maxTransfers, Duration timeout, TransferConsumer consumer) throws IOException;
+
+    /**
+     * Durably records that the transfers up to {@code position} are handled.
+     */
+    void checkpoint(long position) throws IOException;
+
+    @FunctionalInterface
+    interface TransferConsumer {
+
+        void transfer(UUID transferId, String accountIdFrom, String accountIdTo, long amountUnits);
+    }
+}
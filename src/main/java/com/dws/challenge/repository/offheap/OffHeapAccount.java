@@ -0,0 +1,73 @@
+package com.dws.challenge.repository.offheap;
+
+import com.dws.challenge.domain.Account;
+
+import java.nio.ByteBuffer;
+
+import static com.dws.challenge.repository.offheap.OffHeapAccountsRepository.BALANCE_OFFSET;
+import static com.dws.challenge.repository.offheap.OffHeapAccountsRepository.COMMITTED_BALANCE_OFFSET;
+import static com.dws.challenge.repository.offheap.OffHeapAccountsRepository.LONGS;
+import static com.dws.challenge.repository.offheap.OffHeapAccountsRepository.VERSION_OFFSET;
+
+/**
+ * A flyweight {@link Account} whose balances and version live in a slot of an
+ * {@link OffHeapAccountsRepository}. Flyweights of the same slot share all their state, so any
+ * number of them may exist for one account.
+ */
+final class OffHeapAccount extends Account {
+
+    private final ByteBuffer segment;
+    private final int offset;
+    private final int generation;
+
+    OffHeapAccount(String accountId, ByteBuffer segment, int offset, int generation) {
+        super(accountId);
+        this.segment = segment;
+        this.offset = offset;
+        this.generation = generation;
+    }
+
+    @Override
+    public boolean isSameAccount(Account other) {
+        if (!(other instanceof OffHeapAccount)) {
+            return false;
+        }
+        OffHeapAccount account = (OffHeapAccount) other;
+        return segment == account.segment && offset == account.offset && generation == account.generation;
+    }
+
+    @Override
+    protected long loadVersion() {
+        return (long) LONGS.getVolatile(segment, offset + VERSION_OFFSET);
+    }
+
+    @Override
+    protected void storeVersion(long newVersion) {
+        LONGS.setVolatile(segment, offset + VERSION_OFFSET, newVersion);
+    }
+
+    @Override
+    protected boolean compareAndSetVersion(long expectedVersion, long newVersion) {
+        return LONGS.compareAndSet(segment, offset + VERSION_OFFSET, expectedVersion, newVersion);
+    }
+
+    @Override
+    protected long loadBalance() {
+        return (long) LONGS.getVolatile(segment, offset + BALANCE_OFFSET);
+    }
+
+    @Override
+    protected void storeBalance(long units) {
+        LONGS.setVolatile(segment, offset + BALANCE_OFFSET, units);
+    }
+
+    @Override
+    protected long loadCommittedBalance() {
+        return (long) LONGS.getVolatile(segment, offset + COMMITTED_BALANCE_OFFSET);
+    }
+
+    @Override
+    protected void storeCommittedBalance(long units) {
+        LONGS.setVolatile(segment, offset + COMMITTED_BALANCE_OFFSET, units);
+    }
+}
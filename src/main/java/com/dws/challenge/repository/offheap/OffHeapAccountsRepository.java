@@ -0,0 +1,256 @@
+package com.dws.challenge.repository.offheap;
+
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.INSUFFICIENT_STORAGE;
+
+/**
+ * Keeps accounts in a fixed-capacity open-addressing hash table in direct memory, so tens of
+ * millions of accounts take neither heap nor garbage collection time. A slot holds the version,
+ * the balance, the committed balance and the UTF-8 id of an account; {@link #getAccount} returns an {@link OffHeapAccount}
+ * flyweight that reads and writes the slot.
+ * <p>
+ * Lookups probe linearly without locking. Creations are serialized and publish a slot by writing
+ * the length of its id last, with release semantics, so a lookup never sees a partially written
+ * slot. Accounts are only removed by {@link #clearAccounts()}.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "challenge.repository", name = "type", havingValue = "off_heap")
+public class OffHeapAccountsRepository implements AccountsRepository, MeterBinder {
+
+    static final int VERSION_OFFSET = 0;
+    static final int BALANCE_OFFSET = 8;
+    static final int COMMITTED_BALANCE_OFFSET = 16;
+    private static final int ID_LENGTH_OFFSET = 24;
+    private static final int ID_OFFSET = 28;
+    private static final double LOAD_FACTOR = 0.8;
+
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final int capacity;
+    private final int maxIdBytes;
+    private final int slotSize;
+    private final long slots;
+    private final int segmentShift;
+    private final ByteBuffer[] segments;
+
+    // Guarded by this.
+    private int size;
+    private volatile int generation;
+
+    public OffHeapAccountsRepository(RepositoryProperties properties) {
+        RepositoryProperties.OffHeap offHeap = properties.getOffHeap();
+        if (offHeap.getCapacity() < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + offHeap.getCapacity());
+        }
+        if (offHeap.getMaxIdBytes() < 1 || offHeap.getMaxIdBytes() > 1 << 16) {
+            throw new IllegalArgumentException("Maximum id length must be between 1 and 2^16 bytes: " + offHeap.getMaxIdBytes());
+        }
+        capacity = offHeap.getCapacity();
+        maxIdBytes = offHeap.getMaxIdBytes();
+        slotSize = (ID_OFFSET + maxIdBytes + 7) & ~7;
+        slots = Math.max(capacity + 1L, (long) Math.ceil(capacity / LOAD_FACTOR));
+
+        // Each segment is a power of two of slots and smaller than 2GB, the limit of a ByteBuffer.
+        segmentShift = 31 - (32 - Integer.numberOfLeadingZeros(slotSize - 1));
+        long slotsPerSegment = 1L << segmentShift;
+        int segmentCount = (int) ((slots + slotsPerSegment - 1) >>> segmentShift);
+        segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long segmentSlots = Math.min(slotsPerSegment, slots - ((long) i << segmentShift));
+            segments[i] = ByteBuffer.allocateDirect((int) (segmentSlots * slotSize)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    @Override
+    public synchronized void createAccount(Account account) throws DuplicateAccountIdException {
+        String accountId = account.getAccountId();
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length == 0 || id.length > maxIdBytes) {
+            throw new ResponseStatusException(BAD_REQUEST, "Account id must be between 1 and " + maxIdBytes + " bytes long");
+        }
+
+        long slot = probe(accountId, isAscii(accountId) ? null : id);
+        if (slot >= 0) {
+            throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+        }
+        if (size == capacity) {
+            throw new ResponseStatusException(INSUFFICIENT_STORAGE, "Cannot store more than " + capacity + " accounts");
+        }
+        slot = -slot - 1;
+
+        ByteBuffer segment = segmentOf(slot);
+        int offset = offsetOf(slot);
+        segment.putLong(offset + VERSION_OFFSET, 0);
+        segment.putLong(offset + BALANCE_OFFSET, account.getBalanceUnits());
+        segment.putLong(offset + COMMITTED_BALANCE_OFFSET, account.getBalanceUnits());
+        for (int i = 0; i < id.length; i++) {
+            segment.put(offset + ID_OFFSET + i, id[i]);
+        }
+        INTS.setRelease(segment, offset + ID_LENGTH_OFFSET, id.length);
+        size++;
+    }
+
+    /**
+     * Creates the accounts on the calling thread, since creations are serialized anyway.
+     */
+    @Override
+    public synchronized List<RuntimeException> createAccounts(List<Account> accounts) {
+        var failures = new RuntimeException[accounts.size()];
+        for (int i = 0; i < failures.length; i++) {
+            try {
+                createAccount(accounts.get(i));
+            } catch (RuntimeException e) {
+                failures[i] = e;
+            }
+        }
+        return Arrays.asList(failures);
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        byte[] id = null;
+        if (!isAscii(accountId)) {
+            id = accountId.getBytes(StandardCharsets.UTF_8);
+        }
+        long slot = probe(accountId, id);
+        if (slot < 0) {
+            return null;
+        }
+        return new OffHeapAccount(accountId, segmentOf(slot), offsetOf(slot), generation);
+    }
+
+    /**
+     * Scans the slots without locking, decoding the id of every published slot.
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        int currentGeneration = generation;
+        var id = new byte[maxIdBytes];
+        for (long slot = 0; slot < slots; slot++) {
+            ByteBuffer segment = segmentOf(slot);
+            int offset = offsetOf(slot);
+            int length = (int) INTS.getAcquire(segment, offset + ID_LENGTH_OFFSET);
+            if (length == 0) {
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                id[i] = segment.get(offset + ID_OFFSET + i);
+            }
+            var accountId = new String(id, 0, length, StandardCharsets.UTF_8);
+            action.accept(new OffHeapAccount(accountId, segment, offset, currentGeneration));
+        }
+    }
+
+    @Override
+    public synchronized void clearAccounts() {
+        generation++;
+        for (ByteBuffer segment : segments) {
+            for (int offset = 0; offset < segment.capacity(); offset += 8) {
+                segment.putLong(offset, 0);
+            }
+        }
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return bytes of direct memory held by the table
+     */
+    public long allocatedBytes() {
+        return slots * slotSize;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("repository.accounts", this, OffHeapAccountsRepository::size)
+                .description("Accounts in the off-heap repository")
+                .register(registry);
+        Gauge.builder("repository.memory", this, OffHeapAccountsRepository::allocatedBytes)
+                .description("Direct memory held by the off-heap repository")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    /**
+     * @param id the UTF-8 bytes of {@code accountId}, or {@code null} if it is ASCII only
+     * @return the slot of the account, or {@code -slot - 1} of the empty slot ending the probe
+     */
+    private long probe(String accountId, byte[] id) {
+        int length = id == null ? accountId.length() : id.length;
+        // Multiplying the mixed hash by the number of slots maps it onto [0, slots) without a division.
+        long slot = ((accountId.hashCode() * 0x9E3779B9) & 0xFFFFFFFFL) * slots >>> 32;
+        while (true) {
+            ByteBuffer segment = segmentOf(slot);
+            int offset = offsetOf(slot);
+            int storedLength = (int) INTS.getAcquire(segment, offset + ID_LENGTH_OFFSET);
+            if (storedLength == 0) {
+                return -slot - 1;
+            }
+            if (storedLength == length && idEquals(segment, offset + ID_OFFSET, accountId, id)) {
+                return slot;
+            }
+            if (++slot == slots) {
+                slot = 0;
+            }
+        }
+    }
+
+    private static boolean idEquals(ByteBuffer segment, int idOffset, String accountId, byte[] id) {
+        if (id == null) {
+            for (int i = 0; i < accountId.length(); i++) {
+                if (segment.get(idOffset + i) != accountId.charAt(i)) {
+                    return false;
+                }
+            }
+        } else {
+            for (int i = 0; i < id.length; i++) {
+                if (segment.get(idOffset + i) != id[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String accountId) {
+        for (int i = 0; i < accountId.length(); i++) {
+            if (accountId.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer segmentOf(long slot) {
+        return segments[(int) (slot >>> segmentShift)];
+    }
+
+    private int offsetOf(long slot) {
+        return (int) (slot & ((1L << segmentShift) - 1)) * slotSize;
+    }
+}
@@ -0,0 +1,82 @@
+package com.dws.challenge.repository.wal;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Balances derived from the entries of the ledger. An account creation is the opening entry of
+ * its account; a transfer is a debit entry on the source account and a credit entry of the same
+ * amount on the destination account.
+ * <p>
+ * Written by a single thread and read by any: each balance is published on its own, so a reader
+ * sees every single balance as of some applied entry.
+ */
+final class BalanceProjection implements WalRecords.Visitor {
+
+    private final Map<String, Balance> balances = new ConcurrentHashMap<>();
+    // Written by the projecting thread only.
+    private long entries;
+    private long openingUnits;
+    private long skippedTransfers;
+
+    @Override
+    public void accountCreated(String accountId, long balanceUnits) {
+        entries++;
+        openingUnits += balanceUnits;
+        balances.put(accountId, new Balance(balanceUnits));
+    }
+
+    @Override
+    public void transfer(UUID transferId, String accountIdFrom, String accountIdTo, long amountUnits) {
+        Balance from = balances.get(accountIdFrom);
+        Balance to = balances.get(accountIdTo);
+        if (from == null || to == null) {
+            skippedTransfers++;
+            return;
+        }
+        entries += 2;
+        from.units = from.units - amountUnits;
+        to.units = to.units + amountUnits;
+    }
+
+    /**
+     * @return the projected balance of the account, or {@code null} if it has no opening entry yet
+     */
+    Long balanceUnits(String accountId) {
+        Balance balance = balances.get(accountId);
+        return balance == null ? null : balance.units;
+    }
+
+    int accounts() {
+        return balances.size();
+    }
+
+    long entries() {
+        return entries;
+    }
+
+    long skippedTransfers() {
+        return skippedTransfers;
+    }
+
+    /**
+     * @return whether all balances add up to the opening balances, as every transfer debits what it credits
+     */
+    boolean isBalanced() {
+        long total = 0;
+        for (Balance balance : balances.values()) {
+            total += balance.units;
+        }
+        return total == openingUnits;
+    }
+
+    private static final class Balance {
+
+        private volatile long units;
+
+        private Balance(long units) {
+            this.units = units;
+        }
+    }
+}
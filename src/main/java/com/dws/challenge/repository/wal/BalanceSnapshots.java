@@ -0,0 +1,110 @@
+package com.dws.challenge.repository.wal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot files holding the balance of every account as of a write-ahead log position.
+ * <p>
+ * A snapshot is written to a temporary file, forced to disk and then renamed, so the newest
+ * {@code snapshot-<position>.snap} file is always complete.
+ */
+final class BalanceSnapshots {
+
+    private static final int MAGIC = 0x57414c53;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+
+    BalanceSnapshots(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the log position of the newest snapshot
+     */
+    Optional<Long> latestPosition() throws IOException {
+        return positions().stream().max(Comparator.naturalOrder());
+    }
+
+    /**
+     * Passes every account id and balance of the snapshot at {@code position} to {@code consumer}.
+     */
+    void read(long position, ObjLongConsumer<String> consumer) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path(position)), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readLong() != position) {
+                throw new IOException("Corrupt snapshot " + path(position));
+            }
+            long count = in.readLong();
+            var id = new byte[Short.MAX_VALUE];
+            for (long i = 0; i < count; i++) {
+                int length = in.readShort();
+                in.readFully(id, 0, length);
+                consumer.accept(new String(id, 0, length, StandardCharsets.UTF_8), in.readLong());
+            }
+        }
+    }
+
+    /**
+     * Writes {@code balances} as the snapshot at {@code position} and deletes the older snapshots.
+     */
+    void write(long position, Map<String, long[]> balances) throws IOException {
+        Path temporary = directory.resolve(PREFIX + position + ".tmp");
+        try (var file = new FileOutputStream(temporary.toFile());
+             var out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeLong(position);
+            out.writeLong(balances.size());
+            for (Map.Entry<String, long[]> entry : balances.entrySet()) {
+                byte[] id = WalRecords.encodeId(entry.getKey());
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeLong(entry.getValue()[0]);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, path(position), StandardCopyOption.ATOMIC_MOVE);
+        for (long older : positions()) {
+            if (older < position) {
+                Files.deleteIfExists(path(older));
+            }
+        }
+    }
+
+    void deleteAll() throws IOException {
+        for (long position : positions()) {
+            Files.deleteIfExists(path(position));
+        }
+    }
+
+    private List<Long> positions() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path path(long position) {
+        return directory.resolve(PREFIX + position + SUFFIX);
+    }
+}
@@ -0,0 +1,406 @@
+package com.dws.challenge.repository.wal;
+
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.TransferOutbox;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps an append-only ledger of account creations and transfers on disk as the source of truth
+ * of all balances. The ledger is a {@link WriteAheadLog} that is never compacted: an account
+ * creation is the opening entry of its account, and a transfer record is one balanced posting, the
+ * debit of its source and the credit of its destination, so both entries are appended atomically.
+ * <p>
+ * The accounts in memory are the write model the engines check and change balances on; they are
+ * rebuilt by replaying the whole ledger on startup. A single projector thread tails the durable
+ * entries of the ledger into a {@link BalanceProjection} which serves {@link #readAccount}, so reads
+ * only ever show durable transfers. A transfer is answered once it is durable and projected, so
+ * its client reads its own writes.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "challenge.repository", name = "type", havingValue = "ledger")
+public class LedgerAccountsRepository implements AccountsRepository, DisposableBean {
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Path directory;
+    private final WriteAheadLog ledger;
+    private final long idleNanos;
+    private final Thread projector;
+    private volatile boolean running = true;
+
+    // Held while the projection is advanced, rebuilt or cleared.
+    private final ReentrantLock projectorLock = new ReentrantLock();
+    // Guarded by projectorLock.
+    private WriteAheadLog.Tail tail;
+    // Replaced under projectorLock, read without it.
+    private volatile BalanceProjection projection;
+    // Set once under projectorLock.
+    private volatile LogOutbox outbox;
+
+    private final ReentrantLock projectedLock = new ReentrantLock();
+    private final Condition projectedAdvanced = projectedLock.newCondition();
+    // In position order, guarded by projectedLock.
+    private final Queue<PendingProjection> pendingProjection =
+            new PriorityQueue<>(Comparator.comparingLong(pending -> pending.position));
+    private volatile long projectedPosition;
+    // Incremented when the ledger is cleared, so waiters for positions of the old ledger give up.
+    private volatile long generation;
+
+    public LedgerAccountsRepository(RepositoryProperties properties, TransferMetrics transferMetrics) throws IOException {
+        RepositoryProperties.Ledger settings = properties.getLedger();
+        long started = System.nanoTime();
+        var recovery = new Recovery();
+        directory = settings.getDirectory();
+        ledger = new WriteAheadLog(directory, (int) settings.getSegmentSize().toBytes(),
+                settings.getFlushInterval(), 0, recovery);
+        projection = recovery.projection;
+        projectedPosition = ledger.appendedPosition();
+        tail = ledger.tail(projectedPosition);
+        log.info("Recovered {} accounts in {} ms, replaying {} ledger entries", accounts.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), recovery.projection.entries());
+
+        transferMetrics.gauge("ledger.projection.lag.bytes", "Bytes of the ledger appended and not projected yet", this,
+                repository -> Math.max(0, repository.ledger.appendedPosition() - repository.projectedPosition));
+
+        idleNanos = settings.getFlushInterval().toNanos();
+        projector = new Thread(this::projectLoop, "ledger-projector");
+        projector.setDaemon(true);
+        projector.start();
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        appendAccount(account);
+        awaitDurable();
+    }
+
+    /**
+     * Appends all opening entries first and waits for the ledger to be durable and projected once.
+     */
+    @Override
+    public List<RuntimeException> createAccounts(List<Account> accounts) {
+        var failures = new RuntimeException[accounts.size()];
+        AccountsRepository.forEachChunk(accounts.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                try {
+                    appendAccount(accounts.get(i));
+                } catch (RuntimeException e) {
+                    failures[i] = e;
+                }
+            }
+        });
+        awaitDurable();
+        return Arrays.asList(failures);
+    }
+
+    private void appendAccount(Account account) {
+        // Appending inside computeIfAbsent makes the opening entry precede any transfer of the account.
+        Account created = accounts.computeIfAbsent(account.getAccountId(), accountId -> {
+            ledger.append(WalRecords.accountCreated(accountId, account.getBalanceUnits()));
+            return account;
+        });
+        if (created != account) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        return accounts.get(accountId);
+    }
+
+    /**
+     * @return a detached account holding the projected balance, {@code null} until the opening entry is projected
+     */
+    @Override
+    public Account readAccount(String accountId) {
+        Long balanceUnits = projection.balanceUnits(accountId);
+        return balanceUnits == null ? null : account(accountId, balanceUnits);
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        accounts.values().forEach(action);
+    }
+
+    @Override
+    public void clearAccounts() {
+        projectorLock.lock();
+        try {
+            accounts.clear();
+            tail.close();
+            ledger.reset();
+            projection = new BalanceProjection();
+            tail = ledger.tail(0);
+            if (outbox != null) {
+                outbox.reset();
+            }
+            releaseWaiters();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot clear the ledger", e);
+        } finally {
+            projectorLock.unlock();
+        }
+    }
+
+    @Override
+    public void appendTransfer(Transfer transfer) {
+        ledger.append(WalRecords.transfer(transfer));
+    }
+
+    /**
+     * Blocks until every entry appended before the call is durable and projected.
+     */
+    @Override
+    public void awaitDurable() {
+        long generation = this.generation;
+        long target = ledger.appendedPosition();
+        ledger.awaitDurable();
+        if (projectedPosition >= target) {
+            return;
+        }
+        projectedLock.lock();
+        try {
+            while (projectedPosition < target && this.generation == generation) {
+                projectedAdvanced.awaitUninterruptibly();
+            }
+        } finally {
+            projectedLock.unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> awaitDurableAsync() {
+        long generation = this.generation;
+        long target = ledger.appendedPosition();
+        return ledger.awaitDurableAsync().thenCompose(durable -> awaitProjectedAsync(target, generation));
+    }
+
+    @Override
+    public TransferOutbox openOutbox() throws IOException {
+        projectorLock.lock();
+        try {
+            if (outbox == null) {
+                outbox = new LogOutbox(ledger, directory);
+            }
+            return outbox;
+        } finally {
+            projectorLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOutboxOpen() {
+        return outbox != null;
+    }
+
+    /**
+     * Replays the whole ledger into a new projection and swaps it in for the current one. Reads
+     * are served from the current projection meanwhile, and projecting new entries waits for the
+     * replay.
+     */
+    public Replay rebuildProjection() throws IOException {
+        projectorLock.lock();
+        try {
+            long started = System.nanoTime();
+            var rebuilt = new BalanceProjection();
+            WriteAheadLog.Tail replay = ledger.tail(0);
+            try {
+                replay.poll(rebuilt);
+            } catch (IOException | RuntimeException e) {
+                replay.close();
+                throw e;
+            }
+            var elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+            tail.close();
+            tail = replay;
+            projection = rebuilt;
+            publish(replay.position());
+            log.info("Rebuilt the projection of {} accounts from {} ledger entries in {} ms", rebuilt.accounts(),
+                    rebuilt.entries(), elapsed.toMillis());
+            return new Replay(rebuilt.entries(), rebuilt.accounts(), elapsed, rebuilt.isBalanced());
+        } finally {
+            projectorLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        try {
+            projector.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        projectorLock.lock();
+        try {
+            tail.close();
+            if (outbox != null) {
+                outbox.close();
+            }
+        } catch (IOException e) {
+            log.warn("Cannot close the ledger readers", e);
+        } finally {
+            projectorLock.unlock();
+        }
+        ledger.close();
+    }
+
+    private void projectLoop() {
+        while (running) {
+            long position;
+            boolean failed = false;
+            projectorLock.lock();
+            try {
+                tail.poll(projection);
+            } catch (IOException | RuntimeException e) {
+                log.error("Cannot project the ledger", e);
+                failed = true;
+            } finally {
+                position = tail.position();
+                if (position != projectedPosition) {
+                    publish(position);
+                }
+                projectorLock.unlock();
+            }
+            if (failed) {
+                LockSupport.parkNanos(idleNanos);
+            } else {
+                ledger.awaitDurableBeyond(position, idleNanos);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> awaitProjectedAsync(long target, long generation) {
+        projectedLock.lock();
+        try {
+            if (projectedPosition >= target || this.generation != generation) {
+                return CompletableFuture.completedFuture(null);
+            }
+            var future = new CompletableFuture<Void>();
+            pendingProjection.add(new PendingProjection(target, future));
+            return future;
+        } finally {
+            projectedLock.unlock();
+        }
+    }
+
+    private void publish(long position) {
+        var completed = new ArrayList<CompletableFuture<Void>>();
+        projectedLock.lock();
+        try {
+            projectedPosition = position;
+            projectedAdvanced.signalAll();
+            while (!pendingProjection.isEmpty() && pendingProjection.peek().position <= position) {
+                completed.add(pendingProjection.poll().future);
+            }
+        } finally {
+            projectedLock.unlock();
+        }
+        // Outside the lock, the futures run the callbacks of their callers.
+        completed.forEach(future -> future.complete(null));
+    }
+
+    private void releaseWaiters() {
+        var completed = new ArrayList<CompletableFuture<Void>>();
+        projectedLock.lock();
+        try {
+            generation++;
+            projectedPosition = 0;
+            projectedAdvanced.signalAll();
+            while (!pendingProjection.isEmpty()) {
+                completed.add(pendingProjection.poll().future);
+            }
+        } finally {
+            projectedLock.unlock();
+        }
+        completed.forEach(future -> future.complete(null));
+    }
+
+    private static Account account(String accountId, long balanceUnits) {
+        var account = new Account(accountId);
+        account.setBalanceUnits(balanceUnits);
+        return account;
+    }
+
+    @Value
+    public static class Replay {
+
+        long entries;
+        int accounts;
+        Duration elapsed;
+        /**
+         * Whether all balances add up to the opening balances.
+         */
+        boolean balanced;
+    }
+
+    /**
+     * Applies the replayed ledger to the live accounts and to the initial projection.
+     */
+    private final class Recovery implements WalRecords.Visitor {
+
+        private final BalanceProjection projection = new BalanceProjection();
+
+        @Override
+        public void accountCreated(String accountId, long balanceUnits) {
+            projection.accountCreated(accountId, balanceUnits);
+            accounts.put(accountId, account(accountId, balanceUnits));
+        }
+
+        @Override
+        public void transfer(UUID transferId, String accountIdFrom, String accountIdTo, long amountUnits) {
+            projection.transfer(transferId, accountIdFrom, accountIdTo, amountUnits);
+            Account from = accounts.get(accountIdFrom);
+            Account to = accounts.get(accountIdTo);
+            if (from == null || to == null) {
+                log.warn("Skipping transfer {} between unknown accounts {} and {}", transferId, accountIdFrom, accountIdTo);
+                return;
+            }
+            from.setBalanceUnits(from.getBalanceUnits() - amountUnits);
+            to.setBalanceUnits(to.getBalanceUnits() + amountUnits);
+        }
+    }
+
+    private static final class PendingProjection {
+
+        private final long position;
+        private final CompletableFuture<Void> future;
+
+        private PendingProjection(long position, CompletableFuture<Void> future) {
+            this.position = position;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.dws.challenge.repository.wal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a ledger directory into a fresh balance projection and reports how fast, without
+ * opening the ledger for writing, so it can be run next to a live node or against a copy.
+ * <p>
+ * {@code ./gradlew ledgerReplay -Pledger.directory=data/ledger}
+ */
+public final class LedgerReplay {
+
+    private LedgerReplay() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : "data/ledger");
+        if (!Files.isDirectory(directory)) {
+            System.err.println("No ledger in " + directory.toAbsolutePath());
+            System.exit(1);
+        }
+        var projection = new BalanceProjection();
+        long started = System.nanoTime();
+        int segments = WriteAheadLog.replayAll(directory, projection);
+        long elapsedNanos = Math.max(1, System.nanoTime() - started);
+
+        System.out.printf("Replayed %d entries of %d accounts from %d segments in %d ms: %,.0f entries/s%n",
+                projection.entries(), projection.accounts(), segments, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                projection.entries() * 1e9 / elapsedNanos);
+        if (projection.skippedTransfers() > 0) {
+            System.out.printf("Skipped %d transfers between unknown accounts%n", projection.skippedTransfers());
+        }
+        System.out.println(projection.isBalanced()
+                ? "Balances add up to the opening balances"
+                : "Balances do NOT add up to the opening balances");
+    }
+}
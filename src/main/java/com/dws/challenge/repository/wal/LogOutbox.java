@@ -0,0 +1,141 @@
+package com.dws.challenge.repository.wal;
+
+import com.dws.challenge.repository.TransferOutbox;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * The outbox of a repository keeping transfers in a {@link WriteAheadLog}: the transfer records
+ * are the outbox entries, so a transfer and its notifications are made durable by the same
+ * commit. The checkpoint is kept in a file next to the log segments, and the repository keeps the
+ * segments the checkpoint has not passed yet.
+ * <p>
+ * An outbox opened without a checkpoint starts at the end of the log rather than relaying the
+ * transfers made before it existed.
+ */
+@Slf4j
+final class LogOutbox implements TransferOutbox, Closeable {
+
+    private static final String CHECKPOINT_FILE = "outbox.checkpoint";
+
+    private final WriteAheadLog writeAheadLog;
+    private final Path checkpointFile;
+
+    private final Object lock = new Object();
+    // Guarded by lock.
+    private WriteAheadLog.Tail tail;
+    private volatile long checkpoint;
+
+    LogOutbox(WriteAheadLog writeAheadLog, Path directory) throws IOException {
+        this.writeAheadLog = writeAheadLog;
+        this.checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        long position = Files.exists(checkpointFile) ? readCheckpoint() : writeAheadLog.appendedPosition();
+        long first = writeAheadLog.firstPosition();
+        if (position < first) {
+            log.warn("Transfers between outbox checkpoint {} and position {} were deleted and are not relayed", position, first);
+            position = first;
+        } else if (position > writeAheadLog.appendedPosition()) {
+            log.warn("Outbox checkpoint {} is beyond the end of the log, relaying from the end", position);
+            position = writeAheadLog.appendedPosition();
+        }
+        tail = writeAheadLog.tail(position);
+        writeCheckpoint(position);
+        log.info("Opened the transfer outbox at position {}", position);
+    }
+
+    @Override
+    public long poll(int maxTransfers, Duration timeout, TransferConsumer consumer) throws IOException {
+        long position;
+        synchronized (lock) {
+            position = tail.position();
+        }
+        // Waits outside the lock, so the log can be reset meanwhile.
+        writeAheadLog.awaitDurableBeyond(position, timeout.toNanos());
+        synchronized (lock) {
+            // Account creations count towards the limit, a batch is bounded by records read.
+            tail.poll(new Transfers(consumer), maxTransfers);
+            return tail.position();
+        }
+    }
+
+    @Override
+    public void checkpoint(long position) throws IOException {
+        synchronized (lock) {
+            // A position read before the log was reset is ignored.
+            if (position > checkpoint && position <= tail.position()) {
+                writeCheckpoint(position);
+            }
+        }
+    }
+
+    /**
+     * @return the position of the oldest transfer not checkpointed, before which segments may be deleted
+     */
+    long retainedPosition() {
+        return checkpoint;
+    }
+
+    /**
+     * Starts over at position zero, after the log was reset.
+     */
+    void reset() throws IOException {
+        synchronized (lock) {
+            tail.close();
+            tail = writeAheadLog.tail(0);
+            writeCheckpoint(0);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            tail.close();
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(checkpointFile)).getLong();
+    }
+
+    private void writeCheckpoint(long position) throws IOException {
+        Path temporary = checkpointFile.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(position).flip());
+            channel.force(true);
+        }
+        Files.move(temporary, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        checkpoint = position;
+    }
+
+    /**
+     * Passes the transfer records to the consumer and skips account creations.
+     */
+    private static final class Transfers implements WalRecords.Visitor {
+
+        private final TransferConsumer consumer;
+
+        private Transfers(TransferConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accountCreated(String accountId, long balanceUnits) {
+        }
+
+        @Override
+        public void transfer(UUID transferId, String accountIdFrom, String accountIdTo, long amountUnits) {
+            consumer.transfer(transferId, accountIdFrom, accountIdTo, amountUnits);
+        }
+    }
+}
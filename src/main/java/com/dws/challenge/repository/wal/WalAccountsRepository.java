@@ -0,0 +1,284 @@
+package com.dws.challenge.repository.wal;
+
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.TransferOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps accounts in memory and appends every account creation and transfer to a
+ * {@link WriteAheadLog}, so the balances survive a restart.
+ * <p>
+ * A background task periodically folds the completed log segments into a {@link BalanceSnapshots
+ * snapshot} and deletes them. The snapshot is built from the previous snapshot and the log rather
+ * than from the live accounts, so it is consistent without pausing transfers. On startup the
+ * newest snapshot is loaded and only the log after it is replayed.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "challenge.repository", name = "type", havingValue = "wal")
+public class WalAccountsRepository implements AccountsRepository, DisposableBean {
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Path directory;
+    private final BalanceSnapshots snapshots;
+    private final WriteAheadLog writeAheadLog;
+    private final ScheduledExecutorService snapshotter;
+
+    private final Object snapshotLock = new Object();
+    // Guarded by snapshotLock.
+    private long snapshotPosition;
+    // Set once under snapshotLock.
+    private volatile LogOutbox outbox;
+
+    public WalAccountsRepository(RepositoryProperties properties) throws IOException {
+        RepositoryProperties.Wal wal = properties.getWal();
+        directory = Files.createDirectories(wal.getDirectory());
+        long started = System.nanoTime();
+
+        snapshots = new BalanceSnapshots(directory);
+        Optional<Long> latestSnapshot = snapshots.latestPosition();
+        if (latestSnapshot.isPresent()) {
+            snapshotPosition = latestSnapshot.get();
+            snapshots.read(snapshotPosition, (accountId, balanceUnits) -> accounts.put(accountId, account(accountId, balanceUnits)));
+        }
+        var recovery = new Recovery();
+        writeAheadLog = new WriteAheadLog(directory, (int) wal.getSegmentSize().toBytes(), wal.getFlushInterval(),
+                snapshotPosition, recovery);
+        log.info("Recovered {} accounts in {} ms, replaying {} log records after position {}", accounts.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), recovery.records, snapshotPosition);
+
+        snapshotter = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "wal-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = wal.getSnapshotInterval().toMillis();
+        snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        appendAccount(account);
+        writeAheadLog.awaitDurable();
+    }
+
+    /**
+     * Appends all creation records first and waits for the log to be durable once.
+     */
+    @Override
+    public List<RuntimeException> createAccounts(List<Account> accounts) {
+        var failures = new RuntimeException[accounts.size()];
+        AccountsRepository.forEachChunk(accounts.size(), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                try {
+                    appendAccount(accounts.get(i));
+                } catch (RuntimeException e) {
+                    failures[i] = e;
+                }
+            }
+        });
+        writeAheadLog.awaitDurable();
+        return Arrays.asList(failures);
+    }
+
+    private void appendAccount(Account account) {
+        // Appending inside computeIfAbsent makes the creation record precede any transfer of the account.
+        Account created = accounts.computeIfAbsent(account.getAccountId(), accountId -> {
+            writeAheadLog.append(WalRecords.accountCreated(accountId, account.getBalanceUnits()));
+            return account;
+        });
+        if (created != account) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        accounts.values().forEach(action);
+    }
+
+    @Override
+    public void clearAccounts() {
+        synchronized (snapshotLock) {
+            try {
+                accounts.clear();
+                writeAheadLog.reset();
+                snapshots.deleteAll();
+                snapshotPosition = 0;
+                if (outbox != null) {
+                    outbox.reset();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot clear the write-ahead log", e);
+            }
+        }
+    }
+
+    @Override
+    public void appendTransfer(Transfer transfer) {
+        writeAheadLog.append(WalRecords.transfer(transfer));
+    }
+
+    @Override
+    public void awaitDurable() {
+        writeAheadLog.awaitDurable();
+    }
+
+    @Override
+    public CompletableFuture<Void> awaitDurableAsync() {
+        return writeAheadLog.awaitDurableAsync();
+    }
+
+    /**
+     * Opens the outbox of the transfer records; segments are then deleted only once the outbox checkpoint passed them.
+     */
+    @Override
+    public TransferOutbox openOutbox() throws IOException {
+        synchronized (snapshotLock) {
+            if (outbox == null) {
+                outbox = new LogOutbox(writeAheadLog, directory);
+            }
+            return outbox;
+        }
+    }
+
+    @Override
+    public boolean isOutboxOpen() {
+        return outbox != null;
+    }
+
+    /**
+     * Folds the log segments completed since the last snapshot into a new snapshot and deletes
+     * them, except those the outbox has not passed yet.
+     */
+    void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long sealedPosition = writeAheadLog.sealedPosition();
+            if (sealedPosition <= snapshotPosition) {
+                return;
+            }
+            long started = System.nanoTime();
+            Map<String, long[]> balances = new HashMap<>();
+            if (snapshots.latestPosition().isPresent()) {
+                snapshots.read(snapshotPosition, (accountId, balanceUnits) -> balances.put(accountId, new long[]{balanceUnits}));
+            }
+            writeAheadLog.replay(snapshotPosition, sealedPosition, new Fold(balances));
+            snapshots.write(sealedPosition, balances);
+            writeAheadLog.deleteSegmentsBefore(outbox == null ? sealedPosition : Math.min(sealedPosition, outbox.retainedPosition()));
+            snapshotPosition = sealedPosition;
+            log.info("Wrote a snapshot of {} accounts at position {} in {} ms", balances.size(), sealedPosition,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        snapshotter.shutdownNow();
+        if (outbox != null) {
+            try {
+                outbox.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the transfer outbox", e);
+            }
+        }
+        writeAheadLog.close();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Cannot write a snapshot of the write-ahead log", e);
+        }
+    }
+
+    private static Account account(String accountId, long balanceUnits) {
+        var account = new Account(accountId);
+        account.setBalanceUnits(balanceUnits);
+        return account;
+    }
+
+    /**
+     * Applies replayed records to the live accounts.
+     */
+    private final class Recovery implements WalRecords.Visitor {
+
+        private long records;
+
+        @Override
+        public void accountCreated(String accountId, long balanceUnits) {
+            records++;
+            accounts.put(accountId, account(accountId, balanceUnits));
+        }
+
+        @Override
+        public void transfer(UUID transferId, String accountIdFrom, String accountIdTo, long amountUnits) {
+            records++;
+            Account from = accounts.get(accountIdFrom);
+            Account to = accounts.get(accountIdTo);
+            if (from == null || to == null) {
+                log.warn("Skipping transfer {} between unknown accounts {} and {}", transferId, accountIdFrom, accountIdTo);
+                return;
+            }
+            from.setBalanceUnits(from.getBalanceUnits() - amountUnits);
+            to.setBalanceUnits(to.getBalanceUnits() + amountUnits);
+        }
+    }
+
+    /**
+     * Applies log records to the balances of the next snapshot.
+     */
+    private static final class Fold implements WalRecords.Visitor {
+
+        private final Map<String, long[]> balances;
+
+        private Fold(Map<String, long[]> balances) {
+            this.balances = balances;
+        }
+
+        @Override
+        public void accountCreated(String accountId, long balanceUnits) {
+            balances.put(accountId, new long[]{balanceUnits});
+        }
+
+        @Override
+        public void transfer(UUID transferId, String accountIdFrom, String accountIdTo, long amountUnits) {
+            long[] from = balances.get(accountIdFrom);
+            long[] to = balances.get(accountIdTo);
+            if (from != null && to != null) {
+                from[0] -= amountUnits;
+                to[0] += amountUnits;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.dws.challenge.repository.wal;
+
+import com.dws.challenge.domain.Transfer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Binary encoding of the records stored in the {@link WriteAheadLog}. Every record starts with a
+ * type byte; account ids are stored as a length-prefixed UTF-8 string.
+ */
+final class WalRecords {
+
+    static final byte ACCOUNT_CREATED = 1;
+    static final byte TRANSFER = 2;
+
+    private WalRecords() {
+    }
+
+    interface Visitor {
+
+        void accountCreated(String accountId, long balanceUnits);
+
+        void transfer(UUID transferId, String accountIdFrom, String accountIdTo, long amountUnits);
+    }
+
+    static ByteBuffer accountCreated(String accountId, long balanceUnits) {
+        byte[] id = encodeId(accountId);
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 + id.length + 8);
+        record.put(ACCOUNT_CREATED).putShort((short) id.length).put(id).putLong(balanceUnits);
+        return record.flip();
+    }
+
+    static ByteBuffer transfer(Transfer transfer) {
+        byte[] from = encodeId(transfer.getAccountIdFrom());
+        byte[] to = encodeId(transfer.getAccountIdTo());
+        ByteBuffer record = ByteBuffer.allocate(1 + 16 + 2 + from.length + 2 + to.length + 8);
+        record.put(TRANSFER)
+                .putLong(transfer.getTransferId().getMostSignificantBits())
+                .putLong(transfer.getTransferId().getLeastSignificantBits())
+                .putShort((short) from.length).put(from)
+                .putShort((short) to.length).put(to)
+                .putLong(transfer.getAmount().getUnits());
+        return record.flip();
+    }
+
+    /**
+     * Decodes the record between the position and the limit of {@code record}.
+     */
+    static void decode(ByteBuffer record, Visitor visitor) {
+        byte type = record.get();
+        switch (type) {
+            case ACCOUNT_CREATED:
+                visitor.accountCreated(decodeId(record), record.getLong());
+                break;
+            case TRANSFER:
+                var transferId = new UUID(record.getLong(), record.getLong());
+                String from = decodeId(record);
+                String to = decodeId(record);
+                visitor.transfer(transferId, from, to, record.getLong());
+                break;
+            default:
+                throw new IllegalStateException("Unknown write-ahead log record type " + type);
+        }
+    }
+
+    static byte[] encodeId(String accountId) {
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Account id is too long: " + id.length + " bytes");
+        }
+        return id;
+    }
+
+    static String decodeId(ByteBuffer buffer) {
+        var id = new byte[buffer.getShort()];
+        buffer.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+}
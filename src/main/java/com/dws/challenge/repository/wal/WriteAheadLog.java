@@ -0,0 +1,609 @@
+package com.dws.challenge.repository.wal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records stored in fixed-size, memory-mapped segment files.
+ * <p>
+ * Appending copies the record into the mapped segment under a short lock. A single flusher thread
+ * forces the written segments to disk and then wakes up every thread waiting in
+ * {@link #awaitDurable()} and completes the futures returned by {@link #awaitDurableAsync()}, so
+ * one {@code fsync} commits all records appended in the meantime.
+ * <p>
+ * Each record is stored as its length, its bytes and a CRC32 of its bytes. Positions are global
+ * byte offsets; segment {@code n} starts at position {@code n * segmentSize}, so a record never
+ * spans two segments. A segment is sealed by a negative length after its last record when the log
+ * rolls over to the next one.
+ * <p>
+ * Recovery stops at the first record that is incomplete or fails its checksum. The pages of a
+ * mapped segment reach the disk in any order, so later segments may hold records written after
+ * the torn one; since those were never acknowledged, a segment ending without its seal ends the
+ * log and the segments after it are deleted.
+ */
+@Slf4j
+final class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int RECORD_OVERHEAD = 2 * Integer.BYTES;
+    private static final int SEAL = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+
+    private final Object appendLock = new Object();
+    // Guarded by appendLock.
+    private Segment current;
+    // Segments that were rolled over but not forced yet, guarded by appendLock.
+    private final List<Segment> sealed = new ArrayList<>();
+
+    private volatile long appendedPosition;
+    private volatile long durablePosition;
+    private volatile IOException failure;
+    private volatile boolean running = true;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition flushRequested = durableLock.newCondition();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    // In position order, guarded by durableLock.
+    private final Queue<PendingDurable> pendingDurable = new ArrayDeque<>();
+    private final Thread flusher;
+
+    /**
+     * Opens the log in {@code directory}, first passing every record from {@code replayFrom} onwards to {@code visitor}.
+     */
+    WriteAheadLog(Path directory, int segmentSize, Duration flushInterval, long replayFrom,
+                  WalRecords.Visitor visitor) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+
+        List<Long> bases = segmentBases();
+        long end = replayFrom;
+        int next = 0;
+        while (next < bases.size() && bases.get(next) + segmentSize <= replayFrom) {
+            next++;
+        }
+        while (next < bases.size() && bases.get(next) == end - end % segmentSize) {
+            long base = bases.get(next++);
+            int offset = replaySegment(segmentPath(base), (int) (end - base), visitor);
+            if (offset < segmentSize) {
+                end = base + offset;
+                break;
+            }
+            end = base + segmentSize;
+        }
+        for (; next < bases.size(); next++) {
+            log.warn("Deleting {}, it follows the end of the write-ahead log at position {}", segmentPath(bases.get(next)), end);
+            Files.delete(segmentPath(bases.get(next)));
+        }
+        long lastBase = end - end % segmentSize;
+        current = openSegment(lastBase, (int) (end - lastBase));
+        appendedPosition = end;
+        durablePosition = end;
+
+        flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends the record between the position and the limit of {@code record}.
+     *
+     * @return the position right after the record
+     */
+    long append(ByteBuffer record) {
+        int length = record.remaining();
+        // Leaves room for the seal after the record.
+        if (length + RECORD_OVERHEAD + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit into a segment");
+        }
+        var crc = new CRC32();
+        crc.update(record.duplicate());
+        synchronized (appendLock) {
+            if (current.offset + length + RECORD_OVERHEAD + Integer.BYTES > segmentSize) {
+                roll();
+            }
+            int offset = current.offset;
+            ByteBuffer target = current.buffer.duplicate();
+            target.position(offset + Integer.BYTES);
+            target.put(record.duplicate());
+            target.putInt((int) crc.getValue());
+            target.putInt(offset, length);
+            current.offset = offset + length + RECORD_OVERHEAD;
+            long position = current.base + current.offset;
+            appendedPosition = position;
+            return position;
+        }
+    }
+
+    /**
+     * Blocks until every record appended before the call is on disk.
+     *
+     * @throws UncheckedIOException if the log could not be forced to disk
+     */
+    void awaitDurable() {
+        long target = appendedPosition;
+        if (durablePosition >= target) {
+            return;
+        }
+        durableLock.lock();
+        try {
+            flushRequested.signal();
+            while (durablePosition < target) {
+                checkFailure();
+                durableAdvanced.awaitUninterruptibly();
+            }
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * @return a future completed once every record appended before the call is on disk
+     */
+    CompletableFuture<Void> awaitDurableAsync() {
+        durableLock.lock();
+        try {
+            // Read under the lock, so the positions of pending futures never decrease.
+            long target = appendedPosition;
+            if (durablePosition >= target) {
+                return CompletableFuture.completedFuture(null);
+            }
+            IOException e = failure;
+            if (e != null) {
+                return CompletableFuture.failedFuture(new UncheckedIOException("The write-ahead log cannot be written", e));
+            }
+            var future = new CompletableFuture<Void>();
+            pendingDurable.add(new PendingDurable(target, future));
+            flushRequested.signal();
+            return future;
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * @return the position right after the last record appended
+     */
+    long appendedPosition() {
+        return appendedPosition;
+    }
+
+    /**
+     * Waits up to {@code timeoutNanos} for records beyond {@code position} to become durable.
+     *
+     * @return whether there are durable records beyond {@code position}
+     */
+    boolean awaitDurableBeyond(long position, long timeoutNanos) {
+        if (durablePosition > position) {
+            return true;
+        }
+        durableLock.lock();
+        try {
+            long remaining = timeoutNanos;
+            while (durablePosition <= position && remaining > 0) {
+                remaining = durableAdvanced.awaitNanos(remaining);
+            }
+            return durablePosition > position;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * @return a reader of the durable records from {@code position}, a record boundary, onwards
+     */
+    Tail tail(long position) {
+        return new Tail(position);
+    }
+
+    /**
+     * @return the position of the oldest record kept, i.e. the start of the oldest segment
+     */
+    long firstPosition() throws IOException {
+        List<Long> bases = segmentBases();
+        return bases.isEmpty() ? appendedPosition : bases.get(0);
+    }
+
+    /**
+     * @return the position up to which all segments are complete, i.e. the start of the segment being appended to
+     */
+    long sealedPosition() {
+        synchronized (appendLock) {
+            return current.base;
+        }
+    }
+
+    /**
+     * Passes the records between {@code from} and {@code to}, both segment boundaries, to {@code visitor}.
+     */
+    void replay(long from, long to, WalRecords.Visitor visitor) throws IOException {
+        for (long base = from; base < to; base += segmentSize) {
+            Path path = segmentPath(base);
+            if (Files.exists(path) && replaySegment(path, 0, visitor) < segmentSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments that end at or before {@code position}.
+     */
+    void deleteSegmentsBefore(long position) throws IOException {
+        for (long base : segmentBases()) {
+            if (base + segmentSize <= position) {
+                Files.deleteIfExists(segmentPath(base));
+            }
+        }
+    }
+
+    /**
+     * Deletes all records and starts over at position zero.
+     */
+    void reset() throws IOException {
+        flushLock.lock();
+        try {
+            synchronized (appendLock) {
+                sealed.forEach(Segment::close);
+                sealed.clear();
+                current.close();
+                for (long base : segmentBases()) {
+                    Files.deleteIfExists(segmentPath(base));
+                }
+                current = openSegment(0, 0);
+                appendedPosition = 0;
+                durablePosition = 0;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        durableLock.lock();
+        try {
+            flushRequested.signal();
+        } finally {
+            durableLock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (appendLock) {
+            sealed.forEach(Segment::close);
+            current.close();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            durableLock.lock();
+            try {
+                if (running && durablePosition >= appendedPosition) {
+                    flushRequested.awaitNanos(flushIntervalNanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                durableLock.unlock();
+            }
+            flush();
+        }
+        flush();
+    }
+
+    private void flush() {
+        flushLock.lock();
+        try {
+            long target;
+            Segment segment;
+            List<Segment> rolled;
+            synchronized (appendLock) {
+                target = appendedPosition;
+                segment = current;
+                rolled = new ArrayList<>(sealed);
+                sealed.clear();
+            }
+            if (target <= durablePosition) {
+                return;
+            }
+            for (Segment s : rolled) {
+                s.buffer.force();
+                s.close();
+            }
+            segment.buffer.force();
+            advanceDurable(target);
+        } catch (UncheckedIOException e) {
+            log.error("Cannot force the write-ahead log to disk", e);
+            failure = e.getCause();
+            advanceDurable(durablePosition);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void advanceDurable(long position) {
+        var completed = new ArrayList<PendingDurable>();
+        IOException e;
+        durableLock.lock();
+        try {
+            durablePosition = position;
+            durableAdvanced.signalAll();
+            e = failure;
+            while (!pendingDurable.isEmpty() && (e != null || pendingDurable.peek().position <= position)) {
+                completed.add(pendingDurable.poll());
+            }
+        } finally {
+            durableLock.unlock();
+        }
+        // Outside the lock, the futures run the callbacks of their callers.
+        for (PendingDurable pending : completed) {
+            if (e == null) {
+                pending.future.complete(null);
+            } else {
+                pending.future.completeExceptionally(new UncheckedIOException("The write-ahead log cannot be written", e));
+            }
+        }
+    }
+
+    private void checkFailure() {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("The write-ahead log cannot be written", e);
+        }
+    }
+
+    private void roll() {
+        current.buffer.putInt(current.offset, SEAL);
+        sealed.add(current);
+        try {
+            current = openSegment(current.base + segmentSize, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create a write-ahead log segment", e);
+        }
+    }
+
+    private Segment openSegment(long base, int offset) throws IOException {
+        var channel = FileChannel.open(segmentPath(base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        if (offset + Integer.BYTES <= segmentSize && buffer.getInt(offset) != 0) {
+            // Left over from a torn write, clear it so it is not mistaken for a record after the new ones.
+            for (int i = offset; i < segmentSize; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        return new Segment(base, channel, buffer, offset);
+    }
+
+    /**
+     * Passes every valid record of the log in {@code directory} to {@code visitor} without opening
+     * it for writing, so it can be read while another process appends to it. Like recovery, stops
+     * at the first segment ending without its seal or followed by a gap.
+     *
+     * @return the number of segments read
+     */
+    static int replayAll(Path directory, WalRecords.Visitor visitor) throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(path -> isSegment(path.getFileName().toString()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        long expectedBase = segments.isEmpty() ? 0 : baseOf(segments.get(0));
+        int read = 0;
+        for (Path segment : segments) {
+            if (baseOf(segment) != expectedBase) {
+                break;
+            }
+            read++;
+            long size = Files.size(segment);
+            if (replaySegment(segment, 0, visitor) < size) {
+                break;
+            }
+            expectedBase += size;
+        }
+        return read;
+    }
+
+    /**
+     * @return the offset right after the last valid record of the segment, or its size if it is sealed
+     */
+    private static int replaySegment(Path path, int from, WalRecords.Visitor visitor) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int limit = buffer.limit();
+            int offset = from;
+            var crc = new CRC32();
+            while (offset + RECORD_OVERHEAD <= limit) {
+                int length = buffer.getInt(offset);
+                if (length == SEAL) {
+                    return limit;
+                }
+                if (length <= 0 || length > limit - offset - RECORD_OVERHEAD) {
+                    break;
+                }
+                ByteBuffer record = buffer.duplicate();
+                record.position(offset + Integer.BYTES).limit(offset + Integer.BYTES + length);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != buffer.getInt(offset + Integer.BYTES + length)) {
+                    log.warn("Ignoring a torn record at offset {} of {}", offset, path);
+                    break;
+                }
+                WalRecords.decode(record, visitor);
+                offset += length + RECORD_OVERHEAD;
+            }
+            return offset;
+        }
+    }
+
+    private List<Long> segmentBases() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> isSegment(path.getFileName().toString()))
+                    .map(WriteAheadLog::baseOf)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long baseOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, base, SEGMENT_SUFFIX));
+    }
+
+    private static boolean isSegment(String fileName) {
+        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Reads the records of the log in order as they become durable. A tail has its own read-only
+     * mapping of the segment it reads and is used by a single thread; it does not survive a
+     * {@link #reset()}.
+     */
+    final class Tail implements Closeable {
+
+        private long position;
+        private long segmentBase = -1;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+
+        private Tail(long position) {
+            this.position = position;
+        }
+
+        /**
+         * @return the position right after the last record read
+         */
+        long position() {
+            return position;
+        }
+
+        /**
+         * Passes the durable records after the last one read to {@code visitor}.
+         *
+         * @return the number of records read
+         */
+        int poll(WalRecords.Visitor visitor) throws IOException {
+            return poll(visitor, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Passes up to {@code maxRecords} durable records after the last one read to {@code visitor}.
+         *
+         * @return the number of records read
+         */
+        int poll(WalRecords.Visitor visitor, int maxRecords) throws IOException {
+            long end = durablePosition;
+            int records = 0;
+            while (position < end && records < maxRecords) {
+                long base = position - position % segmentSize;
+                if (base != segmentBase) {
+                    map(base);
+                }
+                int offset = (int) (position - base);
+                int length = offset + RECORD_OVERHEAD <= segmentSize ? buffer.getInt(offset) : SEAL;
+                if (length <= 0) {
+                    // Durable records follow, so the rest of this segment was left unused by a roll.
+                    position = base + segmentSize;
+                    continue;
+                }
+                // Records below the durable position were written in full before it advanced and need no checksum.
+                ByteBuffer record = buffer.duplicate();
+                record.position(offset + Integer.BYTES).limit(offset + Integer.BYTES + length);
+                WalRecords.decode(record, visitor);
+                position += length + RECORD_OVERHEAD;
+                records++;
+            }
+            return records;
+        }
+
+        private void map(long base) throws IOException {
+            close();
+            channel = FileChannel.open(segmentPath(base), StandardOpenOption.READ);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+            segmentBase = base;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+                buffer = null;
+                segmentBase = -1;
+            }
+        }
+    }
+
+    private static final class PendingDurable {
+
+        private final long position;
+        private final CompletableFuture<Void> future;
+
+        private PendingDurable(long position, CompletableFuture<Void> future) {
+            this.position = position;
+            this.future = future;
+        }
+    }
+
+    private static final class Segment {
+
+        private final long base;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int offset;
+
+        private Segment(long base, FileChannel channel, MappedByteBuffer buffer, int offset) {
+            this.base = base;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close write-ahead log segment {}", base, e);
+            }
+        }
+    }
+}
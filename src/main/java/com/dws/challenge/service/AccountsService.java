@@ -1,27 +1,120 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.AccountResponse;
+import com.dws.challenge.dto.TransferHistoryPage;
+import com.dws.challenge.engine.SnapshotBarrier;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.TransferJournal;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 @Service
 public class AccountsService {
 
+  public static final int MAX_HISTORY_PAGE_SIZE = 1000;
+
   @Getter
   private final AccountsRepository accountsRepository;
 
+  private final TransferJournal transferJournal;
+
+  private final SnapshotBarrier snapshotBarrier;
+
   @Autowired
-  public AccountsService(AccountsRepository accountsRepository) {
+  public AccountsService(AccountsRepository accountsRepository, TransferJournal transferJournal,
+                         SnapshotBarrier snapshotBarrier) {
     this.accountsRepository = accountsRepository;
+    this.transferJournal = transferJournal;
+    this.snapshotBarrier = snapshotBarrier;
   }
 
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    this.snapshotBarrier.enter();
+    try {
+      excludeFromSnapshot(account);
+      this.accountsRepository.createAccount(account);
+    } finally {
+      this.snapshotBarrier.exit();
+    }
   }
 
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
+
+  /**
+   * @return the account as of its last committed balance, {@code null} for an unknown id
+   */
+  public AccountResponse readAccount(String accountId) {
+    Account account = this.accountsRepository.readAccount(accountId);
+    return account == null ? null : AccountResponse.of(account);
+  }
+
+  /**
+   * Creates the accounts of a bulk request. An account that cannot be created does not stop the others.
+   *
+   * @return why each account was not created, in the order of {@code accounts}, {@code null} for created accounts
+   */
+  public List<String> createAccounts(List<Account> accounts) {
+    List<RuntimeException> failures;
+    this.snapshotBarrier.enter();
+    try {
+      if (this.snapshotBarrier.isTakingSnapshot()) {
+        accounts.forEach(this::excludeFromSnapshot);
+      }
+      failures = this.accountsRepository.createAccounts(accounts);
+    } finally {
+      this.snapshotBarrier.exit();
+    }
+    var errors = new ArrayList<String>(failures.size());
+    for (RuntimeException failure : failures) {
+      if (failure == null) {
+        errors.add(null);
+      } else if (failure instanceof ResponseStatusException) {
+        errors.add(((ResponseStatusException) failure).getReason());
+      } else {
+        errors.add(failure.getMessage());
+      }
+    }
+    return errors;
+  }
+
+  /**
+   * @return the account of each id in the order of {@code accountIds}, {@code null} for unknown ids
+   */
+  public List<Account> getAccounts(List<String> accountIds) {
+    return this.accountsRepository.getAccounts(accountIds);
+  }
+
+  /**
+   * @return up to {@code limit} transfers of the account older than {@code cursor}, newest first
+   */
+  public TransferHistoryPage getTransferHistory(String accountId, Long cursor, int limit) {
+    if (limit < 1 || limit > MAX_HISTORY_PAGE_SIZE) {
+      throw new ResponseStatusException(BAD_REQUEST, "Limit must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+    }
+    if (this.accountsRepository.getAccount(accountId) == null) {
+      throw new ResponseStatusException(NOT_FOUND, "Cannot find an account");
+    }
+    return this.transferJournal.page(accountId, cursor, limit);
+  }
+
+  /**
+   * Keeps an account created while a balance snapshot is taken out of it. An existing account is
+   * left alone, its creation fails as a duplicate.
+   */
+  private void excludeFromSnapshot(Account account) {
+    if (this.snapshotBarrier.isTakingSnapshot() && this.accountsRepository.getAccount(account.getAccountId()) == null) {
+      this.snapshotBarrier.beforeCreate(account.getAccountId());
+    }
+  }
 }
@@ -0,0 +1,197 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.NotificationProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.metrics.TransferMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues notifications on a bounded queue and sends them in batches through the delegate on a
+ * dedicated thread, so transfers do not wait for notification I/O.
+ * <p>
+ * When the queue is full a notification is dropped, after waiting for space up to the configured
+ * offer timeout with the {@link NotificationProperties.OverflowPolicy#BLOCK} policy.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(prefix = "challenge.notification.async", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AsyncNotificationService implements NotificationService, MeterBinder, DisposableBean {
+
+    private final NotificationService delegate;
+    private final NotificationProperties notificationProperties;
+    private final BlockingQueue<PendingNotification> queue;
+    private final ExecutorService dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile Timer dispatchTimer;
+
+    public AsyncNotificationService(@Qualifier("emailNotificationService") NotificationService delegate,
+                                    NotificationProperties notificationProperties) {
+        this.delegate = delegate;
+        this.notificationProperties = notificationProperties;
+        this.queue = new ArrayBlockingQueue<>(notificationProperties.getQueueCapacity());
+        this.dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher.execute(this::dispatchLoop);
+    }
+
+    @Override
+    public void notifyAboutTransfer(Account account, String transferDescription) {
+        enqueue(new PendingNotification(account, transferDescription, null));
+    }
+
+    @Override
+    public void notifyAboutTransfer(Account account, String descriptionFormat, Object... descriptionArgs) {
+        enqueue(new PendingNotification(account, descriptionFormat, descriptionArgs));
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("notification.queue.size", queue, BlockingQueue::size)
+                .description("Notifications waiting to be sent")
+                .register(registry);
+        bindCounter(registry, "submitted", submitted);
+        bindCounter(registry, "dispatched", dispatched);
+        bindCounter(registry, "dropped", dropped);
+        bindCounter(registry, "failed", failed);
+        dispatchTimer = TransferMetrics.latencyTimer("notification.dispatch", "Time from queueing a notification until it is sent")
+                .register(registry);
+    }
+
+    private static void bindCounter(MeterRegistry registry, String result, AtomicLong count) {
+        FunctionCounter.builder("notification.count", count, AtomicLong::get)
+                .description("Notifications by what happened to them")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        dispatcher.shutdown();
+        if (!dispatcher.awaitTermination(notificationProperties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Dropping {} notifications which were not sent before shutdown", queue.size());
+            dispatcher.shutdownNow();
+        }
+    }
+
+    private void enqueue(PendingNotification notification) {
+        submitted.incrementAndGet();
+        boolean queued;
+        if (notificationProperties.getOverflowPolicy() == NotificationProperties.OverflowPolicy.BLOCK) {
+            try {
+                queued = queue.offer(notification, notificationProperties.getOfferTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(notification);
+        }
+        if (!queued) {
+            dropped.incrementAndGet();
+            log.warn("Notification queue is full, dropping notification to owner of {}", notification.account.getAccountId());
+        }
+    }
+
+    private void dispatchLoop() {
+        List<PendingNotification> batch = new ArrayList<>(notificationProperties.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingNotification first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, notificationProperties.getMaxBatchSize() - 1);
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<PendingNotification> batch) {
+        for (PendingNotification notification : batch) {
+            try {
+                delegate.notifyAboutTransfer(notification.account, notification.description());
+                dispatched.incrementAndGet();
+                Timer timer = dispatchTimer;
+                if (timer != null) {
+                    timer.record(System.nanoTime() - notification.queuedAtNanos, TimeUnit.NANOSECONDS);
+                }
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.warn("Cannot send notification to owner of {}", notification.account.getAccountId(), e);
+            }
+        }
+    }
+
+    private static final class PendingNotification {
+
+        private final Account account;
+        private final String description;
+        private final Object[] descriptionArgs;
+        private final long queuedAtNanos = System.nanoTime();
+
+        private PendingNotification(Account account, String description, Object[] descriptionArgs) {
+            this.account = account;
+            this.description = description;
+            this.descriptionArgs = descriptionArgs;
+        }
+
+        private String description() {
+            return descriptionArgs == null ? description : String.format(description, descriptionArgs);
+        }
+    }
+}
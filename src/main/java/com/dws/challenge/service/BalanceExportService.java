@@ -0,0 +1,158 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.ExportProperties;
+import com.dws.challenge.engine.PointInTimeBalances;
+import com.dws.challenge.engine.SnapshotBarrier;
+import com.dws.challenge.engine.TransferEngine;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Exports the balances of all accounts as of one instant, taken by the {@link SnapshotBarrier},
+ * while transfers keep running. The total of the exported balances is the total of all balances
+ * at that instant.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalanceExportService {
+
+    private final AccountsRepository accountsRepository;
+    private final TransferEngine transferEngine;
+    private final SnapshotBarrier snapshotBarrier;
+    private final ExportProperties exportProperties;
+
+    @Getter
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * @throws ResponseStatusException if {@code name} is not a format, ignoring case
+         */
+        public static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(BAD_REQUEST, "Unknown export format " + name);
+            }
+        }
+    }
+
+    @Value
+    public static class Export {
+
+        Instant takenAt;
+        long accounts;
+        BigDecimal totalBalance;
+        /**
+         * The exported file, {@code null} if the balances were streamed.
+         */
+        Path file;
+    }
+
+    /**
+     * Writes the balances to {@code out}, gzip compressed if {@code gzip} is set. Does not close {@code out}.
+     */
+    public Export export(Format format, boolean gzip, OutputStream out) throws IOException {
+        if (!gzip) {
+            return export(format, Channels.newChannel(out));
+        }
+        var compressed = new GZIPOutputStream(out, bufferSize());
+        Export export = export(format, Channels.newChannel(compressed));
+        compressed.finish();
+        return export;
+    }
+
+    /**
+     * Writes the balances to a new file in the export directory, named after the instant of the
+     * balances. The file only appears under that name once it is complete.
+     */
+    public Export exportToFile(Format format, boolean gzip) throws IOException {
+        Path directory = exportProperties.getDirectory();
+        Files.createDirectories(directory);
+        Path partFile = Files.createTempFile(directory, "balances-", ".part");
+
+        Export export;
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+            if (gzip) {
+                var compressed = new GZIPOutputStream(Channels.newOutputStream(channel), bufferSize());
+                export = export(format, Channels.newChannel(compressed));
+                compressed.finish();
+            } else {
+                export = export(format, channel);
+            }
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partFile);
+            throw e;
+        }
+
+        String name = "balances-" + export.getTakenAt().toEpochMilli() + "." + format.getExtension() + (gzip ? ".gz" : "");
+        Path file = Files.move(partFile, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        return new Export(export.getTakenAt(), export.getAccounts(), export.getTotalBalance(), file);
+    }
+
+    private Export export(Format format, WritableByteChannel channel) throws IOException {
+        var writer = new BalanceWriter(format, channel, bufferSize());
+        PointInTimeBalances balances = snapshotBarrier.takeSnapshot(transferEngine::pendingCredits);
+        long start = System.nanoTime();
+        try {
+            writer.writeHeader();
+            accountsRepository.forEachAccount(account -> {
+                long balance = balances.balanceOf(account);
+                if (balance == PointInTimeBalances.NOT_CREATED) {
+                    return;
+                }
+                try {
+                    writer.writeRow(account.getAccountId(), balance);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            snapshotBarrier.releaseSnapshot(balances);
+        }
+        var export = new Export(balances.getTakenAt(), writer.getRows(), writer.getTotalBalance(), null);
+        log.info("Exported {} balances as of {} totalling {} in {} ms", export.getAccounts(), export.getTakenAt(),
+                export.getTotalBalance(), (System.nanoTime() - start) / 1_000_000);
+        return export;
+    }
+
+    private int bufferSize() {
+        return (int) exportProperties.getBufferSize().toBytes();
+    }
+}
@@ -0,0 +1,180 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Money;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes balance rows straight into a buffer, written to the channel whenever it is full, so no
+ * string or {@link BigDecimal} is created per row. Balances are rendered like
+ * {@link Money#toBigDecimal(long)}, without trailing zeros.
+ */
+final class BalanceWriter {
+
+    private static final byte[] CSV_HEADER = "account_id,balance\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NDJSON_ID = "{\"account_id\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NDJSON_BALANCE = "\",\"balance\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final long UNITS_PER_WHOLE = BigInteger.TEN.pow(Money.SCALE).longValueExact();
+
+    private final BalanceExportService.Format format;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+
+    private long rows;
+    private long partialTotal;
+    private BigInteger total = BigInteger.ZERO;
+
+    BalanceWriter(BalanceExportService.Format format, WritableByteChannel channel, int bufferSize) {
+        this.format = format;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    void writeHeader() throws IOException {
+        if (format == BalanceExportService.Format.CSV) {
+            put(CSV_HEADER);
+        }
+    }
+
+    void writeRow(String accountId, long balanceUnits) throws IOException {
+        if (format == BalanceExportService.Format.CSV) {
+            boolean quoted = needsQuotes(accountId);
+            if (quoted) {
+                put((byte) '"');
+            }
+            putText(accountId);
+            if (quoted) {
+                put((byte) '"');
+            }
+            put((byte) ',');
+            putBalance(balanceUnits);
+        } else {
+            put(NDJSON_ID);
+            putText(accountId);
+            put(NDJSON_BALANCE);
+            putBalance(balanceUnits);
+            put((byte) '}');
+        }
+        put((byte) '\n');
+
+        rows++;
+        try {
+            partialTotal = Math.addExact(partialTotal, balanceUnits);
+        } catch (ArithmeticException e) {
+            total = total.add(BigInteger.valueOf(partialTotal));
+            partialTotal = balanceUnits;
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    BigDecimal getTotalBalance() {
+        BigDecimal sum = new BigDecimal(total.add(BigInteger.valueOf(partialTotal)), Money.SCALE).stripTrailingZeros();
+        return sum.scale() < 0 ? sum.setScale(0) : sum;
+    }
+
+    private static boolean needsQuotes(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void putText(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                // Bytes of multi-byte UTF-8 sequences are all >= 0x80 and never escaped.
+                for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+                    putEscaped(b);
+                }
+                return;
+            }
+        }
+        for (int i = 0; i < text.length(); i++) {
+            putEscaped((byte) text.charAt(i));
+        }
+    }
+
+    private void putEscaped(byte b) throws IOException {
+        if (format == BalanceExportService.Format.CSV) {
+            if (b == '"') {
+                put(b);
+            }
+            put(b);
+            return;
+        }
+        if (b == '"' || b == '\\') {
+            put((byte) '\\');
+            put(b);
+        } else if (b >= 0 && b < 0x20) {
+            put((byte) '\\');
+            put((byte) 'u');
+            put((byte) '0');
+            put((byte) '0');
+            put(HEX[b >>> 4]);
+            put(HEX[b & 0xF]);
+        } else {
+            put(b);
+        }
+    }
+
+    private void putBalance(long units) throws IOException {
+        if (units < 0) {
+            put((byte) '-');
+            units = -units;
+        }
+        putDigits(units / UNITS_PER_WHOLE);
+        long fraction = units % UNITS_PER_WHOLE;
+        if (fraction != 0) {
+            put((byte) '.');
+            for (long place = UNITS_PER_WHOLE / 10; fraction != 0; place /= 10) {
+                put((byte) ('0' + fraction / place));
+                fraction %= place;
+            }
+        }
+    }
+
+    private void putDigits(long value) throws IOException {
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            put(digits[--length]);
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            put(b);
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+    }
+}
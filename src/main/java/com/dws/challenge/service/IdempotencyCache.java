@@ -0,0 +1,255 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.IdempotencyProperties;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+/**
+ * Remembers the response of each transfer executed with an {@code Idempotency-Key}, so a retried
+ * request gets the original response instead of executing the transfer again.
+ * <p>
+ * A duplicate arriving while the first request is still running waits for its outcome. Failed
+ * transfers are not remembered, so they can be retried with the same key. Keys are spread over
+ * independently locked shards; within a shard they are kept in insertion order, so expired keys
+ * are evicted from the head in constant time.
+ * <p>
+ * A key is never forgotten while its transfer is running or before it expires, since its transfer
+ * could then run twice: a new key arriving at a full shard is rejected with
+ * {@code 503 Service Unavailable} instead.
+ */
+@Component
+public class IdempotencyCache implements MeterBinder {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    // Rough size of a map node, an entry, its future, request and response, without the key.
+    private static final long ENTRY_OVERHEAD_BYTES = 400;
+
+    private final Shard[] shards;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public IdempotencyCache(IdempotencyProperties idempotencyProperties) {
+        this.ttlNanos = idempotencyProperties.getTtl().toNanos();
+        this.shards = new Shard[idempotencyProperties.getShards()];
+        int maxEntriesPerShard = Math.max(1, idempotencyProperties.getMaxEntries() / shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(maxEntriesPerShard);
+        }
+    }
+
+    /**
+     * Executes {@code transfer} unless a transfer with {@code key} was already executed.
+     *
+     * @throws ResponseStatusException if {@code key} was used for a different transfer, or is new
+     *                                 while the cache is full of keys it must not forget yet
+     */
+    public TransferResponse execute(String key, TransferRequest request, Supplier<TransferResponse> transfer) {
+        try {
+            return executeAsync(key, request, () -> CompletableFuture.completedFuture(transfer.get())).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #execute}, for transfers completing asynchronously.
+     */
+    public CompletableFuture<TransferResponse> executeAsync(String key, TransferRequest request,
+                                                            Supplier<CompletableFuture<TransferResponse>> transfer) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(BAD_REQUEST, "Invalid Idempotency-Key");
+        }
+        Shard shard = shards[Math.floorMod(key.hashCode(), shards.length)];
+        var created = new Entry(request, System.nanoTime() + ttlNanos);
+        Entry entry = shard.putIfAbsent(key, created);
+        if (entry != created) {
+            if (!sameTransfer(entry.request, request)) {
+                throw new ResponseStatusException(UNPROCESSABLE_ENTITY, "Idempotency-Key was already used for a different transfer");
+            }
+            hits.increment();
+            return entry.response.copy();
+        }
+
+        misses.increment();
+        CompletableFuture<TransferResponse> result;
+        try {
+            result = transfer.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((response, failure) -> {
+            if (failure == null) {
+                created.response.complete(response);
+                return;
+            }
+            shard.remove(key, created);
+            created.response.completeExceptionally(
+                    failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+        });
+        return created.response.copy();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return a rough estimate of the heap used by the remembered keys and responses
+     */
+    public long getEstimatedMemoryBytes() {
+        long bytes = 0;
+        for (Shard shard : shards) {
+            bytes += shard.bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("idempotency.cache.requests", hits, LongAdder::sum)
+                .description("Requests with an Idempotency-Key")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("idempotency.cache.requests", misses, LongAdder::sum)
+                .description("Requests with an Idempotency-Key")
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("idempotency.cache.size", this, IdempotencyCache::getSize)
+                .description("Remembered idempotency keys")
+                .register(registry);
+        Gauge.builder("idempotency.cache.memory", this, IdempotencyCache::getEstimatedMemoryBytes)
+                .description("Estimated heap used by remembered idempotency keys and responses")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    private static boolean sameTransfer(TransferRequest first, TransferRequest second) {
+        return Objects.equals(first.getAccountIdFrom(), second.getAccountIdFrom())
+                && Objects.equals(first.getAccountIdTo(), second.getAccountIdTo())
+                && (first.getAmount() == null ? second.getAmount() == null
+                : second.getAmount() != null && first.getAmount().compareTo(second.getAmount()) == 0);
+    }
+
+    private static long sizeOf(String key) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length();
+    }
+
+    private static final class Entry {
+
+        private final TransferRequest request;
+        private final long expiresAtNanos;
+        private final CompletableFuture<TransferResponse> response = new CompletableFuture<>();
+
+        private Entry(TransferRequest request, long expiresAtNanos) {
+            this.request = request;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long nowNanos) {
+            return nowNanos - expiresAtNanos >= 0;
+        }
+
+        /**
+         * @return whether the key must be remembered: its transfer is running or it has not expired
+         */
+        private boolean isLive(long nowNanos) {
+            return !response.isDone() || !isExpired(nowNanos);
+        }
+    }
+
+    private static final class Shard {
+
+        private final Map<String, Entry> entries = new LinkedHashMap<>();
+        private final int maxEntries;
+        private volatile int size;
+        private volatile long bytes;
+
+        private Shard(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * @return the entry already stored for {@code key}, or {@code entry} if it was stored now
+         */
+        private synchronized Entry putIfAbsent(String key, Entry entry) {
+            long now = System.nanoTime();
+            evictExpired(now);
+            Entry existing = entries.get(key);
+            if (existing != null && existing.isLive(now)) {
+                return existing;
+            }
+            if (existing != null) {
+                entries.remove(key);
+                bytes -= sizeOf(key);
+            } else if (entries.size() >= maxEntries) {
+                throw new ResponseStatusException(SERVICE_UNAVAILABLE, "Too many idempotency keys in use. Please try again later");
+            }
+            entries.put(key, entry);
+            bytes += sizeOf(key);
+            size = entries.size();
+            return entry;
+        }
+
+        private synchronized void remove(String key, Entry entry) {
+            if (entries.remove(key, entry)) {
+                bytes -= sizeOf(key);
+                size = entries.size();
+            }
+        }
+
+        private void evictExpired(long now) {
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                if (!eldest.getValue().isExpired(now)) {
+                    // Later keys expire later.
+                    break;
+                }
+                if (eldest.getValue().isLive(now)) {
+                    // Still running, forgetting it would let a retry run the transfer again.
+                    continue;
+                }
+                bytes -= sizeOf(eldest.getKey());
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -5,4 +5,12 @@ import com.dws.challenge.domain.Account;
 public interface NotificationService {
 
   void notifyAboutTransfer(Account account, String transferDescription);
+
+  /**
+   * Same as {@link #notifyAboutTransfer(Account, String)}, but lets implementations defer
+   * {@link String#format} of the description until the notification is actually sent.
+   */
+  default void notifyAboutTransfer(Account account, String descriptionFormat, Object... descriptionArgs) {
+    notifyAboutTransfer(account, String.format(descriptionFormat, descriptionArgs));
+  }
 }
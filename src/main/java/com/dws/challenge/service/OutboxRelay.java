@@ -0,0 +1,175 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.OutboxProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.TransferOutbox;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.dws.challenge.service.TransferService.TRANSFER_MESSAGE_FROM;
+import static com.dws.challenge.service.TransferService.TRANSFER_MESSAGE_TO;
+
+/**
+ * Sends the notifications of transfers from the {@link TransferOutbox} of the accounts repository
+ * on a dedicated thread: reads the durable transfers in batches, notifies the owners of both
+ * accounts of each through the delegate and checkpoints the batch, so one checkpoint write covers
+ * the whole batch. Transfers never wait for a notification, and no notification of a durable
+ * transfer is lost in a crash; the notifications of a batch not checkpointed yet are sent again
+ * after a restart.
+ * <p>
+ * The checkpoint never passes a transfer whose notifications were not sent: a failed notification
+ * is retried with exponential backoff until it is sent, holding back the ones after it.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "challenge.notification.outbox", name = "enabled", havingValue = "true")
+public class OutboxRelay implements MeterBinder, DisposableBean {
+
+    private final AccountsRepository accountsRepository;
+    private final NotificationService delegate;
+    private final OutboxProperties outboxProperties;
+    private final TransferOutbox outbox;
+    private final long maxRetryBackoffNanos;
+    private final Thread relay;
+    private volatile boolean running = true;
+
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile DistributionSummary batchSizes;
+
+    public OutboxRelay(AccountsRepository accountsRepository,
+                       @Qualifier("emailNotificationService") NotificationService delegate,
+                       OutboxProperties outboxProperties) throws IOException {
+        this.accountsRepository = accountsRepository;
+        this.delegate = delegate;
+        this.outboxProperties = outboxProperties;
+        this.outbox = accountsRepository.openOutbox();
+        this.maxRetryBackoffNanos = outboxProperties.getMaxRetryBackoff().toNanos();
+        this.relay = new Thread(this::relayLoop, "outbox-relay");
+        this.relay.setDaemon(true);
+        this.relay.start();
+    }
+
+    public long getRelayedCount() {
+        return relayed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCounter(registry, "relayed", relayed);
+        bindCounter(registry, "failed", failed);
+        batchSizes = DistributionSummary.builder("notification.outbox.batch")
+                .description("Transfers relayed per outbox checkpoint")
+                .register(registry);
+    }
+
+    private static void bindCounter(MeterRegistry registry, String result, AtomicLong count) {
+        FunctionCounter.builder("notification.outbox.count", count, AtomicLong::get)
+                .description("Notifications relayed, and failed attempts to send one, which are retried")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        // Cuts a retry backoff short.
+        LockSupport.unpark(relay);
+        relay.join(outboxProperties.getShutdownTimeout().toMillis());
+        if (relay.isAlive()) {
+            log.warn("Outbox relay did not finish its batch before shutdown, it is sent again on the next start");
+        }
+    }
+
+    private void relayLoop() {
+        List<RelayedTransfer> batch = new ArrayList<>();
+        while (running) {
+            try {
+                long position = outbox.poll(outboxProperties.getMaxBatchSize(), outboxProperties.getPollInterval(),
+                        (transferId, accountIdFrom, accountIdTo, amountUnits) ->
+                                batch.add(new RelayedTransfer(accountIdFrom, accountIdTo, amountUnits)));
+                for (RelayedTransfer transfer : batch) {
+                    if (!deliver(transfer)) {
+                        // Stopped before the transfer was delivered, the batch is relayed again on the next start.
+                        return;
+                    }
+                }
+                outbox.checkpoint(position);
+                DistributionSummary summary = batchSizes;
+                if (summary != null && !batch.isEmpty()) {
+                    summary.record(batch.size());
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Cannot relay transfer notifications from the outbox", e);
+                LockSupport.parkNanos(outboxProperties.getPollInterval().toNanos());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the relay was stopped before both notifications of the transfer were sent
+     */
+    private boolean deliver(RelayedTransfer transfer) {
+        Money amount = Money.ofUnits(transfer.amountUnits);
+        return send(transfer.accountIdFrom, TRANSFER_MESSAGE_FROM, amount, transfer.accountIdTo)
+                && send(transfer.accountIdTo, TRANSFER_MESSAGE_TO, amount, transfer.accountIdFrom);
+    }
+
+    private boolean send(String accountId, String descriptionFormat, Money amount, String otherAccountId) {
+        long backoffNanos = outboxProperties.getPollInterval().toNanos();
+        while (running) {
+            Account account = accountsRepository.getAccount(accountId);
+            if (account == null) {
+                // The accounts were cleared since the transfer.
+                return true;
+            }
+            try {
+                delegate.notifyAboutTransfer(account, descriptionFormat, amount, otherAccountId);
+                relayed.incrementAndGet();
+                return true;
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.warn("Cannot send notification to owner of {}, retrying in {} ms", accountId,
+                        TimeUnit.NANOSECONDS.toMillis(backoffNanos), e);
+                LockSupport.parkNanos(backoffNanos);
+                backoffNanos = Math.min(backoffNanos * 2, maxRetryBackoffNanos);
+            }
+        }
+        return false;
+    }
+
+    private static final class RelayedTransfer {
+
+        private final String accountIdFrom;
+        private final String accountIdTo;
+        private final long amountUnits;
+
+        private RelayedTransfer(String accountIdFrom, String accountIdTo, long amountUnits) {
+            this.accountIdFrom = accountIdFrom;
+            this.accountIdTo = accountIdTo;
+            this.amountUnits = amountUnits;
+        }
+    }
+}
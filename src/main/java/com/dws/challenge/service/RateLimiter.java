@@ -0,0 +1,77 @@
+package com.dws.challenge.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets by key, kept as the generic cell rate algorithm: each bucket is a single
+ * theoretical arrival time, the instant the bucket would be full again, advanced by one emission
+ * interval per admitted request with a compare-and-set. A request is admitted while that instant
+ * is at most {@code burst} intervals ahead of now.
+ * <p>
+ * A bucket whose theoretical arrival time has passed is full and behaves like no bucket at all,
+ * so {@link #evictIdle} drops it without changing any decision.
+ */
+public final class RateLimiter {
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long emissionIntervalNanos;
+    private final long toleranceNanos;
+    private final LongSupplier nanoClock;
+
+    public RateLimiter(double ratePerSecond, int burst, LongSupplier nanoClock) {
+        if (!(ratePerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("A rate limit needs a positive rate and burst");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = Math.multiplyExact(emissionIntervalNanos, (long) burst);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key}, unless it is empty.
+     *
+     * @return {@code 0} if a token was taken, otherwise how many nanoseconds until one is available
+     */
+    public long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long arrival = bucket.get();
+            long next = (arrival - now > 0 ? arrival : now) + emissionIntervalNanos;
+            long wait = next - now - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the buckets that are full again. A request racing the eviction of its bucket may be
+     * admitted without being charged.
+     *
+     * @return the number of buckets dropped
+     */
+    public int evictIdle() {
+        long now = nanoClock.getAsLong();
+        int evicted = 0;
+        for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+            if (entry.getValue().get() - now <= 0 && buckets.remove(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,110 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.RateLimitProperties;
+import com.dws.challenge.metrics.TransferMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether a transfer request is worked on or answered with {@code 429 Too Many Requests}
+ * right away: every client and every debited account has a {@link RateLimiter rate limit}, and the
+ * requests in flight are capped by Little's law at {@code target-throughput * target-latency}, so
+ * a burst beyond what the node sustains is turned away instead of queueing into lock timeouts.
+ * <p>
+ * Every check returns {@code 0} when the request is admitted, otherwise how many nanoseconds the
+ * client should wait before retrying.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "challenge.rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class TransferAdmission implements DisposableBean {
+
+    private final RateLimiter clientLimiter;
+    private final RateLimiter accountLimiter;
+    private final int maxInFlight;
+    private final long targetLatencyNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final TransferMetrics transferMetrics;
+    private final ScheduledExecutorService evictor;
+
+    public TransferAdmission(RateLimitProperties properties, TransferMetrics transferMetrics) {
+        this.clientLimiter = new RateLimiter(properties.getClient().getRate(), properties.getClient().getBurst(), System::nanoTime);
+        this.accountLimiter = new RateLimiter(properties.getAccount().getRate(), properties.getAccount().getBurst(), System::nanoTime);
+        this.targetLatencyNanos = properties.getTargetLatency().toNanos();
+        this.maxInFlight = (int) Math.max(1, Math.ceil(properties.getTargetThroughput() * (targetLatencyNanos / 1e9)));
+        this.transferMetrics = transferMetrics;
+        log.info("Admitting up to {} transfer requests in flight", maxInFlight);
+
+        transferMetrics.gauge("transfer.in.flight", "Transfer requests admitted and not answered yet", inFlight, AtomicInteger::get);
+        transferMetrics.gauge("transfer.rate.limit.buckets", "Rate limit buckets of clients and accounts", this,
+                admission -> admission.clientLimiter.size() + admission.accountLimiter.size());
+
+        evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+            var thread = new Thread(task, "rate-limit-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getEvictionInterval().toMillis();
+        evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public long admitClient(String clientId) {
+        long wait = clientLimiter.tryAcquire(clientId);
+        if (wait > 0) {
+            transferMetrics.recordThrottle(TransferMetrics.Throttle.CLIENT_RATE);
+        }
+        return wait;
+    }
+
+    public long admitAccount(String accountId) {
+        long wait = accountLimiter.tryAcquire(accountId);
+        if (wait > 0) {
+            transferMetrics.recordThrottle(TransferMetrics.Throttle.ACCOUNT_RATE);
+        }
+        return wait;
+    }
+
+    /**
+     * Counts a request in flight unless the limit is reached; an admitted request must be followed by {@link #leave}.
+     */
+    public long enter() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxInFlight) {
+                transferMetrics.recordThrottle(TransferMetrics.Throttle.CONCURRENCY);
+                // A request in flight is expected to be answered within the target latency.
+                return targetLatencyNanos;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return 0;
+    }
+
+    public void leave() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return the wait rounded up to the whole seconds of a {@code Retry-After} header
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    @Override
+    public void destroy() {
+        evictor.shutdownNow();
+    }
+
+    private void evictIdle() {
+        int evicted = clientLimiter.evictIdle() + accountLimiter.evictIdle();
+        log.debug("Evicted {} idle rate limit buckets", evicted);
+    }
+}
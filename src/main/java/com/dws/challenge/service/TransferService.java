@@ -1,125 +1,426 @@
 package com.dws.challenge.service;
 
+import com.dws.challenge.cluster.CrossNodeTransfers;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
 import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.dto.BatchTransferRequest;
+import com.dws.challenge.dto.BatchTransferResponse;
+import com.dws.challenge.dto.BatchTransferResult;
+import com.dws.challenge.dto.MultiTransferResponse;
+import com.dws.challenge.dto.TransferLeg;
+import com.dws.challenge.dto.TransferRequest;
 import com.dws.challenge.dto.TransferResponse;
+import com.dws.challenge.engine.TransferEngine;
 import com.dws.challenge.exception.CannotExecuteTransferException;
 import com.dws.challenge.mapper.TransferMapper;
+import com.dws.challenge.metrics.TransferMetrics;
 import com.dws.challenge.repository.AccountsRepository;
-import lombok.NonNull;
+import com.dws.challenge.repository.TransferJournal;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import static java.lang.String.format;
+import static com.dws.challenge.engine.TransferEngine.BALANCE_OVERFLOW_MESSAGE;
+import static com.dws.challenge.engine.TransferEngine.INSUFFICIENT_BALANCE_MESSAGE;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class TransferService {
-    private static final String INSUFFICIENT_BALANCE_MESSAGE = "Insufficient balance in the fromAccount";
-    private static final String TRANSFER_MESSAGE_FROM = "Successfully transfer %s from your account to %s";
-    private static final String TRANSFER_MESSAGE_TO = "Successfully received %s on your account from %s";
-
-    private final Map<String, Lock> accountLocks = new ConcurrentHashMap<>();
+    public static final String TRANSFER_MESSAGE_FROM = "Successfully transfer %s from your account to %s";
+    public static final String TRANSFER_MESSAGE_TO = "Successfully received %s on your account from %s";
+    private static final String CANNOT_EXECUTE_TRANSFER_MESSAGE = "Cannot execute transfer. Please try again later";
+    private static final String CROSS_NODE_NOT_SUPPORTED_MESSAGE =
+            "Batch and multi-leg transfers between accounts of different cluster nodes are not supported";
 
     private final AccountsRepository accountsRepository;
+    private final TransferEngine transferEngine;
     private final NotificationService notificationService;
     private final TransferMapper transferMapper;
+    private final TransferJournal transferJournal;
+    private final TransferMetrics transferMetrics;
+    private final Optional<CrossNodeTransfers> crossNodeTransfers;
 
-    private static Transfer buildTransfer(String accountIdFrom, String accountIdTo, BigDecimal amount) {
-        return new Transfer(UUID.randomUUID(), accountIdFrom, accountIdTo, amount);
-    }
-
-    private static void validateTransferInput(String accountIdFrom, String accountIdTo, BigDecimal amount) {
+    private static Money validateTransferInput(String accountIdFrom, String accountIdTo, BigDecimal amount) {
         if (accountIdFrom == null || accountIdTo == null || amount == null) {
             throw new ResponseStatusException(BAD_REQUEST, "Invalid input");
         }
         if (Objects.equals(accountIdFrom, accountIdTo)) {
             throw new ResponseStatusException(BAD_REQUEST, "Account ids cannot be the same");
         }
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+        Money money;
+        try {
+            money = Money.of(amount);
+        } catch (ArithmeticException e) {
             throw new ResponseStatusException(BAD_REQUEST, "Invalid amount");
         }
+        if (!money.isPositive()) {
+            throw new ResponseStatusException(BAD_REQUEST, "Invalid amount");
+        }
+        return money;
     }
 
     public TransferResponse transfer(String accountIdFrom, String accountIdTo, BigDecimal amount) {
-        validateTransferInput(accountIdFrom, accountIdTo, amount);
+        long start = System.nanoTime();
+        var outcome = TransferMetrics.TransferOutcome.FAILED;
+        try {
+            Money money = validateTransferInput(accountIdFrom, accountIdTo, amount);
 
-        Account fromAccount = getAccountOrThrow(accountIdFrom);
-        Account toAccount = getAccountOrThrow(accountIdTo);
+            Account fromAccount = getAccountOrThrow(accountIdFrom);
+            if (isRemote(accountIdTo)) {
+                Transfer transfer;
+                try {
+                    transfer = crossNodeTransfers.get().transfer(fromAccount, accountIdTo, money);
+                } catch (CannotExecuteTransferException e) {
+                    outcome = TransferMetrics.TransferOutcome.REJECTED;
+                    throw e;
+                }
+                outcome = TransferMetrics.TransferOutcome.EXECUTED;
+                return completeCrossNodeTransfer(fromAccount, transfer);
+            }
+            Account toAccount = getAccountOrThrow(accountIdTo);
 
-        var transfer = this.transfer(fromAccount, toAccount, amount);
+            var transfer = transferEngine.transfer(fromAccount, toAccount, money);
 
-        if (transfer.isPresent()) {
-            log.info("Successfully executed transfer {}", transfer.get());
-            notify(fromAccount, toAccount, transfer.get().getAmount());
-            return transferMapper.toTransferDto(transfer.get());
-        } else {
-            throw new CannotExecuteTransferException("Cannot execute transfer. Please try again later");
+            if (transfer.isPresent()) {
+                accountsRepository.awaitDurable();
+                outcome = TransferMetrics.TransferOutcome.EXECUTED;
+                return completeTransfer(fromAccount, toAccount, transfer.get());
+            } else {
+                outcome = TransferMetrics.TransferOutcome.REJECTED;
+                throw new CannotExecuteTransferException(CANNOT_EXECUTE_TRANSFER_MESSAGE);
+            }
+        } finally {
+            transferMetrics.recordTransfer(start, outcome);
         }
     }
 
-    private Account getAccountOrThrow(String accountIdTo) {
-        return Optional.ofNullable(accountsRepository.getAccount(accountIdTo))
-                .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Cannot find an account"));
+    /**
+     * Like {@link #transfer}, but the calling thread does not wait for the engine or for durability.
+     * Invalid input is still rejected by throwing.
+     */
+    public CompletableFuture<TransferResponse> transferAsync(String accountIdFrom, String accountIdTo, BigDecimal amount) {
+        if (accountIdTo != null && isRemote(accountIdTo)) {
+            // A cross-node transfer waits for the other node on the calling thread.
+            try {
+                return CompletableFuture.completedFuture(transfer(accountIdFrom, accountIdTo, amount));
+            } catch (CannotExecuteTransferException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        long start = System.nanoTime();
+        Money money;
+        Account fromAccount;
+        Account toAccount;
+        try {
+            money = validateTransferInput(accountIdFrom, accountIdTo, amount);
+            fromAccount = getAccountOrThrow(accountIdFrom);
+            toAccount = getAccountOrThrow(accountIdTo);
+        } catch (RuntimeException e) {
+            transferMetrics.recordTransfer(start, TransferMetrics.TransferOutcome.FAILED);
+            throw e;
+        }
+
+        return transferEngine.transferAsync(fromAccount, toAccount, money)
+                .thenCompose(transfer -> transfer
+                        .map(executed -> accountsRepository.awaitDurableAsync()
+                                .thenApply(durable -> completeTransfer(fromAccount, toAccount, executed)))
+                        .orElseGet(() -> CompletableFuture.failedFuture(
+                                new CannotExecuteTransferException(CANNOT_EXECUTE_TRANSFER_MESSAGE))))
+                .whenComplete((response, failure) -> transferMetrics.recordTransfer(start, outcomeOf(failure)));
     }
 
-    private void notify(Account fromAccount, Account toAccount, BigDecimal amount) {
-        notificationService.notifyAboutTransfer(
-                fromAccount, format(TRANSFER_MESSAGE_FROM, amount, toAccount.getAccountId())
-        );
-        notificationService.notifyAboutTransfer(
-                toAccount, format(TRANSFER_MESSAGE_TO, amount, fromAccount.getAccountId())
-        );
+    private static TransferMetrics.TransferOutcome outcomeOf(Throwable failure) {
+        if (failure == null) {
+            return TransferMetrics.TransferOutcome.EXECUTED;
+        }
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        return cause instanceof CannotExecuteTransferException
+                ? TransferMetrics.TransferOutcome.REJECTED
+                : TransferMetrics.TransferOutcome.FAILED;
     }
 
-    private Optional<Transfer> transfer(@NonNull Account fromAccount, @NonNull Account toAccount, @NonNull BigDecimal amount) {
-        Lock fromAccountLock = accountLocks.computeIfAbsent(fromAccount.getAccountId(), accountId -> new ReentrantLock());
-        Lock toAccountLock = accountLocks.computeIfAbsent(toAccount.getAccountId(), accountId -> new ReentrantLock());
+    private TransferResponse completeTransfer(Account fromAccount, Account toAccount, Transfer transfer) {
+        log.debug("Successfully executed transfer {}", transfer);
+        transferJournal.append(transfer);
+        notify(fromAccount, toAccount, transfer.getAmount());
+        return transferMapper.toTransferDto(transfer);
+    }
 
-        Optional<Transfer> transfer = Optional.empty();
-        if (fromAccountLock.tryLock()) {
+    /**
+     * Completes a transfer to an account of another node, which notifies the owner of the destination account.
+     */
+    private TransferResponse completeCrossNodeTransfer(Account fromAccount, Transfer transfer) {
+        log.debug("Successfully executed cross-node transfer {}", transfer);
+        transferJournal.append(transfer);
+        notificationService.notifyAboutTransfer(fromAccount, TRANSFER_MESSAGE_FROM, transfer.getAmount(), transfer.getAccountIdTo());
+        return transferMapper.toTransferDto(transfer);
+    }
+
+    private boolean isRemote(String accountId) {
+        return crossNodeTransfers.map(transfers -> !transfers.isLocal(accountId)).orElse(false);
+    }
+
+    /**
+     * Rejects an account of another node, which only single transfers reach.
+     */
+    private void requireLocal(String accountId) {
+        if (isRemote(accountId)) {
+            throw new ResponseStatusException(BAD_REQUEST, CROSS_NODE_NOT_SUPPORTED_MESSAGE);
+        }
+    }
+
+    /**
+     * Executes a batch of transfers, claiming every involved account once for the whole batch and
+     * writing each touched balance once at the end.
+     */
+    public BatchTransferResponse transferBatch(List<TransferRequest> requests, BatchTransferRequest.Mode mode) {
+        var results = new BatchTransferResult[requests.size()];
+        var pendingTransfers = new ArrayList<PendingTransfer>(requests.size());
+        var accounts = new HashMap<String, Account>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
             try {
-                if (toAccountLock.tryLock()) {
-                    try {
-                        transfer = executeTransfer(amount, fromAccount, toAccount);
-                    } finally {
-                        toAccountLock.unlock();
-                    }
-                } else {
-                    log.warn("Cannot acquire lock for toAccount {}", toAccount);
-                }
-            } finally {
-                fromAccountLock.unlock();
+                Money amount = validateTransferInput(request.getAccountIdFrom(), request.getAccountIdTo(), request.getAmount());
+                requireLocal(request.getAccountIdFrom());
+                requireLocal(request.getAccountIdTo());
+                Account fromAccount = accounts.computeIfAbsent(request.getAccountIdFrom(), this::getAccountOrThrow);
+                Account toAccount = accounts.computeIfAbsent(request.getAccountIdTo(), this::getAccountOrThrow);
+                pendingTransfers.add(new PendingTransfer(i, fromAccount, toAccount, amount));
+            } catch (ResponseStatusException e) {
+                results[i] = failed(i, e.getReason());
+            }
+        }
+
+        List<Transfer> transfers = List.of();
+        if (mode == BatchTransferRequest.Mode.ALL_OR_NOTHING && pendingTransfers.size() < requests.size()) {
+            abort(pendingTransfers, results);
+        } else if (!pendingTransfers.isEmpty()) {
+            transfers = transferEngine.executeExclusively(accounts.values(),
+                            () -> applyBatch(pendingTransfers, mode, accounts, results))
+                    .orElseThrow(() -> new CannotExecuteTransferException(CANNOT_EXECUTE_TRANSFER_MESSAGE));
+            accountsRepository.awaitDurable();
+        }
+
+        for (Transfer transfer : transfers) {
+            transferJournal.append(transfer);
+            notify(accounts.get(transfer.getAccountIdFrom()), accounts.get(transfer.getAccountIdTo()), transfer.getAmount());
+        }
+
+        int aborted = 0;
+        for (BatchTransferResult result : results) {
+            if (result.getStatus() == BatchTransferResult.Status.ABORTED) {
+                aborted++;
             }
+        }
+        int failed = requests.size() - transfers.size() - aborted;
+        if (aborted > 0) {
+            log.debug("Aborted {} batch of {} transfers, {} of them failed", mode, requests.size(), failed);
         } else {
-            log.warn("Cannot acquire lock for fromAccount {}", fromAccount);
+            log.debug("Executed {} of {} transfers in {} batch, {} failed", transfers.size(), requests.size(), mode, failed);
+        }
+        return BatchTransferResponse.builder()
+                .mode(mode)
+                .executed(transfers.size())
+                .failed(failed)
+                .aborted(aborted)
+                .results(Arrays.asList(results))
+                .build();
+    }
+
+    private List<Transfer> applyBatch(List<PendingTransfer> pendingTransfers, BatchTransferRequest.Mode mode,
+                                      Map<String, Account> accounts, BatchTransferResult[] results) {
+        var balances = new HashMap<String, Long>();
+        var transfers = new ArrayList<Transfer>(pendingTransfers.size());
+
+        for (PendingTransfer pending : pendingTransfers) {
+            Account fromAccount = pending.getFromAccount();
+            Account toAccount = pending.getToAccount();
+            long amount = pending.getAmount().getUnits();
+            long fromBalance = balances.computeIfAbsent(fromAccount.getAccountId(), id -> fromAccount.getBalanceUnits());
+            long toBalance = balances.computeIfAbsent(toAccount.getAccountId(), id -> toAccount.getBalanceUnits());
+            String error = fromBalance < amount ? INSUFFICIENT_BALANCE_MESSAGE
+                    : toBalance > Long.MAX_VALUE - amount ? BALANCE_OVERFLOW_MESSAGE
+                    : null;
+            if (error != null) {
+                if (mode == BatchTransferRequest.Mode.ALL_OR_NOTHING) {
+                    abort(pendingTransfers, results);
+                    results[pending.getIndex()] = failed(pending.getIndex(), error);
+                    return List.of();
+                }
+                results[pending.getIndex()] = failed(pending.getIndex(), error);
+                continue;
+            }
+            balances.put(fromAccount.getAccountId(), fromBalance - amount);
+            balances.put(toAccount.getAccountId(), toBalance + amount);
+
+            Transfer transfer = Transfer.of(fromAccount.getAccountId(), toAccount.getAccountId(), pending.getAmount());
+            transfers.add(transfer);
+            results[pending.getIndex()] = BatchTransferResult.builder()
+                    .index(pending.getIndex())
+                    .status(BatchTransferResult.Status.EXECUTED)
+                    .transfer(transferMapper.toTransferDto(transfer))
+                    .build();
         }
-        return transfer;
+
+        balances.forEach((accountId, balance) -> accounts.get(accountId).setBalanceUnits(balance));
+        transfers.forEach(accountsRepository::appendTransfer);
+        return transfers;
     }
 
-    private Optional<Transfer> executeTransfer(BigDecimal amount, Account fromAccount, Account toAccount) {
-        if (fromAccount.getBalance().compareTo(amount) < 0) {
+    /**
+     * Transfers from one account to every destination of {@code legs} atomically: the source and
+     * all destinations are claimed once, in the engine's global order so concurrent multi-leg
+     * transfers cannot deadlock, and the total of the legs is checked against the source balance
+     * once. Either every leg is executed or none is.
+     */
+    public MultiTransferResponse transferMulti(String accountIdFrom, List<TransferLeg> legs) {
+        if (legs == null || legs.isEmpty()) {
+            throw new ResponseStatusException(BAD_REQUEST, "Invalid input");
+        }
+        var amounts = new Money[legs.size()];
+        var toAccounts = new Account[legs.size()];
+        var accounts = new HashMap<String, Account>();
+        Money total = Money.ZERO;
+        for (int i = 0; i < legs.size(); i++) {
+            TransferLeg leg = legs.get(i);
+            if (leg == null) {
+                throw new ResponseStatusException(BAD_REQUEST, "Invalid input");
+            }
+            amounts[i] = validateTransferInput(accountIdFrom, leg.getAccountIdTo(), leg.getAmount());
+            requireLocal(leg.getAccountIdTo());
+            try {
+                total = total.plus(amounts[i]);
+            } catch (ArithmeticException e) {
+                throw new ResponseStatusException(BAD_REQUEST, "Invalid amount");
+            }
+        }
+        requireLocal(accountIdFrom);
+        Account fromAccount = getAccountOrThrow(accountIdFrom);
+        accounts.put(accountIdFrom, fromAccount);
+        for (int i = 0; i < legs.size(); i++) {
+            toAccounts[i] = accounts.computeIfAbsent(legs.get(i).getAccountIdTo(), this::getAccountOrThrow);
+        }
+
+        Money totalAmount = total;
+        List<Transfer> transfers = transferEngine.executeExclusively(accounts.values(),
+                        () -> applyMulti(fromAccount, toAccounts, amounts, totalAmount))
+                .orElseThrow(() -> new CannotExecuteTransferException(CANNOT_EXECUTE_TRANSFER_MESSAGE));
+        accountsRepository.awaitDurable();
+
+        var multiTransferId = UUID.randomUUID();
+        log.debug("Successfully executed multi-leg transfer {} of {} from {} in {} legs", multiTransferId, totalAmount,
+                accountIdFrom, transfers.size());
+        var responses = new ArrayList<TransferResponse>(transfers.size());
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            transferJournal.append(transfer);
+            notify(fromAccount, toAccounts[i], transfer.getAmount());
+            responses.add(transferMapper.toTransferDto(transfer));
+        }
+
+        return MultiTransferResponse.builder()
+                .multiTransferId(multiTransferId)
+                .accountIdFrom(accountIdFrom)
+                .totalAmount(totalAmount.toBigDecimal())
+                .transfers(responses)
+                .build();
+    }
+
+    private List<Transfer> applyMulti(Account fromAccount, Account[] toAccounts, Money[] amounts, Money total) {
+        long fromBalance = fromAccount.getBalanceUnits();
+        if (fromBalance < total.getUnits()) {
             throw new ResponseStatusException(BAD_REQUEST, INSUFFICIENT_BALANCE_MESSAGE);
         }
-        fromAccount.setBalance(fromAccount.getBalance().subtract(amount));
-        toAccount.setBalance(toAccount.getBalance().add(amount));
+        var balances = new HashMap<String, Long>();
+        for (int i = 0; i < toAccounts.length; i++) {
+            Account toAccount = toAccounts[i];
+            long amount = amounts[i].getUnits();
+            long toBalance = balances.computeIfAbsent(toAccount.getAccountId(), id -> toAccount.getBalanceUnits());
+            if (toBalance > Long.MAX_VALUE - amount) {
+                throw new ResponseStatusException(BAD_REQUEST, BALANCE_OVERFLOW_MESSAGE);
+            }
+            balances.put(toAccount.getAccountId(), toBalance + amount);
+        }
+
+        var transfers = new ArrayList<Transfer>(toAccounts.length);
+        for (int i = 0; i < toAccounts.length; i++) {
+            transfers.add(Transfer.of(fromAccount.getAccountId(), toAccounts[i].getAccountId(), amounts[i]));
+        }
+        fromAccount.setBalanceUnits(fromBalance - total.getUnits());
+        for (Account toAccount : toAccounts) {
+            Long balance = balances.remove(toAccount.getAccountId());
+            if (balance != null) {
+                toAccount.setBalanceUnits(balance);
+            }
+        }
+        transfers.forEach(accountsRepository::appendTransfer);
+        return transfers;
+    }
+
+    private static void abort(List<PendingTransfer> pendingTransfers, BatchTransferResult[] results) {
+        for (PendingTransfer pending : pendingTransfers) {
+            results[pending.getIndex()] = BatchTransferResult.builder()
+                    .index(pending.getIndex())
+                    .status(BatchTransferResult.Status.ABORTED)
+                    .build();
+        }
+    }
+
+    private static BatchTransferResult failed(int index, String error) {
+        return BatchTransferResult.builder()
+                .index(index)
+                .status(BatchTransferResult.Status.FAILED)
+                .error(error)
+                .build();
+    }
+
+    private Account getAccountOrThrow(String accountId) {
+        long start = System.nanoTime();
+        Account account = accountsRepository.getAccount(accountId);
+        transferMetrics.recordRepositoryLookup(start);
+        if (account == null) {
+            throw new ResponseStatusException(BAD_REQUEST, "Cannot find an account");
+        }
+        return account;
+    }
+
+    private void notify(Account fromAccount, Account toAccount, Money amount) {
+        if (accountsRepository.isOutboxOpen()) {
+            // Relayed from the recorded transfer by the OutboxRelay.
+            return;
+        }
+        notificationService.notifyAboutTransfer(
+                fromAccount, TRANSFER_MESSAGE_FROM, amount, toAccount.getAccountId()
+        );
+        notificationService.notifyAboutTransfer(
+                toAccount, TRANSFER_MESSAGE_TO, amount, fromAccount.getAccountId()
+        );
+    }
 
-        Transfer transfer = buildTransfer(fromAccount.getAccountId(), toAccount.getAccountId(), amount);
-        log.info("Successfully made a transfer {}", transfer);
-        return Optional.of(transfer);
+    @Value
+    private static class PendingTransfer {
+        int index;
+        Account fromAccount;
+        Account toAccount;
+        Money amount;
     }
 
 }
@@ -1,9 +1,20 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.cluster.ClusterRouter;
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.dto.AccountResponse;
+import com.dws.challenge.dto.BulkAccountResult;
+import com.dws.challenge.dto.BulkBalanceRequest;
+import com.dws.challenge.dto.BulkBalanceResult;
+import com.dws.challenge.dto.TransferHistoryPage;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -13,25 +24,50 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+  private static final String ACCOUNT_NOT_FOUND_MESSAGE = "Cannot find an account";
+
   private final AccountsService accountsService;
+  private final ObjectMapper objectMapper;
+  private final ObjectReader accountReader;
+  private final ObjectReader balanceRequestReader;
+  private final Validator validator;
+  /**
+   * Null unless accounts are spread across a cluster.
+   */
+  private final ClusterRouter clusterRouter;
 
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, ObjectMapper objectMapper, Validator validator,
+    ObjectProvider<ClusterRouter> clusterRouter) {
     this.accountsService = accountsService;
+    this.objectMapper = objectMapper;
+    this.accountReader = objectMapper.readerFor(Account.class);
+    this.balanceRequestReader = objectMapper.readerFor(BulkBalanceRequest.class);
+    this.validator = validator;
+    this.clusterRouter = clusterRouter.getIfAvailable();
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
   public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
-    log.info("Creating account {}", account);
+    log.debug("Creating account {}", account);
 
     try {
     this.accountsService.createAccount(account);
@@ -42,10 +78,147 @@ public class AccountsController {
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  /**
+   * Creates an account per line of {@code Account} JSON and streams back a result per line.
+   */
+  @PostMapping(path = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public StreamingResponseBody createAccounts(InputStream body) {
+    return out -> {
+      long lines = NdjsonChunks.process(body, out, this.objectMapper, this::createAccounts);
+      log.info("Processed {} lines of bulk account creation", lines);
+    };
+  }
+
+  /**
+   * Looks up the balance of the account of each line and streams back a result per line.
+   */
+  @PostMapping(path = "/bulk-get", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public StreamingResponseBody getAccounts(InputStream body) {
+    return out -> {
+      long lines = NdjsonChunks.process(body, out, this.objectMapper, this::getBalances);
+      log.info("Processed {} lines of bulk balance lookup", lines);
+    };
+  }
+
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
-    log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+  public AccountResponse getAccount(@PathVariable String accountId) {
+    log.debug("Retrieving account for id {}", accountId);
+    return this.accountsService.readAccount(accountId);
+  }
+
+  @GetMapping(path = "/{accountId}/transfers", produces = MediaType.APPLICATION_JSON_VALUE)
+  public TransferHistoryPage getTransfers(@PathVariable String accountId,
+    @RequestParam(required = false) Long cursor,
+    @RequestParam(defaultValue = "50") int limit) {
+    log.debug("Retrieving transfers of account {} before cursor {}", accountId, cursor);
+    return this.accountsService.getTransferHistory(accountId, cursor, limit);
+  }
+
+  private List<BulkAccountResult> createAccounts(long[] lineNumbers, List<String> lines) {
+    var results = new BulkAccountResult[lines.size()];
+    var accounts = new ArrayList<Account>(lines.size());
+    var positions = new int[lines.size()];
+    for (int i = 0; i < lines.size(); i++) {
+      try {
+        Account account = this.accountReader.readValue(lines.get(i));
+        String violation = firstViolation(this.validator.validate(account));
+        if (violation == null) {
+          violation = ownershipViolation(account.getAccountId());
+        }
+        if (violation != null) {
+          results[i] = accountFailed(lineNumbers[i], account.getAccountId(), violation);
+          continue;
+        }
+        positions[accounts.size()] = i;
+        accounts.add(account);
+      } catch (JsonProcessingException e) {
+        results[i] = accountFailed(lineNumbers[i], null, "Invalid account: " + e.getOriginalMessage());
+      }
+    }
+
+    List<String> errors = this.accountsService.createAccounts(accounts);
+    for (int j = 0; j < accounts.size(); j++) {
+      int i = positions[j];
+      results[i] = errors.get(j) == null
+        ? BulkAccountResult.builder()
+          .line(lineNumbers[i])
+          .accountId(accounts.get(j).getAccountId())
+          .status(BulkAccountResult.Status.CREATED)
+          .build()
+        : accountFailed(lineNumbers[i], accounts.get(j).getAccountId(), errors.get(j));
+    }
+    return Arrays.asList(results);
+  }
+
+  private List<BulkBalanceResult> getBalances(long[] lineNumbers, List<String> lines) {
+    var results = new BulkBalanceResult[lines.size()];
+    var accountIds = new ArrayList<String>(lines.size());
+    var positions = new int[lines.size()];
+    for (int i = 0; i < lines.size(); i++) {
+      try {
+        BulkBalanceRequest request = this.balanceRequestReader.readValue(lines.get(i));
+        String violation = firstViolation(this.validator.validate(request));
+        if (violation == null) {
+          violation = ownershipViolation(request.getAccountId());
+        }
+        if (violation != null) {
+          results[i] = balanceFailed(lineNumbers[i], request.getAccountId(), violation);
+          continue;
+        }
+        positions[accountIds.size()] = i;
+        accountIds.add(request.getAccountId());
+      } catch (JsonProcessingException e) {
+        results[i] = balanceFailed(lineNumbers[i], null, "Invalid request: " + e.getOriginalMessage());
+      }
+    }
+
+    List<Account> accounts = this.accountsService.getAccounts(accountIds);
+    for (int j = 0; j < accountIds.size(); j++) {
+      int i = positions[j];
+      Account account = accounts.get(j);
+      results[i] = account == null
+        ? balanceFailed(lineNumbers[i], accountIds.get(j), ACCOUNT_NOT_FOUND_MESSAGE)
+        : BulkBalanceResult.builder()
+          .line(lineNumbers[i])
+          .accountId(account.getAccountId())
+          .balance(Money.toBigDecimal(account.readBalanceUnits()))
+          .build();
+    }
+    return Arrays.asList(results);
+  }
+
+  private static <T> String firstViolation(Set<ConstraintViolation<T>> violations) {
+    if (violations.isEmpty()) {
+      return null;
+    }
+    ConstraintViolation<T> violation = violations.iterator().next();
+    return violation.getPropertyPath() + ": " + violation.getMessage();
   }
 
+  /**
+   * Bulk lines are not forwarded: an account of another cluster node is reported as failed.
+   */
+  private String ownershipViolation(String accountId) {
+    if (this.clusterRouter == null || this.clusterRouter.isLocal(accountId)) {
+      return null;
+    }
+    return "Account belongs to cluster node " + this.clusterRouter.ownerOf(accountId);
+  }
+
+  private static BulkAccountResult accountFailed(long line, String accountId, String error) {
+    return BulkAccountResult.builder()
+      .line(line)
+      .accountId(accountId)
+      .status(BulkAccountResult.Status.FAILED)
+      .error(error)
+      .build();
+  }
+
+  private static BulkBalanceResult balanceFailed(long line, String accountId, String error) {
+    return BulkBalanceResult.builder()
+      .line(line)
+      .accountId(accountId)
+      .error(error)
+      .build();
+  }
 }
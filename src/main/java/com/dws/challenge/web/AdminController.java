@@ -0,0 +1,81 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.dto.BalanceExportResponse;
+import com.dws.challenge.dto.HotAccountResponse;
+import com.dws.challenge.engine.HotAccountDetector;
+import com.dws.challenge.service.BalanceExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@RestController
+@RequestMapping("/v1/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final HotAccountDetector hotAccountDetector;
+    private final BalanceExportService balanceExportService;
+
+    @GetMapping(path = "/hot-accounts", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<HotAccountResponse> getHotAccounts() {
+        return hotAccountDetector.getHotAccounts().stream()
+                .map(hotAccount -> HotAccountResponse.builder()
+                        .accountId(hotAccount.getAccountId())
+                        .contendedAcquisitions(hotAccount.getContendedAcquisitions())
+                        .hotSince(hotAccount.getHotSince())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Streams the balances of all accounts as of the instant the response starts, gzip encoded if {@code gzip} is set.
+     */
+    @GetMapping(path = "/balance-snapshot")
+    public ResponseEntity<StreamingResponseBody> exportBalances(@RequestParam(defaultValue = "csv") String format,
+                                                                @RequestParam(defaultValue = "false") boolean gzip) {
+        BalanceExportService.Format exportFormat = BalanceExportService.Format.of(format);
+        var headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(exportFormat.getContentType()));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename("balances." + exportFormat.getExtension())
+                .build());
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        StreamingResponseBody body = out -> balanceExportService.export(exportFormat, gzip, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Writes the balances of all accounts as of now to a file in the export directory.
+     */
+    @PostMapping(path = "/balance-snapshot/files", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BalanceExportResponse> exportBalancesToFile(@RequestParam(defaultValue = "csv") String format,
+                                                                      @RequestParam(defaultValue = "false") boolean gzip)
+            throws IOException {
+        BalanceExportService.Export export = balanceExportService.exportToFile(BalanceExportService.Format.of(format), gzip);
+        log.info("Exported {} balances to {}", export.getAccounts(), export.getFile());
+        var response = BalanceExportResponse.builder()
+                .file(export.getFile().toString())
+                .takenAt(export.getTakenAt())
+                .accounts(export.getAccounts())
+                .totalBalance(export.getTotalBalance())
+                .build();
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+}
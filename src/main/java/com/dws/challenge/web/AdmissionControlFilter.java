@@ -0,0 +1,122 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.cluster.ClusterAuthentication;
+import com.dws.challenge.service.TransferAdmission;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Answers transfer requests with {@code 429 Too Many Requests} and a {@code Retry-After} header
+ * when their client is over its rate limit or the node has as many transfer requests in flight as
+ * it admits. Clients are told apart by remote address, which unlike a request header cannot be
+ * picked by the client. Runs ahead of every other filter, so a rejected request costs no more than
+ * the check; requests forwarded by another cluster node, authenticated by the cluster secret, were
+ * already admitted there.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(prefix = "challenge.rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String TRANSFERS_PATH = "/v1/transfers";
+
+    private final TransferAdmission transferAdmission;
+    /**
+     * Null unless accounts are spread across a cluster.
+     */
+    private final ClusterAuthentication clusterAuthentication;
+
+    public AdmissionControlFilter(TransferAdmission transferAdmission, ObjectProvider<ClusterAuthentication> clusterAuthentication) {
+        this.transferAdmission = transferAdmission;
+        this.clusterAuthentication = clusterAuthentication.getIfAvailable();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !request.getRequestURI().startsWith(TRANSFERS_PATH, request.getContextPath().length())
+                || clusterAuthentication != null && clusterAuthentication.isFromClusterNode(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long wait = transferAdmission.admitClient(request.getRemoteAddr());
+        if (wait > 0) {
+            reject(response, wait, "Too many transfer requests");
+            return;
+        }
+        wait = transferAdmission.enter();
+        if (wait > 0) {
+            reject(response, wait, "Too many transfer requests in flight");
+            return;
+        }
+
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            async = request.isAsyncStarted();
+            if (async) {
+                request.getAsyncContext().addListener(new LeaveOnCompletion());
+            }
+        } finally {
+            if (!async) {
+                transferAdmission.leave();
+            }
+        }
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos, String message) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(TransferAdmission.retryAfterSeconds(waitNanos)));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), message);
+    }
+
+    /**
+     * Keeps an asynchronous transfer request in flight until its response is complete.
+     */
+    private final class LeaveOnCompletion implements AsyncListener {
+
+        private final AtomicBoolean left = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            leave();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            leave();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            leave();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void leave() {
+            if (left.compareAndSet(false, true)) {
+                transferAdmission.leave();
+            }
+        }
+    }
+}
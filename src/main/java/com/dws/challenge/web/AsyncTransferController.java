@@ -0,0 +1,75 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.dto.BatchTransferRequest;
+import com.dws.challenge.dto.BatchTransferResponse;
+import com.dws.challenge.dto.MultiTransferRequest;
+import com.dws.challenge.dto.MultiTransferResponse;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResponse;
+import com.dws.challenge.service.IdempotencyCache;
+import com.dws.challenge.service.TransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Serves the same API as {@link TransferController}, but returns the servlet thread to the pool
+ * while a transfer is in flight; the response is written when the transfer future completes.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/v1/transfers")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "challenge.web", name = "execution-mode", havingValue = "async")
+public class AsyncTransferController {
+
+    private final TransferService transferService;
+    private final IdempotencyCache idempotencyCache;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<TransferResponse>> executeTransfer(
+            @RequestBody @Valid TransferRequest request,
+            @RequestHeader(name = TransferController.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        log.debug("Received request to execute transfer {}", request);
+
+        Supplier<CompletableFuture<TransferResponse>> transfer = () -> transferService.transferAsync(
+                request.getAccountIdFrom(),
+                request.getAccountIdTo(),
+                request.getAmount()
+        );
+
+        var response = idempotencyKey == null ? transfer.get() : idempotencyCache.executeAsync(idempotencyKey, request, transfer);
+        return response.thenApply(body -> new ResponseEntity<>(body, HttpStatus.CREATED));
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchTransferResponse> executeBatchTransfer(@RequestBody @Valid BatchTransferRequest request) {
+        log.info("Received request to execute {} batch of {} transfers", request.getMode(), request.getTransfers().size());
+
+        var response = transferService.transferBatch(request.getTransfers(), request.getMode());
+
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @PostMapping(path = "/multi", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MultiTransferResponse> executeMultiTransfer(@RequestBody @Valid MultiTransferRequest request) {
+        log.info("Received request to execute transfer from {} in {} legs", request.getAccountIdFrom(), request.getLegs().size());
+
+        var response = transferService.transferMulti(request.getAccountIdFrom(), request.getLegs());
+
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+}
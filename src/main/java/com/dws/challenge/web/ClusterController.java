@@ -0,0 +1,55 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.cluster.ClusterClient;
+import com.dws.challenge.cluster.CrossNodeTransfers;
+import com.dws.challenge.dto.ClusterPrepareRequest;
+import com.dws.challenge.dto.ClusterTransactionResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.util.UUID;
+
+/**
+ * The cross-node transfer protocol, called by the other nodes of the cluster only.
+ */
+@Slf4j
+@RestController
+@RequestMapping(path = ClusterClient.TRANSACTIONS_PATH, produces = MediaType.APPLICATION_JSON_VALUE)
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "challenge.cluster", name = "enabled", havingValue = "true")
+public class ClusterController {
+
+    private final CrossNodeTransfers crossNodeTransfers;
+
+    @PostMapping(path = "/{transactionId}/prepare", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ClusterTransactionResponse prepare(@PathVariable UUID transactionId, @RequestBody @Valid ClusterPrepareRequest request) {
+        log.debug("Preparing cross-node transfer {} {}", transactionId, request);
+        return crossNodeTransfers.prepare(transactionId, request);
+    }
+
+    @PostMapping(path = "/{transactionId}/commit")
+    public ClusterTransactionResponse commit(@PathVariable UUID transactionId) {
+        log.debug("Committing cross-node transfer {}", transactionId);
+        return crossNodeTransfers.commit(transactionId);
+    }
+
+    @PostMapping(path = "/{transactionId}/abort")
+    public ClusterTransactionResponse abort(@PathVariable UUID transactionId) {
+        log.debug("Aborting cross-node transfer {}", transactionId);
+        return crossNodeTransfers.abort(transactionId);
+    }
+
+    @GetMapping(path = "/{transactionId}")
+    public ClusterTransactionResponse state(@PathVariable UUID transactionId) {
+        return crossNodeTransfers.state(transactionId);
+    }
+}
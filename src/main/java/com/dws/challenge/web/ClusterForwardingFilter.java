@@ -0,0 +1,222 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.cluster.ClusterAuthentication;
+import com.dws.challenge.cluster.ClusterClient;
+import com.dws.challenge.cluster.ClusterRouter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.dws.challenge.web.TransferController.IDEMPOTENCY_KEY_HEADER;
+
+/**
+ * Sends the account and transfer requests for accounts owned by another node of the cluster to
+ * that node and copies its answer back, so any node can be called for any account. Requests are
+ * routed by the account in the path, or by the account created or debited in the body; requests
+ * already forwarded by another node are always handled locally. The requests of the cross-node
+ * transfer protocol are refused with {@code 403 Forbidden} unless they come from another node.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "challenge.cluster", name = "enabled", havingValue = "true")
+public class ClusterForwardingFilter extends OncePerRequestFilter {
+
+    private static final String INTERNAL_PATH = "/internal/cluster";
+    private static final Pattern ACCOUNT_PATH = Pattern.compile("/v1/accounts/([^/]+)(?:/transfers)?");
+
+    /**
+     * The body field holding the routing account id, by path of the routed POST requests.
+     */
+    private static final Map<String, String> BODY_ROUTES = Map.of(
+            "/v1/accounts", "accountId",
+            "/v1/transfers", "account_id_from",
+            "/v1/transfers/multi", "account_id_from");
+
+    private static final String[] FORWARDED_HEADERS = {HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT, IDEMPOTENCY_KEY_HEADER};
+
+    private final ClusterRouter clusterRouter;
+    private final ClusterClient clusterClient;
+    private final ClusterAuthentication clusterAuthentication;
+    private final JsonFactory jsonFactory;
+
+    public ClusterForwardingFilter(ClusterRouter clusterRouter, ClusterClient clusterClient,
+                                   ClusterAuthentication clusterAuthentication, ObjectMapper objectMapper) {
+        this.clusterRouter = clusterRouter;
+        this.clusterClient = clusterClient;
+        this.clusterAuthentication = clusterAuthentication;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (clusterAuthentication.isFromClusterNode(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        // The servlet path is decoded and normalized by the container, unlike the request URI.
+        if (request.getServletPath().startsWith(INTERNAL_PATH)) {
+            log.warn("Refused {} {} from {}, which is not a cluster node", request.getMethod(), path, request.getRemoteAddr());
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Only cluster nodes may call " + INTERNAL_PATH);
+            return;
+        }
+        String accountId = null;
+        byte[] body = null;
+        if ("GET".equals(request.getMethod())) {
+            Matcher matcher = ACCOUNT_PATH.matcher(path);
+            if (matcher.matches()) {
+                accountId = UriUtils.decode(matcher.group(1), StandardCharsets.UTF_8);
+            }
+        } else if ("POST".equals(request.getMethod()) && BODY_ROUTES.containsKey(path)) {
+            body = request.getInputStream().readAllBytes();
+            accountId = topLevelString(body, BODY_ROUTES.get(path));
+        }
+
+        String owner = accountId == null ? null : clusterRouter.ownerOf(accountId);
+        if (owner == null || owner.equals(clusterRouter.getLocalNodeId())) {
+            filterChain.doFilter(body == null ? request : new CachedBodyRequest(request, body), response);
+        } else {
+            forward(owner, request, path, body, response);
+        }
+    }
+
+    private void forward(String owner, HttpServletRequest request, String path, byte[] body, HttpServletResponse response)
+            throws IOException {
+        var headers = new HashMap<String, String>();
+        for (String header : FORWARDED_HEADERS) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                headers.put(header, value);
+            }
+        }
+        String query = request.getQueryString();
+        HttpResponse<byte[]> forwarded;
+        try {
+            forwarded = clusterClient.send(owner, request.getMethod(), request.getRequestURI() + (query == null ? "" : "?" + query),
+                    body, headers);
+        } catch (IOException e) {
+            log.warn("Cannot forward {} {} to cluster node {}: {}", request.getMethod(), path, owner, e.toString());
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Cannot reach cluster node " + owner);
+            return;
+        }
+        log.debug("Forwarded {} {} to cluster node {}", request.getMethod(), path, owner);
+
+        response.setStatus(forwarded.statusCode());
+        forwarded.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(response::setContentType);
+        forwarded.headers().firstValue(HttpHeaders.RETRY_AFTER).ifPresent(value -> response.setHeader(HttpHeaders.RETRY_AFTER, value));
+        response.setContentLength(forwarded.body().length);
+        response.getOutputStream().write(forwarded.body());
+    }
+
+    /**
+     * @return the string value of the top-level field {@code name} of a JSON object, or
+     * {@code null} if there is none, leaving malformed bodies to be rejected locally
+     */
+    private String topLevelString(byte[] body, String name) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals(field)) {
+                    return value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A request whose body was already read by the filter.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            var in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException("The body was already read");
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.dto.LedgerReplayResponse;
+import com.dws.challenge.repository.wal.LedgerAccountsRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/v1/admin/ledger")
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "challenge.repository", name = "type", havingValue = "ledger")
+public class LedgerController {
+
+    private final LedgerAccountsRepository ledgerAccountsRepository;
+
+    /**
+     * Rebuilds the balance projection by replaying the whole ledger.
+     */
+    @PostMapping(path = "/projection/rebuild", produces = MediaType.APPLICATION_JSON_VALUE)
+    public LedgerReplayResponse rebuildProjection() throws IOException {
+        LedgerAccountsRepository.Replay replay = ledgerAccountsRepository.rebuildProjection();
+        long elapsedNanos = Math.max(1, replay.getElapsed().toNanos());
+        return LedgerReplayResponse.builder()
+                .entries(replay.getEntries())
+                .accounts(replay.getAccounts())
+                .elapsedMs(replay.getElapsed().toMillis())
+                .entriesPerSecond((long) (replay.getEntries() * 1e9 / elapsedNanos))
+                .balanced(replay.isBalanced())
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.dws.challenge.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a newline-delimited JSON request body in chunks of lines and writes one result line per
+ * request line, flushing after every chunk, so neither the request nor the response is held in
+ * memory. Blank lines are skipped.
+ */
+final class NdjsonChunks {
+
+    static final int CHUNK_SIZE = 10_000;
+
+    private NdjsonChunks() {
+    }
+
+    @FunctionalInterface
+    interface ChunkHandler {
+
+        /**
+         * @param lineNumbers the number of each line in the request body, starting at 1
+         * @return one result per line
+         */
+        List<?> handle(long[] lineNumbers, List<String> lines);
+    }
+
+    /**
+     * @return the number of lines processed
+     */
+    static long process(InputStream body, OutputStream out, ObjectMapper objectMapper, ChunkHandler handler) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+
+        var lines = new ArrayList<String>(CHUNK_SIZE);
+        var lineNumbers = new long[CHUNK_SIZE];
+        long lineNumber = 0;
+        long processed = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            lineNumbers[lines.size()] = lineNumber;
+            lines.add(line);
+            if (lines.size() == CHUNK_SIZE) {
+                processed += write(handler.handle(lineNumbers, lines), generator);
+                lines.clear();
+            }
+        }
+        if (!lines.isEmpty()) {
+            processed += write(handler.handle(lineNumbers, lines), generator);
+        }
+        return processed;
+    }
+
+    private static int write(List<?> results, JsonGenerator generator) throws IOException {
+        for (Object result : results) {
+            generator.writeObject(result);
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+        return results.size();
+    }
+}
@@ -0,0 +1,66 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.dto.BatchTransferRequest;
+import com.dws.challenge.dto.MultiTransferRequest;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.exception.TooManyRequestsException;
+import com.dws.challenge.service.TransferAdmission;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Applies the rate limit of the debited account as soon as a transfer request body is read,
+ * before the transfer is validated or any account is looked up. A batch counts as one request
+ * against each account it debits.
+ */
+@ControllerAdvice
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "challenge.rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SourceAccountRateLimitAdvice extends RequestBodyAdviceAdapter {
+
+    private final TransferAdmission transferAdmission;
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return targetType == TransferRequest.class || targetType == MultiTransferRequest.class
+                || targetType == BatchTransferRequest.class;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        if (body instanceof TransferRequest) {
+            admit(((TransferRequest) body).getAccountIdFrom());
+        } else if (body instanceof MultiTransferRequest) {
+            admit(((MultiTransferRequest) body).getAccountIdFrom());
+        } else if (((BatchTransferRequest) body).getTransfers() != null) {
+            Set<String> accountIdsFrom = new LinkedHashSet<>();
+            for (TransferRequest transfer : ((BatchTransferRequest) body).getTransfers()) {
+                if (transfer != null && accountIdsFrom.add(transfer.getAccountIdFrom())) {
+                    admit(transfer.getAccountIdFrom());
+                }
+            }
+        }
+        return body;
+    }
+
+    private void admit(String accountIdFrom) {
+        if (accountIdFrom != null) {
+            long wait = transferAdmission.admitAccount(accountIdFrom);
+            if (wait > 0) {
+                throw new TooManyRequestsException("Too many transfers from account " + accountIdFrom,
+                        TransferAdmission.retryAfterSeconds(wait));
+            }
+        }
+    }
+}
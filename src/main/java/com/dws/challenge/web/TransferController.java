@@ -1,39 +1,71 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.dto.BatchTransferRequest;
+import com.dws.challenge.dto.BatchTransferResponse;
+import com.dws.challenge.dto.MultiTransferRequest;
+import com.dws.challenge.dto.MultiTransferResponse;
 import com.dws.challenge.dto.TransferRequest;
 import com.dws.challenge.dto.TransferResponse;
+import com.dws.challenge.service.IdempotencyCache;
 import com.dws.challenge.service.TransferService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
 @RequestMapping("/v1/transfers")
 @RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "challenge.web", name = "execution-mode", havingValue = "servlet", matchIfMissing = true)
 public class TransferController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final TransferService transferService;
+    private final IdempotencyCache idempotencyCache;
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<TransferResponse> executeTransfer(@RequestBody @Valid TransferRequest request) {
-        log.info("Received request to execute transfer {}", request);
+    public ResponseEntity<TransferResponse> executeTransfer(@RequestBody @Valid TransferRequest request,
+                                                            @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        log.debug("Received request to execute transfer {}", request);
 
-        var transfer = transferService.transfer(
+        Supplier<TransferResponse> transfer = () -> transferService.transfer(
                 request.getAccountIdFrom(),
                 request.getAccountIdTo(),
                 request.getAmount()
         );
 
-        return new ResponseEntity<>(transfer, HttpStatus.CREATED);
+        var response = idempotencyKey == null ? transfer.get() : idempotencyCache.execute(idempotencyKey, request, transfer);
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchTransferResponse> executeBatchTransfer(@RequestBody @Valid BatchTransferRequest request) {
+        log.info("Received request to execute {} batch of {} transfers", request.getMode(), request.getTransfers().size());
+
+        var response = transferService.transferBatch(request.getTransfers(), request.getMode());
+
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    @PostMapping(path = "/multi", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MultiTransferResponse> executeMultiTransfer(@RequestBody @Valid MultiTransferRequest request) {
+        log.info("Received request to execute transfer from {} in {} legs", request.getAccountIdFrom(), request.getLegs().size());
+
+        var response = transferService.transferMulti(request.getAccountIdFrom(), request.getLegs());
+
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
 }
@@ -0,0 +1,131 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResponse;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+/**
+ * Reads {@link TransferRequest} and writes {@link TransferResponse} with the streaming
+ * {@link JsonParser} and {@link JsonGenerator}, field by field, without the databind
+ * introspection, type resolution and bean property dispatch of an {@code ObjectMapper}.
+ * <p>
+ * The JSON accepted and produced is the one of the Spring Boot {@code ObjectMapper}: unknown
+ * properties are skipped, ids may be given as numbers, the amount as a number or a string, and
+ * {@code null} properties are written as {@code null}.
+ */
+public final class TransferJsonCodec {
+
+    private static final String ACCOUNT_ID_FROM = "account_id_from";
+    private static final String ACCOUNT_ID_TO = "account_id_to";
+    private static final String AMOUNT = "amount";
+    private static final String TRANSFER_ID = "transfer_id";
+
+    private final JsonFactory jsonFactory;
+
+    public TransferJsonCodec(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Reads one request object and closes {@code in}.
+     */
+    public TransferRequest readRequest(InputStream in) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            return readRequest(parser);
+        }
+    }
+
+    public TransferRequest readRequest(byte[] json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return readRequest(parser);
+        }
+    }
+
+    /**
+     * Writes {@code response} as one object to {@code out}, flushes but does not close {@code out}.
+     */
+    public void writeResponse(TransferResponse response, OutputStream out) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeStringField(TRANSFER_ID, response.getTransferId() == null ? null : response.getTransferId().toString());
+            generator.writeStringField(ACCOUNT_ID_FROM, response.getAccountIdFrom());
+            generator.writeStringField(ACCOUNT_ID_TO, response.getAccountIdTo());
+            generator.writeFieldName(AMOUNT);
+            generator.writeNumber(response.getAmount());
+            generator.writeEndObject();
+        }
+    }
+
+    private static TransferRequest readRequest(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a transfer request object");
+        }
+        var request = new TransferRequest();
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case ACCOUNT_ID_FROM:
+                    request.setAccountIdFrom(readText(parser, value));
+                    break;
+                case ACCOUNT_ID_TO:
+                    request.setAccountIdTo(readText(parser, value));
+                    break;
+                case AMOUNT:
+                    request.setAmount(readDecimal(parser, value));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Expected a property name or the end of the transfer request object");
+        }
+        return request;
+    }
+
+    private static String readText(JsonParser parser, JsonToken value) throws IOException {
+        switch (value) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getText();
+            default:
+                throw new JsonParseException(parser, "Expected a string for " + parser.currentName());
+        }
+    }
+
+    private static BigDecimal readDecimal(JsonParser parser, JsonToken value) throws IOException {
+        switch (value) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDecimalValue();
+            case VALUE_STRING:
+                String text = parser.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return new BigDecimal(text);
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "Expected a number for " + parser.currentName(), e);
+                }
+            default:
+                throw new JsonParseException(parser, "Expected a number for " + parser.currentName());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.config.WebExecutionProperties;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+
+/**
+ * Reads {@link TransferRequest} and writes {@link TransferResponse} bodies ahead of the generic
+ * Jackson converter, which resolves the Java type and builds an {@code ObjectReader} or
+ * {@code ObjectWriter} on every request. Depending on {@link WebExecutionProperties.JsonCodec}
+ * the bodies go through an {@code ObjectReader} and {@code ObjectWriter} built once, or through
+ * the hand-written {@link TransferJsonCodec}. Every other type is left to the Jackson converter.
+ */
+public class TransferJsonHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private final WebExecutionProperties.JsonCodec jsonCodec;
+    private final ObjectReader requestReader;
+    private final ObjectWriter responseWriter;
+    private final TransferJsonCodec transferJsonCodec;
+
+    public TransferJsonHttpMessageConverter(ObjectMapper objectMapper, WebExecutionProperties.JsonCodec jsonCodec) {
+        super(MediaType.APPLICATION_JSON);
+        this.jsonCodec = jsonCodec;
+        this.requestReader = objectMapper.readerFor(TransferRequest.class);
+        this.responseWriter = objectMapper.writerFor(TransferResponse.class);
+        this.transferJsonCodec = new TransferJsonCodec(objectMapper.getFactory());
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == TransferRequest.class || clazz == TransferResponse.class;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return clazz == TransferRequest.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return clazz == TransferResponse.class && canWrite(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return jsonCodec == WebExecutionProperties.JsonCodec.STREAMING
+                    ? transferJsonCodec.readRequest(inputMessage.getBody())
+                    : requestReader.readValue(inputMessage.getBody());
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object response, HttpOutputMessage outputMessage) throws IOException {
+        try {
+            if (jsonCodec == WebExecutionProperties.JsonCodec.STREAMING) {
+                transferJsonCodec.writeResponse((TransferResponse) response, outputMessage.getBody());
+            } else {
+                responseWriter.writeValue(StreamUtils.nonClosing(outputMessage.getBody()), response);
+            }
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write JSON: " + e.getOriginalMessage(), e);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -102,4 +104,57 @@ class AccountsControllerTest {
       .andExpect(
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
+
+  @Test
+  void getTransfersOfNonExistingAccount() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Id-404/transfers")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  void getTransfersWithInvalidLimit() throws Exception {
+    accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-123/transfers?limit=0")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void createAccountsInBulk() throws Exception {
+    var started = this.mockMvc.perform(post("/v1/accounts/bulk").contentType(MediaType.APPLICATION_NDJSON)
+        .content("{\"accountId\":\"Id-1\",\"balance\":100}\n"
+          + "{\"accountId\":\"Id-1\",\"balance\":5}\n"
+          + "{\"accountId\":\"Id-2\",\"balance\":-1}\n"
+          + "\n"
+          + "not json\n"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    String[] results = this.mockMvc.perform(asyncDispatch(started))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString().split("\n");
+
+    assertThat(results).hasSize(4);
+    assertThat(results[0]).isEqualTo("{\"line\":1,\"account_id\":\"Id-1\",\"status\":\"CREATED\"}");
+    assertThat(results[1]).isEqualTo(
+      "{\"line\":2,\"account_id\":\"Id-1\",\"status\":\"FAILED\",\"error\":\"Account id Id-1 already exists!\"}");
+    assertThat(results[2]).isEqualTo(
+      "{\"line\":3,\"account_id\":\"Id-2\",\"status\":\"FAILED\",\"error\":\"balance: Initial balance must be positive.\"}");
+    assertThat(results[3]).startsWith("{\"line\":5,\"status\":\"FAILED\",\"error\":\"Invalid account: ");
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    assertThat(accountsService.getAccount("Id-2")).isNull();
+  }
+
+  @Test
+  void getBalancesInBulk() throws Exception {
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("12.5")));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal(7)));
+
+    var started = this.mockMvc.perform(post("/v1/accounts/bulk-get").contentType(MediaType.APPLICATION_NDJSON)
+        .content("{\"account_id\":\"Id-2\"}\n{\"account_id\":\"Id-404\"}\n{\"account_id\":\"Id-1\"}\n"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+    this.mockMvc.perform(asyncDispatch(started))
+      .andExpect(status().isOk())
+      .andExpect(content().string("{\"line\":1,\"account_id\":\"Id-2\",\"balance\":7}\n"
+        + "{\"line\":2,\"account_id\":\"Id-404\",\"error\":\"Cannot find an account\"}\n"
+        + "{\"line\":3,\"account_id\":\"Id-1\",\"balance\":12.5}\n"));
+  }
 }
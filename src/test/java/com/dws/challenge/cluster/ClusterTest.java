@@ -0,0 +1,259 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.ChallengeApplication;
+import com.dws.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs three nodes on different local ports and calls them over HTTP like a client would.
+ */
+class ClusterTest {
+
+    private static final List<String> NODES = List.of("node-a", "node-b", "node-c");
+    private static final String SECRET = "cluster-test-secret";
+    private static final AtomicInteger ACCOUNT_SEQUENCE = new AtomicInteger();
+
+    @TempDir
+    static Path tempDir;
+
+    private static final Map<String, Integer> ports = new LinkedHashMap<>();
+    private static final Map<String, ConfigurableApplicationContext> contexts = new LinkedHashMap<>();
+    private static final HashRing ring = new HashRing(NODES, 128);
+    private static final HttpClient httpClient = HttpClient.newHttpClient();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeAll
+    static void startCluster() throws IOException {
+        for (String node : NODES) {
+            try (var socket = new ServerSocket(0)) {
+                ports.put(node, socket.getLocalPort());
+            }
+        }
+        for (String node : NODES) {
+            var properties = new ArrayList<String>();
+            properties.add("server.port=" + ports.get(node));
+            properties.add("challenge.cluster.enabled=true");
+            properties.add("challenge.cluster.node-id=" + node);
+            properties.add("challenge.cluster.secret=" + SECRET);
+            properties.add("challenge.cluster.intent-log=" + tempDir.resolve(node).resolve("intents.log"));
+            properties.add("challenge.cluster.recovery-interval=200ms");
+            properties.add("challenge.export.directory=" + tempDir.resolve(node).resolve("exports"));
+            ports.forEach((id, port) -> properties.add("challenge.cluster.nodes." + id + "=http://localhost:" + port));
+            contexts.put(node, new SpringApplicationBuilder(ChallengeApplication.class)
+                    .properties(properties.toArray(String[]::new))
+                    .run());
+        }
+    }
+
+    @AfterAll
+    static void stopCluster() {
+        contexts.values().forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void accountIsCreatedOnItsOwnerAndReadThroughAnyNode() throws Exception {
+        String accountId = accountOwnedBy("node-b");
+
+        assertEquals(201, createAccount("node-a", accountId, "100.5").statusCode());
+
+        assertNotNull(repository("node-b").getAccount(accountId));
+        assertNull(repository("node-a").getAccount(accountId));
+        assertNull(repository("node-c").getAccount(accountId));
+        for (String node : NODES) {
+            assertBalance(node, accountId, "100.5");
+        }
+        assertEquals(400, createAccount("node-c", accountId, "1").statusCode());
+    }
+
+    @Test
+    void transfersBetweenAccountsOfDifferentNodes() throws Exception {
+        String from = accountOwnedBy("node-a");
+        String to = accountOwnedBy("node-b");
+        createAccount("node-c", from, "100");
+        createAccount("node-c", to, "10");
+
+        HttpResponse<String> response = transfer("node-c", from, to, "30.25");
+
+        assertEquals(201, response.statusCode(), response.body());
+        JsonNode transfer = objectMapper.readTree(response.body());
+        assertEquals(from, transfer.get("account_id_from").asText());
+        assertEquals(to, transfer.get("account_id_to").asText());
+        assertBalance("node-b", from, "69.75");
+        assertBalance("node-a", to, "40.25");
+    }
+
+    @Test
+    void abortsCrossNodeTransferWithInsufficientBalance() throws Exception {
+        String from = accountOwnedBy("node-c");
+        String to = accountOwnedBy("node-a");
+        createAccount("node-b", from, "10");
+        createAccount("node-b", to, "10");
+
+        HttpResponse<String> response = transfer("node-a", from, to, "10.01");
+
+        assertEquals(400, response.statusCode(), response.body());
+        assertBalance("node-a", from, "10");
+        assertBalance("node-b", to, "10");
+    }
+
+    @Test
+    void refundsSourceAccountWhenDestinationNodeRefusesTheCredit() throws Exception {
+        String from = accountOwnedBy("node-a");
+        String missing = accountOwnedBy("node-c");
+        createAccount("node-a", from, "50");
+
+        HttpResponse<String> response = transfer("node-b", from, missing, "20");
+
+        assertEquals(400, response.statusCode(), response.body());
+        assertBalance("node-c", from, "50");
+    }
+
+    @Test
+    void rejectsBatchAndMultiLegTransfersToAccountsOfOtherNodes() throws Exception {
+        String from = accountOwnedBy("node-a");
+        String local = accountOwnedBy("node-a");
+        String remote = accountOwnedBy("node-b");
+        createAccount("node-a", from, "100");
+        createAccount("node-a", local, "0");
+        createAccount("node-a", remote, "0");
+
+        HttpResponse<String> batch = post("node-a", "/v1/transfers/batch", "{\"mode\":\"BEST_EFFORT\",\"transfers\":["
+                + "{\"account_id_from\":\"" + from + "\",\"account_id_to\":\"" + remote + "\",\"amount\":1},"
+                + "{\"account_id_from\":\"" + from + "\",\"account_id_to\":\"" + local + "\",\"amount\":1}]}");
+        assertEquals(200, batch.statusCode(), batch.body());
+        JsonNode results = objectMapper.readTree(batch.body()).get("results");
+        assertEquals("FAILED", results.get(0).get("status").asText());
+        assertEquals("Batch and multi-leg transfers between accounts of different cluster nodes are not supported",
+                results.get(0).get("error").asText());
+        assertEquals("EXECUTED", results.get(1).get("status").asText());
+
+        HttpResponse<String> multi = post("node-c", "/v1/transfers/multi", "{\"account_id_from\":\"" + from + "\",\"legs\":["
+                + "{\"account_id_to\":\"" + local + "\",\"amount\":1},"
+                + "{\"account_id_to\":\"" + remote + "\",\"amount\":1}]}");
+        assertEquals(400, multi.statusCode(), multi.body());
+        assertBalance("node-a", from, "99");
+        assertBalance("node-a", remote, "0");
+    }
+
+    @Test
+    void refusesProtocolRequestsNotSentByAClusterNode() throws Exception {
+        String transaction = "/internal/cluster/transactions/" + UUID.randomUUID();
+
+        assertEquals(403, send("node-a", transaction + "/commit", Map.of()).statusCode());
+        assertEquals(403, send("node-a", transaction + "/abort", Map.of(ClusterClient.FORWARDED_BY_HEADER, "node-b")).statusCode());
+        assertEquals(403, send("node-a", transaction + "/abort",
+                Map.of(ClusterClient.FORWARDED_BY_HEADER, "node-b", ClusterClient.SECRET_HEADER, "guess")).statusCode());
+        assertEquals(200, send("node-a", transaction + "/abort",
+                Map.of(ClusterClient.FORWARDED_BY_HEADER, "node-b", ClusterClient.SECRET_HEADER, SECRET)).statusCode());
+    }
+
+    @Test
+    void forwardsRequestsClaimingToBeForwardedWithoutTheSecret() throws Exception {
+        String accountId = accountOwnedBy("node-c");
+        createAccount("node-c", accountId, "7");
+
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri("node-a", "/v1/accounts/" + accountId))
+                        .header(ClusterClient.FORWARDED_BY_HEADER, "node-b")
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode(), response.body());
+    }
+
+    @Test
+    void refusesToStartWithALedgerRepository() {
+        var exception = assertThrows(Exception.class, () -> new SpringApplicationBuilder(ChallengeApplication.class)
+                .properties("server.port=0",
+                        "challenge.repository.type=LEDGER",
+                        "challenge.repository.ledger.directory=" + tempDir.resolve("ledger"),
+                        "challenge.cluster.enabled=true",
+                        "challenge.cluster.node-id=node-a",
+                        "challenge.cluster.nodes.node-a=http://localhost:" + ports.get("node-a"),
+                        "challenge.cluster.secret=" + SECRET,
+                        "challenge.cluster.intent-log=" + tempDir.resolve("ledger-node").resolve("intents.log"))
+                .run()
+                .close());
+
+        Throwable cause = exception;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        assertTrue(cause.getMessage().contains("challenge.repository.type=LEDGER"), cause.getMessage());
+    }
+
+    private static String accountOwnedBy(String node) {
+        while (true) {
+            String accountId = "cluster-acc-" + ACCOUNT_SEQUENCE.incrementAndGet();
+            if (ring.ownerOf(accountId).equals(node)) {
+                return accountId;
+            }
+        }
+    }
+
+    private static AccountsRepository repository(String node) {
+        return contexts.get(node).getBean(AccountsRepository.class);
+    }
+
+    private static HttpResponse<String> createAccount(String node, String accountId, String balance) throws Exception {
+        return post(node, "/v1/accounts", "{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}");
+    }
+
+    private static HttpResponse<String> transfer(String node, String from, String to, String amount) throws Exception {
+        return post(node, "/v1/transfers",
+                "{\"account_id_from\":\"" + from + "\",\"account_id_to\":\"" + to + "\",\"amount\":" + amount + "}");
+    }
+
+    private static void assertBalance(String node, String accountId, String expected) throws Exception {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri(node, "/v1/accounts/" + accountId)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        BigDecimal balance = new BigDecimal(objectMapper.readTree(response.body()).get("balance").asText());
+        assertEquals(0, new BigDecimal(expected).compareTo(balance), accountId + " has " + balance + " on " + node);
+    }
+
+    private static HttpResponse<String> post(String node, String path, String json) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(uri(node, path))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpResponse<String> send(String node, String path, Map<String, String> headers) throws Exception {
+        var request = HttpRequest.newBuilder(uri(node, path)).POST(HttpRequest.BodyPublishers.noBody());
+        headers.forEach(request::header);
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(String node, String path) {
+        return URI.create("http://localhost:" + ports.get(node) + path);
+    }
+}
@@ -0,0 +1,121 @@
+package com.dws.challenge.cluster;
+
+import com.dws.challenge.config.ClusterProperties;
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ClusterPrepareRequest;
+import com.dws.challenge.dto.ClusterTransactionResponse;
+import com.dws.challenge.engine.HotAccountDetector;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.engine.SnapshotBarrier;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.TransferJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs a single node, which can only be the destination of cross-node transfers.
+ */
+class CrossNodeTransfersTest {
+
+    @TempDir
+    Path directory;
+
+    private final TransferJournal transferJournal = new TransferJournal();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        transferJournal.destroy();
+    }
+
+    @Test
+    void keepsTheBalanceChangesOfAccountsMissingOnStartup() throws IOException {
+        var repository = new AccountsRepositoryInMemory();
+        repository.createAccount(new Account("acc-1", new BigDecimal(10)));
+        var crossNodeTransfers = open(repository);
+        UUID transactionId = UUID.randomUUID();
+        crossNodeTransfers.prepare(transactionId, ClusterPrepareRequest.builder()
+                .accountIdFrom("remote-acc")
+                .accountIdTo("acc-1")
+                .amount(new BigDecimal("2.5"))
+                .build());
+        assertEquals(ClusterTransactionResponse.State.COMMITTED, crossNodeTransfers.commit(transactionId).getState());
+        crossNodeTransfers.destroy();
+
+        // Started before the account is back, the credit cannot be applied yet.
+        open(new AccountsRepositoryInMemory()).destroy();
+
+        var restored = new AccountsRepositoryInMemory();
+        restored.createAccount(new Account("acc-1", new BigDecimal(10)));
+        open(restored).destroy();
+        assertEquals(1250, restored.getAccount("acc-1").getBalanceUnits());
+    }
+
+    @Test
+    void creditsACommitThatWouldOverflowOnceTheBalanceHasRoom() throws IOException {
+        var repository = new AccountsRepositoryInMemory();
+        repository.createAccount(new Account("acc-1", new BigDecimal(10)));
+        Account account = repository.getAccount("acc-1");
+        var crossNodeTransfers = open(repository);
+        try {
+            UUID transactionId = UUID.randomUUID();
+            crossNodeTransfers.prepare(transactionId, ClusterPrepareRequest.builder()
+                    .accountIdFrom("remote-acc")
+                    .accountIdTo("acc-1")
+                    .amount(new BigDecimal(5))
+                    .build());
+            // Local transfers credit the account between the vote and the decision.
+            account.setBalanceUnits(Long.MAX_VALUE - 100);
+
+            assertEquals(ClusterTransactionResponse.State.COMMITTED, crossNodeTransfers.commit(transactionId).getState());
+            assertEquals(Long.MAX_VALUE - 100, account.getBalanceUnits());
+            assertEquals(ClusterTransactionResponse.State.COMMITTED, crossNodeTransfers.commit(transactionId).getState());
+
+            crossNodeTransfers.resolve();
+            assertEquals(Long.MAX_VALUE - 100, account.getBalanceUnits());
+
+            account.setBalanceUnits(1000);
+            crossNodeTransfers.resolve();
+            assertEquals(1500, account.getBalanceUnits());
+            crossNodeTransfers.resolve();
+            assertEquals(1500, account.getBalanceUnits());
+        } finally {
+            crossNodeTransfers.destroy();
+        }
+    }
+
+    private CrossNodeTransfers open(AccountsRepository repository) throws IOException {
+        var properties = new ClusterProperties();
+        properties.setNodeId("node-a");
+        properties.getNodes().put("node-a", URI.create("http://localhost:1"));
+        properties.setSecret("secret");
+        properties.setIntentLog(directory.resolve("intents.log"));
+        // The tests resolve on their own.
+        properties.setRecoveryInterval(Duration.ofHours(1));
+        var clusterRouter = new ClusterRouter(properties);
+        var transferProperties = new TransferProperties();
+        transferProperties.getHotAccounts().setEnabled(false);
+        var metrics = new TransferMetrics(new SimpleMeterRegistry());
+        var engine = new LockingTransferEngine(transferProperties, repository, metrics,
+                new HotAccountDetector(transferProperties),
+                new SnapshotBarrier());
+        return new CrossNodeTransfers(properties, new RepositoryProperties(), clusterRouter,
+                new ClusterClient(clusterRouter, new ObjectMapper(), properties), repository, engine,
+                (account, description) -> { }, transferJournal, metrics);
+    }
+}
@@ -0,0 +1,55 @@
+package com.dws.challenge.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+
+    private static final int ACCOUNTS = 30_000;
+
+    @Test
+    void ownerDoesNotDependOnNodeOrder() {
+        var ring = new HashRing(List.of("node-a", "node-b", "node-c"), 128);
+        var reordered = new HashRing(List.of("node-c", "node-a", "node-b"), 128);
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            assertEquals(ring.ownerOf("acc-" + i), reordered.ownerOf("acc-" + i));
+        }
+    }
+
+    @Test
+    void spreadsAccountsEvenly() {
+        var ring = new HashRing(List.of("node-a", "node-b", "node-c"), 128);
+        Map<String, Integer> owned = new HashMap<>();
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            owned.merge(ring.ownerOf("acc-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(3, owned.size());
+        owned.values().forEach(count -> assertTrue(Math.abs(count - ACCOUNTS / 3) < ACCOUNTS / 10, owned::toString));
+    }
+
+    @Test
+    void addingNodeOnlyMovesAccountsToIt() {
+        var ring = new HashRing(List.of("node-a", "node-b", "node-c"), 128);
+        var grown = new HashRing(List.of("node-a", "node-b", "node-c", "node-d"), 128);
+        int moved = 0;
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String owner = grown.ownerOf("acc-" + i);
+            if (!owner.equals(ring.ownerOf("acc-" + i))) {
+                assertEquals("node-d", owner);
+                moved++;
+            }
+        }
+
+        assertTrue(moved > ACCOUNTS / 8 && moved < ACCOUNTS / 3, "moved " + moved);
+    }
+}
@@ -0,0 +1,174 @@
+package com.dws.challenge.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountTest {
+
+    @Test
+    void depositAndWithdraw() {
+        var account = new Account("acc-1", new BigDecimal(100));
+
+        account.deposit(5_000);
+        assertTrue(account.withdraw(12_000));
+
+        assertEquals(new BigDecimal(30), account.getBalance());
+        assertEquals(3_000, account.getBalanceUnits());
+        assertEquals(4, account.getVersion());
+    }
+
+    @Test
+    void withdrawInsufficientBalance() {
+        var account = new Account("acc-1", new BigDecimal(100));
+
+        assertFalse(account.withdraw(10_001));
+
+        assertEquals(new BigDecimal(100), account.getBalance());
+        assertEquals(0, account.getVersion());
+    }
+
+    @Test
+    void depositOverflow() {
+        var account = new Account("acc-1", new BigDecimal(100));
+
+        assertThrows(ArithmeticException.class, () -> account.deposit(Long.MAX_VALUE));
+
+        assertEquals(new BigDecimal(100), account.getBalance());
+        assertEquals(0, account.getVersion());
+    }
+
+    @Test
+    void balanceWithMoreThanTwoDecimalPlacesIsRejected() {
+        assertThrows(ArithmeticException.class, () -> new Account("acc-1", new BigDecimal("0.001")));
+    }
+
+    @Test
+    void claimBlocksDepositUntilReleased() throws Exception {
+        var account = new Account("acc-1", new BigDecimal(100));
+        assertTrue(account.tryClaim(System.nanoTime()));
+
+        var deposit = CompletableFuture.runAsync(() -> account.deposit(100));
+        account.setBalance(new BigDecimal(200));
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertFalse(deposit.isDone());
+
+        account.release();
+        deposit.get(5, TimeUnit.SECONDS);
+
+        assertEquals(new BigDecimal(201), account.getBalance());
+    }
+
+    @Test
+    void depositWaitingForAClaimDoesNotBurnItsCore() throws Exception {
+        var threadMXBean = ManagementFactory.getThreadMXBean();
+        var account = new Account("acc-1", new BigDecimal(100));
+        assertTrue(account.tryClaim(System.nanoTime()));
+
+        var depositor = new Thread(() -> account.deposit(100));
+        depositor.start();
+        TimeUnit.MILLISECONDS.sleep(500);
+        long cpuNanos = threadMXBean.getThreadCpuTime(depositor.getId());
+        account.release();
+        depositor.join(5_000);
+
+        assertTrue(cpuNanos < TimeUnit.MILLISECONDS.toNanos(250), "Waiting deposit used " + cpuNanos + " ns of CPU");
+        assertEquals(10_100, account.getBalanceUnits());
+    }
+
+    @Test
+    void readOfClaimedAccountReturnsTheLastCommittedBalance() throws Exception {
+        var account = new Account("acc-1", new BigDecimal(100));
+        assertTrue(account.tryClaim(System.nanoTime()));
+        account.setBalance(new BigDecimal(50));
+
+        var read = CompletableFuture.supplyAsync(account::readBalanceUnits);
+        assertEquals(10_000, read.get(5, TimeUnit.SECONDS));
+
+        account.setBalance(new BigDecimal(200));
+        assertEquals(10_000, account.readBalanceUnits());
+        account.release();
+        assertEquals(20_000, account.readBalanceUnits());
+    }
+
+    @Test
+    void claimTimesOut() {
+        var account = new Account("acc-1", new BigDecimal(100));
+        assertTrue(account.tryClaim(System.nanoTime()));
+
+        assertFalse(account.tryClaim(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10)));
+    }
+
+    @Test
+    void claimAtVersionFailsOnceTheBalanceChanged() {
+        var account = new Account("acc-1", new BigDecimal(100));
+        long version = account.getVersion();
+        account.deposit(100);
+
+        assertFalse(account.tryClaimAt(version));
+        assertTrue(account.tryClaimAt(account.getVersion()));
+        assertFalse(account.tryClaimAt(account.getVersion()));
+    }
+
+    @Test
+    void cancelledClaimRestoresTheVersion() {
+        var account = new Account("acc-1", new BigDecimal(100));
+        long version = account.getVersion();
+
+        assertTrue(account.tryClaimAt(version));
+        account.cancelClaim();
+
+        assertEquals(version, account.getVersion());
+        assertTrue(account.withdraw(100));
+    }
+
+    @Test
+    void balanceUpdatesDoNotAllocate() {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var account = new Account("acc-1", new BigDecimal(100));
+        for (int i = 0; i < 100_000; i++) {
+            updateBalance(account);
+        }
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1_000_000; i++) {
+            updateBalance(account);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    void balanceReadsDoNotAllocate() {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var account = new Account("acc-1", new BigDecimal(100));
+        long sum = 0;
+        for (int i = 0; i < 100_000; i++) {
+            sum += account.readBalanceUnits();
+        }
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 1_000_000; i++) {
+            sum += account.readBalanceUnits();
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+        assertEquals(0, allocated);
+        assertEquals(1_100_000L * 10_000, sum);
+    }
+
+    private static void updateBalance(Account account) {
+        account.deposit(1);
+        account.withdraw(1);
+        account.setBalanceUnits(account.getBalanceUnits() + 1);
+    }
+}
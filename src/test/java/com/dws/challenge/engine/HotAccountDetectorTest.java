@@ -0,0 +1,90 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.TransferProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotAccountDetectorTest {
+
+    @Test
+    void accountBecomesHotAtThreshold() {
+        var detector = new HotAccountDetector(properties(10));
+
+        for (int i = 0; i < 9; i++) {
+            detector.recordContention("merchant");
+        }
+        assertFalse(detector.isHot("merchant"));
+
+        detector.recordContention("merchant");
+        assertTrue(detector.isHot("merchant"));
+        assertFalse(detector.isHot("customer"));
+    }
+
+    @Test
+    void estimateIsNeverLowerThanCount() {
+        var detector = new HotAccountDetector(properties(1_000_000));
+
+        for (int account = 0; account < 10_000; account++) {
+            for (int i = 0; i <= account % 5; i++) {
+                detector.recordContention("acc-" + account);
+            }
+        }
+
+        for (int account = 0; account < 10_000; account++) {
+            assertTrue(detector.estimate("acc-" + account) >= account % 5 + 1);
+        }
+    }
+
+    @Test
+    void decayCoolsDownAccountsNoLongerContended() {
+        var detector = new HotAccountDetector(properties(8));
+        for (int i = 0; i < 8; i++) {
+            detector.recordContention("merchant");
+        }
+
+        detector.decay();
+        assertEquals(4, detector.estimate("merchant"));
+        assertTrue(detector.isHot("merchant"));
+
+        detector.decay();
+        assertFalse(detector.isHot("merchant"));
+    }
+
+    @Test
+    void hotAccountsAreListedMostContendedFirst() {
+        var detector = new HotAccountDetector(properties(1));
+        detector.recordContention("small");
+        detector.recordContention("large");
+        detector.recordContention("large");
+
+        List<String> accountIds = detector.getHotAccounts().stream()
+                .map(HotAccountDetector.HotAccount::getAccountId)
+                .collect(Collectors.toList());
+
+        assertEquals(List.of("large", "small"), accountIds);
+    }
+
+    @Test
+    void nothingIsRecordedWhenDisabled() {
+        var properties = properties(1);
+        properties.getHotAccounts().setEnabled(false);
+        var detector = new HotAccountDetector(properties);
+
+        detector.recordContention("merchant");
+
+        assertFalse(detector.isHot("merchant"));
+        assertEquals(0, detector.estimate("merchant"));
+    }
+
+    private static TransferProperties properties(int threshold) {
+        var properties = new TransferProperties();
+        properties.getHotAccounts().setThreshold(threshold);
+        return properties;
+    }
+}
@@ -0,0 +1,70 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LockFreeTransferEngineTest {
+
+    @Test
+    void logsTheTransferBeforeTheCreditIsVisible() {
+        var creditedOnAppend = new ArrayList<Long>();
+        var accountsRepository = new AccountsRepositoryInMemory() {
+            @Override
+            public void appendTransfer(Transfer transfer) {
+                Account toAccount = getAccount(transfer.getAccountIdTo());
+                // The claim of the credited account is still held.
+                assertEquals(1, toAccount.getVersion() % 2);
+                creditedOnAppend.add(toAccount.getBalanceUnits());
+            }
+        };
+        var fromAccount = new Account("acc-1", new BigDecimal(100));
+        var toAccount = new Account("acc-2", new BigDecimal(100));
+        accountsRepository.createAccount(fromAccount);
+        accountsRepository.createAccount(toAccount);
+
+        engine(accountsRepository).transfer(fromAccount, toAccount, Money.of(BigDecimal.TEN));
+
+        assertEquals(List.of(10_000L), creditedOnAppend);
+        assertEquals(9_000, fromAccount.readBalanceUnits());
+        assertEquals(11_000, toAccount.readBalanceUnits());
+    }
+
+    @Test
+    void failsAndUndoesTransferWhoseAppendFails() {
+        var accountsRepository = new AccountsRepositoryInMemory() {
+            @Override
+            public void appendTransfer(Transfer transfer) {
+                throw new UncheckedIOException(new IOException("No space left on device"));
+            }
+        };
+        var fromAccount = new Account("acc-1", new BigDecimal(100));
+        var toAccount = new Account("acc-2", new BigDecimal(100));
+        accountsRepository.createAccount(fromAccount);
+        accountsRepository.createAccount(toAccount);
+
+        assertThrows(UncheckedIOException.class,
+                () -> engine(accountsRepository).transfer(fromAccount, toAccount, Money.of(BigDecimal.TEN)));
+        assertEquals(10_000, fromAccount.readBalanceUnits());
+        assertEquals(10_000, toAccount.readBalanceUnits());
+    }
+
+    private static LockFreeTransferEngine engine(AccountsRepositoryInMemory accountsRepository) {
+        return new LockFreeTransferEngine(new TransferProperties(), accountsRepository,
+                new TransferMetrics(new SimpleMeterRegistry()), new SnapshotBarrier());
+    }
+}
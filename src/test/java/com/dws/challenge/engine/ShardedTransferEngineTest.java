@@ -0,0 +1,55 @@
+package com.dws.challenge.engine;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class ShardedTransferEngineTest {
+
+    private static final int PAIRS = 16;
+
+    @Test
+    void failsAndUndoesTransferWhoseAppendFails() throws InterruptedException {
+        var accountsRepository = new AccountsRepositoryInMemory() {
+            @Override
+            public void appendTransfer(Transfer transfer) {
+                throw new UncheckedIOException(new IOException("No space left on device"));
+            }
+        };
+        var properties = new TransferProperties();
+        properties.setShards(2);
+        var engine = new ShardedTransferEngine(properties, accountsRepository, new TransferMetrics(new SimpleMeterRegistry()),
+                new SnapshotBarrier());
+        try {
+            // Both accounts of a pair are owned by the same shard or by different ones.
+            for (int i = 0; i < PAIRS; i++) {
+                var fromAccount = new Account("from-" + i, new BigDecimal(100));
+                var toAccount = new Account("to-" + i, new BigDecimal(100));
+                accountsRepository.createAccount(fromAccount);
+                accountsRepository.createAccount(toAccount);
+
+                assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(UncheckedIOException.class,
+                        () -> engine.transfer(fromAccount, toAccount, Money.of(BigDecimal.TEN))));
+                // The undo of a debit on another shard completes the transfer, so it is applied by now.
+                assertEquals(10_000, fromAccount.getBalanceUnits());
+                assertEquals(10_000, toAccount.getBalanceUnits());
+            }
+        } finally {
+            engine.destroy();
+        }
+    }
+}
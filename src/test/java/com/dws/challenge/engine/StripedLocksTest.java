@@ -0,0 +1,54 @@
+package com.dws.challenge.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StripedLocksTest {
+
+    private static final int ACCOUNTS = 100_000;
+
+    @Test
+    void roundsStripesUpToPowerOfTwo() {
+        assertEquals(1, new StripedLocks(1, false).size());
+        assertEquals(4, new StripedLocks(3, false).size());
+        assertEquals(4096, new StripedLocks(4096, false).size());
+    }
+
+    @Test
+    void sameAccountAlwaysMapsToSameLock() {
+        var locks = new StripedLocks(64, false);
+
+        assertSame(locks.lock(locks.stripeOf("acc-1")), locks.lock(locks.stripeOf(new String("acc-1"))));
+    }
+
+    @Test
+    void stripesOfAreDistinctAndAscending() {
+        var locks = new StripedLocks(1024, false);
+        int a = locks.stripeOf("acc-1");
+        int b = locks.stripeOf("acc-2");
+
+        assertArrayEquals(new int[]{Math.min(a, b), Math.max(a, b)}, locks.stripesOf(List.of("acc-2", "acc-1", "acc-2")));
+    }
+
+    @Test
+    void stripeTableHasFixedSizeForAnyNumberOfAccounts() {
+        var locks = new StripedLocks(64, false);
+        Set<Lock> distinctLocks = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (int i = 0; i < ACCOUNTS; i++) {
+            distinctLocks.add(locks.lock(locks.stripeOf("account-" + i)));
+        }
+
+        assertEquals(64, locks.size());
+        assertEquals(locks.size(), distinctLocks.size());
+    }
+}
@@ -0,0 +1,89 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.domain.Transfer;
+import com.dws.challenge.dto.TransferHistoryEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferJournalTest {
+
+    private final TransferJournal journal = new TransferJournal();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        journal.destroy();
+    }
+
+    @Test
+    void pagesThroughTransfersOfAnAccountNewestFirst() throws InterruptedException {
+        // More transfers than fit into one chunk.
+        var transferIds = new ArrayList<UUID>();
+        for (int i = 0; i < 5000; i++) {
+            Transfer transfer = i % 2 == 0
+                    ? Transfer.of("acc-1", "acc-" + (2 + i % 3), Money.ofUnits(i + 1))
+                    : Transfer.of("acc-" + (2 + i % 3), "acc-1", Money.ofUnits(i + 1));
+            transferIds.add(transfer.getTransferId());
+            journal.append(transfer);
+        }
+        journal.append(Transfer.of("acc-2", "acc-3", Money.ofUnits(1)));
+        awaitSize(5001);
+
+        var seen = new ArrayList<UUID>();
+        Long cursor = null;
+        int pages = 0;
+        do {
+            var page = journal.page("acc-1", cursor, 1000);
+            for (TransferHistoryEntry entry : page.getTransfers()) {
+                seen.add(entry.getTransferId());
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, pages);
+        assertEquals(reversed(transferIds), seen);
+    }
+
+    @Test
+    void entryIsSeenFromBothAccounts() throws InterruptedException {
+        journal.append(Transfer.of("acc-1", "acc-2", Money.of(new BigDecimal("12.50"))));
+        awaitSize(1);
+
+        TransferHistoryEntry debit = journal.page("acc-1", null, 10).getTransfers().get(0);
+        TransferHistoryEntry credit = journal.page("acc-2", null, 10).getTransfers().get(0);
+
+        assertEquals(TransferHistoryEntry.Direction.DEBIT, debit.getDirection());
+        assertEquals(TransferHistoryEntry.Direction.CREDIT, credit.getDirection());
+        assertEquals(new BigDecimal("12.5"), credit.getAmount());
+        assertEquals("acc-1", credit.getAccountIdFrom());
+        assertEquals(debit.getTransferId(), credit.getTransferId());
+        assertNull(journal.page("acc-1", null, 10).getNextCursor());
+        assertTrue(journal.page("unknown", null, 10).getTransfers().isEmpty());
+    }
+
+    private void awaitSize(long size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (journal.getSize() < size && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(size, journal.getSize());
+    }
+
+    private static <T> List<T> reversed(List<T> list) {
+        var reversed = new ArrayList<>(list);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+}
@@ -0,0 +1,131 @@
+package com.dws.challenge.repository.offheap;
+
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.engine.LockFreeTransferEngine;
+import com.dws.challenge.engine.SnapshotBarrier;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.metrics.TransferMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapAccountsRepositoryTest {
+
+    @Test
+    void findsEveryCreatedAccount() {
+        var repository = repository(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            repository.createAccount(new Account("acc-" + i, new BigDecimal(i)));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(new BigDecimal(i), repository.getAccount("acc-" + i).getBalance());
+        }
+        assertNull(repository.getAccount("acc-10000"));
+        assertEquals(10_000, repository.size());
+    }
+
+    @Test
+    void storesNonAsciiIds() {
+        var repository = repository(10);
+        repository.createAccount(new Account("z\u00fcrich-\u20ac", BigDecimal.TEN));
+
+        assertEquals(BigDecimal.TEN, repository.getAccount("z\u00fcrich-\u20ac").getBalance());
+        assertNull(repository.getAccount("zurich-\u20ac"));
+    }
+
+    @Test
+    void rejectsDuplicateIdsTooLongIdsAndAccountsBeyondCapacity() {
+        var repository = repository(2);
+        repository.createAccount(new Account("acc-1", BigDecimal.TEN));
+
+        assertThrows(DuplicateAccountIdException.class, () -> repository.createAccount(new Account("acc-1", BigDecimal.ONE)));
+        var tooLong = assertThrows(ResponseStatusException.class,
+                () -> repository.createAccount(new Account("a".repeat(29), BigDecimal.ONE)));
+        assertEquals(HttpStatus.BAD_REQUEST, tooLong.getStatus());
+
+        repository.createAccount(new Account("acc-2", BigDecimal.TEN));
+        var full = assertThrows(ResponseStatusException.class, () -> repository.createAccount(new Account("acc-3", BigDecimal.ONE)));
+        assertEquals(HttpStatus.INSUFFICIENT_STORAGE, full.getStatus());
+    }
+
+    @Test
+    void flyweightsOfAnAccountShareItsBalance() {
+        var repository = repository(10);
+        repository.createAccount(new Account("acc-1", BigDecimal.TEN));
+
+        Account first = repository.getAccount("acc-1");
+        Account second = repository.getAccount("acc-1");
+        first.deposit(Money.of(BigDecimal.ONE).getUnits());
+
+        assertEquals(new BigDecimal(11), second.getBalance());
+        assertEquals(1_100, second.readBalanceUnits());
+        assertTrue(first.isSameAccount(second));
+    }
+
+    @Test
+    void clearedAccountsAreGone() {
+        var repository = repository(10);
+        repository.createAccount(new Account("acc-1", BigDecimal.TEN));
+        Account before = repository.getAccount("acc-1");
+
+        repository.clearAccounts();
+        assertNull(repository.getAccount("acc-1"));
+
+        repository.createAccount(new Account("acc-1", BigDecimal.ONE));
+        assertFalse(before.isSameAccount(repository.getAccount("acc-1")));
+        assertEquals(BigDecimal.ONE, repository.getAccount("acc-1").getBalance());
+    }
+
+    @Test
+    void concurrentTransfersKeepTotalBalance() throws InterruptedException {
+        var repository = repository(16);
+        for (int i = 0; i < 16; i++) {
+            repository.createAccount(new Account("acc-" + i, new BigDecimal(1000)));
+        }
+        var engine = new LockFreeTransferEngine(new TransferProperties(), repository, new TransferMetrics(new SimpleMeterRegistry()),
+                new SnapshotBarrier());
+        Money amount = Money.of(BigDecimal.ONE);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    engine.transfer(repository.getAccount("acc-" + (i + offset) % 16),
+                            repository.getAccount("acc-" + (i + offset + 1) % 16), amount);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < 16; i++) {
+            total = total.add(repository.getAccount("acc-" + i).getBalance());
+        }
+        assertEquals(new BigDecimal(16_000), total);
+    }
+
+    private static OffHeapAccountsRepository repository(int capacity) {
+        var properties = new RepositoryProperties();
+        properties.getOffHeap().setCapacity(capacity);
+        return new OffHeapAccountsRepository(properties);
+    }
+}
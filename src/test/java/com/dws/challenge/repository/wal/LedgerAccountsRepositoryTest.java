@@ -0,0 +1,117 @@
+package com.dws.challenge.repository.wal;
+
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.metrics.TransferMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+import static com.dws.challenge.util.TransferFixtures.segmentCount;
+import static com.dws.challenge.util.TransferFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerAccountsRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsProjectedBalancesOfAnsweredTransfers() throws IOException {
+        var repository = open();
+        try {
+            repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+            repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+            transfer(repository, "acc-1", "acc-2", "100.25");
+
+            Account read = repository.readAccount("acc-1");
+            assertEquals(new BigDecimal("899.75"), read.getBalance());
+            assertNotSame(repository.getAccount("acc-1"), read);
+            assertEquals(new BigDecimal("1100.25"), repository.readAccount("acc-2").getBalance());
+            assertNull(repository.readAccount("acc-3"));
+        } finally {
+            repository.destroy();
+        }
+    }
+
+    @Test
+    void rebuildsBalancesFromTheWholeLedgerAfterRestart() throws IOException {
+        var repository = open();
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+        // Enough transfers to fill several segments, none of which is ever deleted.
+        for (int i = 0; i < 500; i++) {
+            transfer(repository, "acc-1", "acc-2", "1");
+        }
+        repository.destroy();
+        assertTrue(segmentCount(directory) > 4);
+
+        var recovered = open();
+        try {
+            assertEquals(new BigDecimal(500), recovered.getAccount("acc-1").getBalance());
+            assertEquals(new BigDecimal(1500), recovered.readAccount("acc-2").getBalance());
+        } finally {
+            recovered.destroy();
+        }
+    }
+
+    @Test
+    void replaysTheLedgerIntoANewProjection() throws IOException {
+        var repository = open();
+        try {
+            repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+            repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+            for (int i = 0; i < 100; i++) {
+                transfer(repository, "acc-2", "acc-1", "2");
+            }
+
+            LedgerAccountsRepository.Replay replay = repository.rebuildProjection();
+
+            // Two opening entries, and a debit and a credit entry per transfer.
+            assertEquals(202, replay.getEntries());
+            assertEquals(2, replay.getAccounts());
+            assertTrue(replay.isBalanced());
+            assertEquals(new BigDecimal(1200), repository.readAccount("acc-1").getBalance());
+
+            transfer(repository, "acc-2", "acc-1", "2");
+            assertEquals(new BigDecimal(798), repository.readAccount("acc-2").getBalance());
+        } finally {
+            repository.destroy();
+        }
+    }
+
+    @Test
+    void clearAccountsDeletesTheLedger() throws IOException {
+        var repository = open();
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.clearAccounts();
+        assertNull(repository.readAccount("acc-1"));
+        repository.createAccount(new Account("acc-2", BigDecimal.ONE));
+        assertEquals(BigDecimal.ONE, repository.readAccount("acc-2").getBalance());
+        repository.destroy();
+
+        var recovered = open();
+        try {
+            assertNull(recovered.getAccount("acc-1"));
+            assertEquals(BigDecimal.ONE, recovered.getAccount("acc-2").getBalance());
+        } finally {
+            recovered.destroy();
+        }
+    }
+
+    private LedgerAccountsRepository open() throws IOException {
+        var properties = new RepositoryProperties();
+        properties.setType(RepositoryProperties.Type.LEDGER);
+        properties.getLedger().setDirectory(directory);
+        properties.getLedger().setSegmentSize(DataSize.ofKilobytes(4));
+        return new LedgerAccountsRepository(properties, new TransferMetrics(new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,228 @@
+package com.dws.challenge.repository.wal;
+
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.TransferOutbox;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.dws.challenge.util.TransferFixtures.segmentCount;
+import static com.dws.challenge.util.TransferFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WalAccountsRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversAccountsAndTransfersAfterRestart() throws IOException {
+        var repository = open();
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+        transfer(repository, "acc-1", "acc-2", "100.25");
+        transfer(repository, "acc-2", "acc-1", "0.5");
+        repository.destroy();
+
+        var recovered = open();
+        try {
+            assertEquals(new BigDecimal("900.25"), recovered.getAccount("acc-1").getBalance());
+            assertEquals(new BigDecimal("1099.75"), recovered.getAccount("acc-2").getBalance());
+            assertThrows(DuplicateAccountIdException.class, () -> recovered.createAccount(new Account("acc-1")));
+        } finally {
+            recovered.destroy();
+        }
+    }
+
+    @Test
+    void recoversFromSnapshotAndLogTail() throws IOException {
+        var repository = open();
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+        // Enough transfers to fill several segments.
+        for (int i = 0; i < 500; i++) {
+            transfer(repository, "acc-1", "acc-2", "1");
+        }
+        repository.snapshot();
+        assertTrue(segmentCount(directory) < 5);
+        for (int i = 0; i < 10; i++) {
+            transfer(repository, "acc-2", "acc-1", "2");
+        }
+        repository.destroy();
+
+        var recovered = open();
+        try {
+            assertEquals(new BigDecimal(520), recovered.getAccount("acc-1").getBalance());
+            assertEquals(new BigDecimal(1480), recovered.getAccount("acc-2").getBalance());
+        } finally {
+            recovered.destroy();
+        }
+    }
+
+    @Test
+    void ignoresTornRecordAtTheEndOfTheLog() throws IOException {
+        var repository = open();
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+        transfer(repository, "acc-1", "acc-2", "10");
+        repository.destroy();
+
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files.filter(path -> path.toString().endsWith(".wal")).sorted()
+                    .collect(Collectors.toList()).get(0);
+        }
+        try (var channel = FileChannel.open(lastSegment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A record length followed by garbage, as left by a crash in the middle of an append.
+            int end = endOfRecords(channel);
+            channel.write(ByteBuffer.allocate(16).putInt(12).putLong(42).putInt(7).flip(), end);
+        }
+
+        var recovered = open();
+        assertEquals(new BigDecimal(990), recovered.getAccount("acc-1").getBalance());
+        recovered.createAccount(new Account("acc-3", BigDecimal.ONE));
+        recovered.destroy();
+
+        var reopened = open();
+        try {
+            assertEquals(BigDecimal.ONE, reopened.getAccount("acc-3").getBalance());
+            assertEquals(new BigDecimal(1010), reopened.getAccount("acc-2").getBalance());
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    @Test
+    void ignoresSegmentsAfterATornOne() throws IOException {
+        var repository = open();
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+        for (int i = 0; i < 200; i++) {
+            transfer(repository, "acc-1", "acc-2", "1");
+        }
+        repository.destroy();
+        assertTrue(segmentCount(directory) > 1);
+
+        Path firstSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            firstSegment = files.filter(path -> path.toString().endsWith(".wal")).sorted()
+                    .collect(Collectors.toList()).get(0);
+        }
+        try (var channel = FileChannel.open(firstSegment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The pages after the account creations never reached the disk, those of the next segments did.
+            int end = offsetOfRecord(channel, 2);
+            channel.write(ByteBuffer.allocate((int) channel.size() - end), end);
+        }
+
+        var recovered = open();
+        try {
+            assertEquals(new BigDecimal(1000), recovered.getAccount("acc-1").getBalance());
+            assertEquals(new BigDecimal(1000), recovered.getAccount("acc-2").getBalance());
+            assertEquals(1, segmentCount(directory));
+            transfer(recovered, "acc-2", "acc-1", "5");
+        } finally {
+            recovered.destroy();
+        }
+
+        var reopened = open();
+        try {
+            assertEquals(new BigDecimal(1005), reopened.getAccount("acc-1").getBalance());
+            assertEquals(new BigDecimal(995), reopened.getAccount("acc-2").getBalance());
+        } finally {
+            reopened.destroy();
+        }
+    }
+
+    @Test
+    void snapshotKeepsSegmentsTheOutboxHasNotPassed() throws IOException {
+        var repository = open();
+        try {
+            TransferOutbox outbox = repository.openOutbox();
+            repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+            repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+            for (int i = 0; i < 500; i++) {
+                transfer(repository, "acc-1", "acc-2", "1");
+            }
+            repository.snapshot();
+            assertTrue(segmentCount(directory) > 4);
+
+            var transfers = new AtomicInteger();
+            long position = 0;
+            while (transfers.get() < 500) {
+                position = outbox.poll(1000, Duration.ZERO, (transferId, from, to, amountUnits) -> transfers.incrementAndGet());
+            }
+            outbox.checkpoint(position);
+            // Rolls over to a new segment, so there is something to snapshot.
+            for (int i = 0; i < 100; i++) {
+                transfer(repository, "acc-2", "acc-1", "1");
+            }
+            repository.snapshot();
+            assertTrue(segmentCount(directory) < 4);
+        } finally {
+            repository.destroy();
+        }
+    }
+
+    @Test
+    void clearAccountsDeletesTheLog() throws IOException {
+        var repository = open();
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.clearAccounts();
+        repository.destroy();
+
+        var recovered = open();
+        try {
+            assertNull(recovered.getAccount("acc-1"));
+        } finally {
+            recovered.destroy();
+        }
+    }
+
+    private WalAccountsRepository open() throws IOException {
+        var properties = new RepositoryProperties();
+        properties.setType(RepositoryProperties.Type.WAL);
+        properties.getWal().setDirectory(directory);
+        properties.getWal().setSegmentSize(DataSize.ofKilobytes(4));
+        properties.getWal().setSnapshotInterval(Duration.ofHours(1));
+        return new WalAccountsRepository(properties);
+    }
+
+    private static int endOfRecords(FileChannel channel) throws IOException {
+        return offsetOfRecord(channel, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the offset of the record with index {@code index}, or of the end of the records if there are fewer
+     */
+    private static int offsetOfRecord(FileChannel channel, int index) throws IOException {
+        var length = ByteBuffer.allocate(Integer.BYTES);
+        int offset = 0;
+        for (int i = 0; i < index; i++) {
+            length.clear();
+            channel.read(length, offset);
+            int recordLength = length.flip().getInt();
+            if (recordLength <= 0) {
+                return offset;
+            }
+            offset += recordLength + 2 * Integer.BYTES;
+        }
+        return offset;
+    }
+}
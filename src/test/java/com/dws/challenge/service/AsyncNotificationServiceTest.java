@@ -0,0 +1,69 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.NotificationProperties;
+import com.dws.challenge.domain.Account;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class AsyncNotificationServiceTest {
+
+    private final NotificationService delegate = mock(NotificationService.class);
+    private AsyncNotificationService underTest;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        underTest.destroy();
+    }
+
+    @Test
+    void formatsAndSendsNotificationsOnDispatcherThread() {
+        underTest = new AsyncNotificationService(delegate, new NotificationProperties());
+        var account = new Account("acc-1", BigDecimal.TEN);
+
+        underTest.notifyAboutTransfer(account, "Successfully transfer %s from your account to %s", BigDecimal.ONE, "acc-2");
+        underTest.notifyAboutTransfer(account, "Plain description");
+
+        verify(delegate, timeout(5000)).notifyAboutTransfer(account, "Successfully transfer 1 from your account to acc-2");
+        verify(delegate, timeout(5000)).notifyAboutTransfer(account, "Plain description");
+        assertEquals(2, underTest.getSubmittedCount());
+    }
+
+    @Test
+    void dropsNotificationsWhenQueueIsFull() throws Exception {
+        var properties = new NotificationProperties();
+        properties.setQueueCapacity(1);
+        properties.setOverflowPolicy(NotificationProperties.OverflowPolicy.DROP);
+        var dispatching = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            dispatching.countDown();
+            release.await();
+            return null;
+        }).when(delegate).notifyAboutTransfer(any(), anyString());
+        underTest = new AsyncNotificationService(delegate, properties);
+        var account = new Account("acc-1", BigDecimal.TEN);
+
+        underTest.notifyAboutTransfer(account, "first");
+        assertTrue(dispatching.await(5, TimeUnit.SECONDS));
+        underTest.notifyAboutTransfer(account, "second");
+        underTest.notifyAboutTransfer(account, "third");
+        release.countDown();
+
+        assertEquals(3, underTest.getSubmittedCount());
+        assertEquals(1, underTest.getDroppedCount());
+        verify(delegate, timeout(5000)).notifyAboutTransfer(account, "second");
+    }
+}
@@ -0,0 +1,251 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.ExportProperties;
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.engine.HotAccountDetector;
+import com.dws.challenge.engine.LockFreeTransferEngine;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.engine.OptimisticTransferEngine;
+import com.dws.challenge.engine.PointInTimeBalances;
+import com.dws.challenge.engine.ShardedTransferEngine;
+import com.dws.challenge.engine.SnapshotBarrier;
+import com.dws.challenge.engine.TransferEngine;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.TransferJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalanceExportServiceTest {
+
+    private static final int ACCOUNTS = 64;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1000);
+    private static final BigDecimal TOTAL_BALANCE = INITIAL_BALANCE.multiply(BigDecimal.valueOf(ACCOUNTS));
+
+    @TempDir
+    Path exportDirectory;
+
+    private AccountsRepository accountsRepository;
+    private SnapshotBarrier snapshotBarrier;
+    private TransferEngine transferEngine;
+
+    @BeforeEach
+    void setUp() {
+        accountsRepository = new AccountsRepositoryInMemory();
+        snapshotBarrier = new SnapshotBarrier();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsRepository.createAccount(new Account("account-" + i, INITIAL_BALANCE));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (transferEngine instanceof DisposableBean) {
+            ((DisposableBean) transferEngine).destroy();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferProperties.Engine.class)
+    void exportedBalancesAddUpWhileTransfersRun(TransferProperties.Engine engine) throws Exception {
+        var exportService = exportService(engine);
+        var running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            var transfers = new ArrayList<Future<?>>();
+            for (int t = 0; t < 8; t++) {
+                transfers.add(executor.submit(() -> {
+                    var random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        Account from = accountsRepository.getAccount("account-" + random.nextInt(ACCOUNTS));
+                        Account to = accountsRepository.getAccount("account-" + random.nextInt(ACCOUNTS));
+                        if (from == to) {
+                            continue;
+                        }
+                        try {
+                            transferEngine.transfer(from, to, Money.ofUnits(1 + random.nextInt(10_000)));
+                        } catch (ResponseStatusException e) {
+                            // Insufficient balance.
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (int i = 0; i < 50; i++) {
+                var format = i % 2 == 0 ? BalanceExportService.Format.CSV : BalanceExportService.Format.NDJSON;
+                var out = new ByteArrayOutputStream();
+                BalanceExportService.Export export = exportService.export(format, false, out);
+
+                Map<String, BigDecimal> balances = parse(format, out.toString(StandardCharsets.UTF_8));
+                assertEquals(ACCOUNTS, balances.size());
+                assertEquals(0, TOTAL_BALANCE.compareTo(sum(balances)), "export " + i + " of " + engine);
+                assertEquals(ACCOUNTS, export.getAccounts());
+                assertEquals(0, TOTAL_BALANCE.compareTo(export.getTotalBalance()));
+            }
+
+            running.set(false);
+            for (Future<?> transfer : transfers) {
+                transfer.get();
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void snapshotKeepsBalancesOfTheInstantAndSkipsLaterAccounts() throws Exception {
+        exportService(TransferProperties.Engine.LOCKING);
+        var transferJournal = new TransferJournal();
+        var accountsService = new AccountsService(accountsRepository, transferJournal, snapshotBarrier);
+        Account from = accountsRepository.getAccount("account-0");
+        Account to = accountsRepository.getAccount("account-1");
+
+        PointInTimeBalances balances = snapshotBarrier.takeSnapshot(Map::of);
+        try {
+            transferEngine.transfer(from, to, Money.of(new BigDecimal("12.34")));
+            accountsService.createAccount(new Account("late", INITIAL_BALANCE));
+
+            assertEquals(Money.toUnits(INITIAL_BALANCE), balances.balanceOf(from));
+            assertEquals(Money.toUnits(INITIAL_BALANCE), balances.balanceOf(to));
+            assertEquals(PointInTimeBalances.NOT_CREATED, balances.balanceOf(accountsRepository.getAccount("late")));
+            assertThrows(ResponseStatusException.class, () -> snapshotBarrier.takeSnapshot(Map::of));
+        } finally {
+            snapshotBarrier.releaseSnapshot(balances);
+            transferJournal.destroy();
+        }
+        assertEquals(new BigDecimal("987.66"), from.getBalance());
+    }
+
+    @Test
+    void snapshotReadsClaimedAccountsWithoutWaiting() {
+        exportService(TransferProperties.Engine.LOCKING);
+        Account account = accountsRepository.getAccount("account-2");
+
+        PointInTimeBalances balances = snapshotBarrier.takeSnapshot(Map::of);
+        assertTrue(account.tryClaim(System.nanoTime()));
+        try {
+            snapshotBarrier.beforeWrite(account);
+            account.setBalanceUnits(1);
+
+            assertEquals(Money.toUnits(INITIAL_BALANCE),
+                    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> balances.balanceOf(account)));
+        } finally {
+            account.release();
+            snapshotBarrier.releaseSnapshot(balances);
+        }
+    }
+
+    @Test
+    void exportsCompressedNdjsonToFile() throws Exception {
+        var exportService = exportService(TransferProperties.Engine.LOCKING);
+        accountsRepository.createAccount(new Account("quote\"d", new BigDecimal("0.5")));
+
+        BalanceExportService.Export export = exportService.exportToFile(BalanceExportService.Format.NDJSON, true);
+
+        assertTrue(export.getFile().getFileName().toString().endsWith(".ndjson.gz"));
+        assertEquals(List.of(export.getFile()), list(exportDirectory));
+        String content;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(export.getFile()))) {
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Map<String, BigDecimal> balances = parse(BalanceExportService.Format.NDJSON, content);
+        assertEquals(ACCOUNTS + 1, balances.size());
+        assertEquals(new BigDecimal("0.5"), balances.get("quote\"d"));
+        assertTrue(content.contains("{\"account_id\":\"account-0\",\"balance\":1000}\n"));
+        assertEquals(0, TOTAL_BALANCE.add(new BigDecimal("0.5")).compareTo(export.getTotalBalance()));
+        assertNull(exportService.export(BalanceExportService.Format.CSV, false, new ByteArrayOutputStream()).getFile());
+    }
+
+    private BalanceExportService exportService(TransferProperties.Engine engine) {
+        var properties = new TransferProperties();
+        var transferMetrics = new TransferMetrics(new SimpleMeterRegistry());
+        switch (engine) {
+            case SHARDED:
+                properties.setShards(4);
+                transferEngine = new ShardedTransferEngine(properties, accountsRepository, transferMetrics, snapshotBarrier);
+                break;
+            case LOCK_FREE:
+                transferEngine = new LockFreeTransferEngine(properties, accountsRepository, transferMetrics, snapshotBarrier);
+                break;
+            case OPTIMISTIC:
+                transferEngine = new OptimisticTransferEngine(properties, accountsRepository, transferMetrics, snapshotBarrier);
+                break;
+            default:
+                // Every contended account turns hot, so pending credits are exported too.
+                properties.getHotAccounts().setThreshold(1);
+                transferEngine = new LockingTransferEngine(properties, accountsRepository, transferMetrics,
+                        new HotAccountDetector(properties), snapshotBarrier);
+        }
+        var exportProperties = new ExportProperties();
+        exportProperties.setDirectory(exportDirectory);
+        return new BalanceExportService(accountsRepository, transferEngine, snapshotBarrier, exportProperties);
+    }
+
+    private static Map<String, BigDecimal> parse(BalanceExportService.Format format, String content) {
+        var balances = new HashMap<String, BigDecimal>();
+        String[] lines = content.split("\n");
+        int first = format == BalanceExportService.Format.CSV ? 1 : 0;
+        if (format == BalanceExportService.Format.CSV) {
+            assertEquals("account_id,balance", lines[0]);
+        }
+        for (int i = first; i < lines.length; i++) {
+            String line = lines[i];
+            if (format == BalanceExportService.Format.CSV) {
+                int comma = line.lastIndexOf(',');
+                balances.put(line.substring(0, comma), new BigDecimal(line.substring(comma + 1)));
+            } else {
+                int balanceAt = line.lastIndexOf(",\"balance\":");
+                String accountId = line.substring("{\"account_id\":\"".length(), balanceAt - 1).replace("\\\"", "\"");
+                balances.put(accountId, new BigDecimal(line.substring(balanceAt + ",\"balance\":".length(), line.length() - 1)));
+            }
+        }
+        return balances;
+    }
+
+    private static BigDecimal sum(Map<String, BigDecimal> balances) {
+        return balances.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static List<Path> list(Path directory) throws Exception {
+        try (var files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+}
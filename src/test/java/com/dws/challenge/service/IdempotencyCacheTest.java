@@ -0,0 +1,162 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.IdempotencyProperties;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyCacheTest {
+
+    private static final TransferRequest REQUEST = new TransferRequest("acc-1", "acc-2", new BigDecimal(100));
+
+    @Test
+    void replaysTheFirstResponse() {
+        var cache = new IdempotencyCache(new IdempotencyProperties());
+        var executions = new AtomicInteger();
+
+        var first = cache.execute("key-1", REQUEST, () -> response(executions));
+        var second = cache.execute("key-1", new TransferRequest("acc-1", "acc-2", new BigDecimal("100.00")),
+                () -> response(executions));
+
+        assertSame(first, second);
+        assertEquals(1, executions.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getSize());
+        assertTrue(cache.getEstimatedMemoryBytes() > 0);
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheFirstExecution() {
+        var cache = new IdempotencyCache(new IdempotencyProperties());
+        var pending = new CompletableFuture<TransferResponse>();
+        var executions = new AtomicInteger();
+
+        var first = cache.executeAsync("key-1", REQUEST, () -> {
+            executions.incrementAndGet();
+            return pending;
+        });
+        var duplicate = cache.executeAsync("key-1", REQUEST, () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+        assertFalse(duplicate.isDone());
+
+        var response = response(new AtomicInteger());
+        pending.complete(response);
+
+        assertSame(response, first.join());
+        assertSame(response, duplicate.join());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void failedTransferIsNotRemembered() {
+        var cache = new IdempotencyCache(new IdempotencyProperties());
+        var executions = new AtomicInteger();
+
+        assertThrows(ResponseStatusException.class, () -> cache.execute("key-1", REQUEST, () -> {
+            executions.incrementAndGet();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient balance in the fromAccount");
+        }));
+        cache.execute("key-1", REQUEST, () -> response(executions));
+
+        assertEquals(2, executions.get());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    void keyReusedForDifferentTransferIsRejected() {
+        var cache = new IdempotencyCache(new IdempotencyProperties());
+        cache.execute("key-1", REQUEST, () -> response(new AtomicInteger()));
+
+        var e = assertThrows(ResponseStatusException.class, () -> cache.execute("key-1",
+                new TransferRequest("acc-1", "acc-2", new BigDecimal(101)), () -> response(new AtomicInteger())));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatus());
+    }
+
+    @Test
+    void expiredKeysAreEvicted() throws InterruptedException {
+        var properties = new IdempotencyProperties();
+        properties.setShards(1);
+        properties.setMaxEntries(2);
+        properties.setTtl(Duration.ofMillis(50));
+        var cache = new IdempotencyCache(properties);
+        var executions = new AtomicInteger();
+
+        cache.execute("key-1", REQUEST, () -> response(executions));
+        cache.execute("key-2", REQUEST, () -> response(executions));
+        assertEquals(2, cache.getSize());
+
+        Thread.sleep(100);
+        cache.execute("key-3", REQUEST, () -> response(executions));
+        cache.execute("key-1", REQUEST, () -> response(executions));
+        assertEquals(4, executions.get());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    void newKeyIsRejectedWhileEveryKeyIsLive() {
+        var properties = new IdempotencyProperties();
+        properties.setShards(1);
+        properties.setMaxEntries(2);
+        var cache = new IdempotencyCache(properties);
+        var executions = new AtomicInteger();
+        cache.execute("key-1", REQUEST, () -> response(executions));
+        cache.execute("key-2", REQUEST, () -> response(executions));
+
+        var e = assertThrows(ResponseStatusException.class, () -> cache.execute("key-3", REQUEST, () -> response(executions)));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+        cache.execute("key-1", REQUEST, () -> response(executions));
+        assertEquals(2, executions.get());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    void runningTransferIsRememberedPastItsTtl() throws InterruptedException {
+        var properties = new IdempotencyProperties();
+        properties.setShards(1);
+        properties.setMaxEntries(2);
+        properties.setTtl(Duration.ofMillis(50));
+        var cache = new IdempotencyCache(properties);
+        var pending = new CompletableFuture<TransferResponse>();
+        var executions = new AtomicInteger();
+
+        var first = cache.executeAsync("key-1", REQUEST, () -> {
+            executions.incrementAndGet();
+            return pending;
+        });
+        cache.execute("key-2", REQUEST, () -> response(executions));
+        Thread.sleep(100);
+        cache.execute("key-3", REQUEST, () -> response(executions));
+        var duplicate = cache.executeAsync("key-1", REQUEST, () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+        assertEquals(3, executions.get());
+
+        var response = response(new AtomicInteger());
+        pending.complete(response);
+        assertSame(response, first.join());
+        assertSame(response, duplicate.join());
+    }
+
+    private static TransferResponse response(AtomicInteger executions) {
+        executions.incrementAndGet();
+        return new TransferResponse(UUID.randomUUID(), "acc-1", "acc-2", new BigDecimal(100));
+    }
+}
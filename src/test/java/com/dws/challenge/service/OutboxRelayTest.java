@@ -0,0 +1,177 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.OutboxProperties;
+import com.dws.challenge.config.RepositoryProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.wal.WalAccountsRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dws.challenge.util.TransferFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboxRelayTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private final NotificationService delegate = (account, description) -> sent.add(account.getAccountId() + ": " + description);
+
+    @Test
+    void relaysNotificationsOfDurableTransfers() throws Exception {
+        var repository = open();
+        var relay = new OutboxRelay(repository, delegate, properties());
+        try {
+            assertTrue(repository.isOutboxOpen());
+            repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+            repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+            transfer(repository, "acc-1", "acc-2", "10.5");
+
+            awaitSent(2);
+            assertEquals(List.of(
+                    "acc-1: Successfully transfer 10.50 from your account to acc-2",
+                    "acc-2: Successfully received 10.50 on your account from acc-1"), sent);
+            assertEquals(2, relay.getRelayedCount());
+        } finally {
+            relay.destroy();
+            repository.destroy();
+        }
+    }
+
+    @Test
+    void resumesAfterTheCheckpointOnRestart() throws Exception {
+        var repository = open();
+        var relay = new OutboxRelay(repository, delegate, properties());
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+        for (int i = 0; i < 100; i++) {
+            transfer(repository, "acc-1", "acc-2", "1");
+        }
+        awaitSent(200);
+        relay.destroy();
+        repository.destroy();
+        sent.clear();
+
+        var restarted = open();
+        var restartedRelay = new OutboxRelay(restarted, delegate, properties());
+        try {
+            transfer(restarted, "acc-2", "acc-1", "5");
+
+            awaitSent(2);
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertEquals(List.of(
+                    "acc-2: Successfully transfer 5.00 from your account to acc-1",
+                    "acc-1: Successfully received 5.00 on your account from acc-2"), sent);
+        } finally {
+            restartedRelay.destroy();
+            restarted.destroy();
+        }
+    }
+
+    @Test
+    void retriesFailedNotificationsInOrder() throws Exception {
+        var failures = new AtomicInteger(3);
+        NotificationService flaky = (account, description) -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("Mail server unavailable");
+            }
+            delegate.notifyAboutTransfer(account, description);
+        };
+        var repository = open();
+        var relay = new OutboxRelay(repository, flaky, properties());
+        try {
+            repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+            repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+            transfer(repository, "acc-1", "acc-2", "1");
+            transfer(repository, "acc-2", "acc-1", "2");
+
+            awaitSent(4);
+            assertEquals(List.of(
+                    "acc-1: Successfully transfer 1.00 from your account to acc-2",
+                    "acc-2: Successfully received 1.00 on your account from acc-1",
+                    "acc-2: Successfully transfer 2.00 from your account to acc-1",
+                    "acc-1: Successfully received 2.00 on your account from acc-2"), sent);
+            assertEquals(3, relay.getFailedCount());
+        } finally {
+            relay.destroy();
+            repository.destroy();
+        }
+    }
+
+    @Test
+    void doesNotCheckpointPastAnUndeliveredTransfer() throws Exception {
+        var repository = open();
+        var relay = new OutboxRelay(repository, (account, description) -> {
+            throw new IllegalStateException("Mail server unavailable");
+        }, properties());
+        repository.createAccount(new Account("acc-1", new BigDecimal(1000)));
+        repository.createAccount(new Account("acc-2", new BigDecimal(1000)));
+        transfer(repository, "acc-1", "acc-2", "3");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (relay.getFailedCount() < 2 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        relay.destroy();
+        repository.destroy();
+
+        var restarted = open();
+        var restartedRelay = new OutboxRelay(restarted, delegate, properties());
+        try {
+            awaitSent(2);
+            assertEquals(List.of(
+                    "acc-1: Successfully transfer 3.00 from your account to acc-2",
+                    "acc-2: Successfully received 3.00 on your account from acc-1"), sent);
+        } finally {
+            restartedRelay.destroy();
+            restarted.destroy();
+        }
+    }
+
+    @Test
+    void needsARepositoryKeepingDurableTransfers() {
+        var repository = new AccountsRepositoryInMemory();
+
+        assertThrows(UnsupportedOperationException.class, () -> new OutboxRelay(repository, delegate, properties()));
+        assertFalse(repository.isOutboxOpen());
+    }
+
+    private WalAccountsRepository open() throws IOException {
+        var properties = new RepositoryProperties();
+        properties.setType(RepositoryProperties.Type.WAL);
+        properties.getWal().setDirectory(directory);
+        properties.getWal().setSegmentSize(DataSize.ofKilobytes(4));
+        properties.getWal().setSnapshotInterval(Duration.ofHours(1));
+        return new WalAccountsRepository(properties);
+    }
+
+    private static OutboxProperties properties() {
+        var properties = new OutboxProperties();
+        properties.setMaxBatchSize(16);
+        properties.setPollInterval(Duration.ofMillis(10));
+        properties.setMaxRetryBackoff(Duration.ofMillis(20));
+        return properties;
+    }
+
+    private void awaitSent(int notifications) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sent.size() < notifications && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        assertEquals(notifications, sent.size());
+    }
+}
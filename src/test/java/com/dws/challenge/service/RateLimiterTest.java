@@ -0,0 +1,65 @@
+package com.dws.challenge.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    // One request every 100ms, bursts of 3.
+    private final RateLimiter underTest = new RateLimiter(10, 3, now::get);
+
+    @Test
+    void admitsBurstThenOneRequestPerInterval() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, underTest.tryAcquire("client-1"));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), underTest.tryAcquire("client-1"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(40), underTest.tryAcquire("client-1"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(40));
+        assertEquals(0, underTest.tryAcquire("client-1"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), underTest.tryAcquire("client-1"));
+    }
+
+    @Test
+    void limitsEveryKeySeparately() {
+        for (int i = 0; i < 3; i++) {
+            underTest.tryAcquire("client-1");
+        }
+
+        assertEquals(0, underTest.tryAcquire("client-2"));
+    }
+
+    @Test
+    void evictsOnlyBucketsThatFilledUpAgain() {
+        underTest.tryAcquire("client-1");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        for (int i = 0; i < 3; i++) {
+            underTest.tryAcquire("client-2");
+        }
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, underTest.evictIdle());
+        assertEquals(1, underTest.size());
+
+        // Dropping a full bucket changes nothing: the whole burst is admitted again.
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, underTest.tryAcquire("client-1"));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), underTest.tryAcquire("client-1"));
+    }
+
+    @Test
+    void rejectsInvalidLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1, now::get));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 0, now::get));
+    }
+}
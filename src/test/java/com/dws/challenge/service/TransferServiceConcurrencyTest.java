@@ -0,0 +1,288 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.engine.HotAccountDetector;
+import com.dws.challenge.engine.LockFreeTransferEngine;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.engine.OptimisticTransferEngine;
+import com.dws.challenge.engine.ShardedTransferEngine;
+import com.dws.challenge.engine.SnapshotBarrier;
+import com.dws.challenge.engine.TransferEngine;
+import com.dws.challenge.exception.CannotExecuteTransferException;
+import com.dws.challenge.mapper.TransferMapper;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.TransferJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers a single hot account from many threads and reports, per engine, how many transfers
+ * completed versus how many were rejected, and how long they took.
+ */
+class TransferServiceConcurrencyTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferServiceConcurrencyTest.class);
+
+    private static final int THREADS = 32;
+    private static final int TRANSFERS_PER_THREAD = 250;
+    private static final int SPOKE_ACCOUNTS = 16;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000);
+
+    private AccountsRepository accountsRepository;
+    private TransferJournal transferJournal;
+    private TransferMetrics transferMetrics;
+
+    @BeforeEach
+    void setUp() {
+        accountsRepository = new AccountsRepositoryInMemory();
+        transferJournal = new TransferJournal();
+        transferMetrics = new TransferMetrics(new SimpleMeterRegistry());
+        accountsRepository.createAccount(new Account("hot", INITIAL_BALANCE));
+        for (int i = 0; i < SPOKE_ACCOUNTS; i++) {
+            accountsRepository.createAccount(new Account("spoke-" + i, INITIAL_BALANCE));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        transferJournal.destroy();
+    }
+
+    @Test
+    void orderedLockingCompletesEveryTransferOnHotAccount() throws Exception {
+        var properties = new TransferProperties();
+        properties.setLockMode(TransferProperties.LockMode.ORDERED);
+        properties.setLockTimeout(Duration.ofSeconds(10));
+
+        var engine = new LockingTransferEngine(properties, accountsRepository, transferMetrics, new HotAccountDetector(properties),
+                new SnapshotBarrier());
+        var result = hammerHotAccount("locking/ORDERED", engine);
+        engine.destroy();
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, result.completed);
+        assertEquals(0, result.rejected);
+        assertTotalBalanceUnchanged();
+    }
+
+    @Test
+    void tryLockKeepsBalancesConsistentOnHotAccount() throws Exception {
+        var properties = new TransferProperties();
+        properties.setLockMode(TransferProperties.LockMode.TRY_LOCK);
+
+        var engine = new LockingTransferEngine(properties, accountsRepository, transferMetrics, new HotAccountDetector(properties),
+                new SnapshotBarrier());
+        var result = hammerHotAccount("locking/TRY_LOCK", engine);
+        engine.destroy();
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, result.completed + result.rejected);
+        assertTotalBalanceUnchanged();
+    }
+
+    @Test
+    void lockingEngineCollectsCreditsToHotAccount() throws Exception {
+        var properties = new TransferProperties();
+        properties.setLockTimeout(Duration.ofSeconds(10));
+        properties.getHotAccounts().setThreshold(1);
+        var hotAccountDetector = new HotAccountDetector(properties);
+
+        var engine = new LockingTransferEngine(properties, accountsRepository, transferMetrics, hotAccountDetector,
+                new SnapshotBarrier());
+        var result = hammerHotAccount("locking/hot-accounts", engine);
+        engine.destroy();
+
+        assertTrue(hotAccountDetector.isHot("hot"));
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, result.completed);
+        assertEquals(0, result.rejected);
+        assertTotalBalanceUnchanged();
+    }
+
+    @Test
+    void lockingEngineNeverLetsCreditsToHotAccountOverflowItsBalance() throws Exception {
+        var properties = new TransferProperties();
+        properties.setLockTimeout(Duration.ofSeconds(10));
+        properties.getHotAccounts().setThreshold(1);
+        properties.getHotAccounts().setDecayInterval(Duration.ofHours(1));
+        var hotAccountDetector = new HotAccountDetector(properties);
+        hotAccountDetector.recordContention("hot");
+        long room = 100;
+        accountsRepository.getAccount("hot").setBalanceUnits(Long.MAX_VALUE - room);
+
+        var engine = new LockingTransferEngine(properties, accountsRepository, transferMetrics, hotAccountDetector,
+                new SnapshotBarrier());
+        var credited = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                Account spoke = accountsRepository.getAccount("spoke-" + t % SPOKE_ACCOUNTS);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 10; i++) {
+                        try {
+                            engine.transfer(spoke, accountsRepository.getAccount("hot"), Money.ofUnits(1))
+                                    .ifPresent(transfer -> credited.incrementAndGet());
+                        } catch (ResponseStatusException e) {
+                            assertEquals(TransferEngine.BALANCE_OVERFLOW_MESSAGE, e.getReason());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            engine.destroy();
+        }
+
+        assertEquals(room, credited.get());
+        assertEquals(Long.MAX_VALUE, accountsRepository.getAccount("hot").getBalanceUnits());
+        assertTrue(engine.pendingCredits().isEmpty());
+    }
+
+    @Test
+    void lockFreeEngineCompletesEveryTransferOnHotAccount() throws Exception {
+        var result = hammerHotAccount("lock-free",
+                new LockFreeTransferEngine(new TransferProperties(), accountsRepository, transferMetrics, new SnapshotBarrier()));
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, result.completed);
+        assertEquals(0, result.rejected);
+        assertTotalBalanceUnchanged();
+    }
+
+    @Test
+    void optimisticEngineRetriesConflictsOnHotAccount() throws Exception {
+        var properties = new TransferProperties();
+        properties.getOptimistic().setMaxAttempts(10_000);
+
+        var result = hammerHotAccount("optimistic",
+                new OptimisticTransferEngine(properties, accountsRepository, transferMetrics, new SnapshotBarrier()));
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, result.completed);
+        assertEquals(0, result.rejected);
+        assertTotalBalanceUnchanged();
+    }
+
+    @Test
+    void optimisticEngineRejectsTransfersOnceRetriesAreExhausted() throws Exception {
+        var properties = new TransferProperties();
+        properties.getOptimistic().setMaxAttempts(1);
+
+        var result = hammerHotAccount("optimistic/1 attempt",
+                new OptimisticTransferEngine(properties, accountsRepository, transferMetrics, new SnapshotBarrier()));
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, result.completed + result.rejected);
+        assertTotalBalanceUnchanged();
+    }
+
+    @Test
+    void shardedEngineCompletesEveryTransferOnHotAccount() throws Exception {
+        var properties = new TransferProperties();
+        properties.setShards(4);
+        properties.setShardQueueCapacity(THREADS * TRANSFERS_PER_THREAD);
+
+        var engine = new ShardedTransferEngine(properties, accountsRepository, transferMetrics, new SnapshotBarrier());
+        try {
+            var result = hammerHotAccount("sharded", engine);
+
+            assertEquals(THREADS * TRANSFERS_PER_THREAD, result.completed);
+            assertEquals(0, result.rejected);
+            assertTotalBalanceUnchanged();
+        } finally {
+            engine.destroy();
+        }
+    }
+
+    private Result hammerHotAccount(String engineName, TransferEngine transferEngine) throws Exception {
+        NotificationService notificationService = (account, transferDescription) -> {
+        };
+        var transferService = new TransferService(accountsRepository, transferEngine, notificationService, new TransferMapper(), transferJournal,
+                transferMetrics, Optional.empty());
+
+        var completed = new AtomicInteger();
+        var rejected = new AtomicInteger();
+        var start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    var random = ThreadLocalRandom.current();
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        String spoke = "spoke-" + random.nextInt(SPOKE_ACCOUNTS);
+                        try {
+                            if (i % 2 == 0) {
+                                transferService.transfer("hot", spoke, BigDecimal.ONE);
+                            } else {
+                                transferService.transfer(spoke, "hot", BigDecimal.ONE);
+                            }
+                            completed.incrementAndGet();
+                        } catch (CannotExecuteTransferException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+
+            log.info("Engine {}: {} completed, {} rejected ({}% completed) in {} ms",
+                    engineName, completed.get(), rejected.get(),
+                    100L * completed.get() / (THREADS * TRANSFERS_PER_THREAD), elapsedMillis);
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Result(completed.get(), rejected.get());
+    }
+
+    private void assertTotalBalanceUnchanged() {
+        BigDecimal total = accountsRepository.getAccount("hot").getBalance();
+        for (int i = 0; i < SPOKE_ACCOUNTS; i++) {
+            total = total.add(accountsRepository.getAccount("spoke-" + i).getBalance());
+        }
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(SPOKE_ACCOUNTS + 1)), total);
+    }
+
+    private static final class Result {
+        private final int completed;
+        private final int rejected;
+
+        private Result(int completed, int rejected) {
+            this.completed = completed;
+            this.rejected = rejected;
+        }
+    }
+}
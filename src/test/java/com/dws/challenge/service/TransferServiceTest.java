@@ -1,12 +1,14 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.Answers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -30,7 +32,9 @@ class TransferServiceTest {
     private AccountsService accountsService;
     @Autowired
     private TransferService underTest;
-    @MockBean
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @MockBean(answer = Answers.CALLS_REAL_METHODS)
     private NotificationService notificationService;
 
     private Account account1;
@@ -76,6 +80,20 @@ class TransferServiceTest {
         verify(notificationService).notifyAboutTransfer(account2, "Successfully received 100 on your account from acc-1");
     }
 
+    @Test
+    void transferRecordsLatencyByOutcome() {
+        var executed = meterRegistry.get("transfer.latency").tag("outcome", "executed").timer();
+        var failed = meterRegistry.get("transfer.latency").tag("outcome", "failed").timer();
+        long executedBefore = executed.count();
+        long failedBefore = failed.count();
+
+        underTest.transfer("acc-1", "acc-2", new BigDecimal(100));
+        assertThrows(ResponseStatusException.class, () -> underTest.transfer("acc-1", "acc-2", new BigDecimal(100_000)));
+
+        assertEquals(executedBefore + 1, executed.count());
+        assertEquals(failedBefore + 1, failed.count());
+    }
+
     @ParameterizedTest
     @MethodSource("transferInvalidInputSource")
     void transferInvalidInput(String accountIdFrom, String accountIdTo, Integer amount) {
@@ -0,0 +1,41 @@
+package com.dws.challenge.util;
+
+import com.dws.challenge.config.TransferProperties;
+import com.dws.challenge.domain.Money;
+import com.dws.challenge.engine.HotAccountDetector;
+import com.dws.challenge.engine.LockingTransferEngine;
+import com.dws.challenge.engine.SnapshotBarrier;
+import com.dws.challenge.metrics.TransferMetrics;
+import com.dws.challenge.repository.AccountsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class TransferFixtures {
+
+    /**
+     * Transfers {@code amount} with a locking engine and waits until {@code repository} made it durable.
+     */
+    public static void transfer(AccountsRepository repository, String accountIdFrom, String accountIdTo, String amount) {
+        var properties = new TransferProperties();
+        properties.getHotAccounts().setEnabled(false);
+        var engine = new LockingTransferEngine(properties, repository, new TransferMetrics(new SimpleMeterRegistry()),
+                new HotAccountDetector(properties),
+                new SnapshotBarrier());
+        engine.transfer(repository.getAccount(accountIdFrom), repository.getAccount(accountIdTo), Money.of(new BigDecimal(amount)));
+        repository.awaitDurable();
+    }
+
+    /**
+     * @return the number of write-ahead log segments in {@code directory}
+     */
+    public static long segmentCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".wal")).count();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferAdmission;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+/**
+ * Rate limit buckets outlive the accounts cleared between tests, so every test uses its own
+ * clients and source accounts.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {
+        "challenge.rate-limit.client.rate=0.01",
+        "challenge.rate-limit.client.burst=2",
+        "challenge.rate-limit.account.rate=0.01",
+        "challenge.rate-limit.account.burst=1",
+        "challenge.rate-limit.target-throughput=10",
+        "challenge.rate-limit.target-latency=100ms"
+})
+@WebAppConfiguration
+class AdmissionControlTest {
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+    @Autowired
+    private AdmissionControlFilter admissionControlFilter;
+    @Autowired
+    private TransferAdmission transferAdmission;
+    @Autowired
+    private AccountsService accountsService;
+
+    @BeforeEach
+    void setUp() {
+        this.mockMvc = webAppContextSetup(this.webApplicationContext)
+                .addFilters(this.admissionControlFilter)
+                .build();
+
+        accountsService.getAccountsRepository().clearAccounts();
+        for (int i = 1; i <= 9; i++) {
+            accountsService.createAccount(new Account("acc-" + i, new BigDecimal(1000)));
+        }
+    }
+
+    @Test
+    void limitsTransferRequestsOfClient() throws Exception {
+        transfer("client-1", "acc-1").andExpect(status().isCreated());
+        transfer("client-1", "acc-2").andExpect(status().isCreated());
+
+        transfer("client-1", "acc-3")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "100"));
+        transfer("client-2", "acc-3").andExpect(status().isCreated());
+    }
+
+    @Test
+    void limitsTransfersFromAccount() throws Exception {
+        transfer("client-3", "acc-4").andExpect(status().isCreated());
+
+        transfer("client-4", "acc-4")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "100"));
+    }
+
+    @Test
+    void limitsTransferRequestsInFlight() throws Exception {
+        // target-throughput * target-latency admits a single request in flight.
+        transferAdmission.enter();
+        try {
+            transfer("client-5", "acc-5")
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        } finally {
+            transferAdmission.leave();
+        }
+
+        transfer("client-5", "acc-5").andExpect(status().isCreated());
+    }
+
+    @Test
+    void limitsClientsByRemoteAddressWhateverHeadersTheySend() throws Exception {
+        transfer("client-6", "acc-6", "X-Client-Id", "a").andExpect(status().isCreated());
+        transfer("client-6", "acc-7", "X-Client-Id", "b").andExpect(status().isCreated());
+
+        transfer("client-6", "acc-8", "X-Client-Id", "c").andExpect(status().isTooManyRequests());
+        // Only a node holding the cluster secret is trusted to have admitted a request already.
+        transfer("client-6", "acc-8", "X-Cluster-Forwarded-By", "node-a").andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void limitsBatchTransfersFromEveryDebitedAccount() throws Exception {
+        this.mockMvc.perform(post("/v1/transfers/batch")
+                        .with(remoteAddress("client-7"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":["
+                                + "{\"account_id_from\":\"acc-9\",\"account_id_to\":\"acc-1\",\"amount\":1},"
+                                + "{\"account_id_from\":\"acc-9\",\"account_id_to\":\"acc-2\",\"amount\":1}]}"))
+                .andExpect(status().isOk());
+
+        this.mockMvc.perform(post("/v1/transfers/batch")
+                        .with(remoteAddress("client-8"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":["
+                                + "{\"account_id_from\":\"acc-9\",\"account_id_to\":\"acc-1\",\"amount\":1}]}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "100"));
+    }
+
+    private ResultActions transfer(String clientAddress, String accountIdFrom, String... headers) throws Exception {
+        String accountIdTo = accountIdFrom.equals("acc-1") ? "acc-2" : "acc-1";
+        MockHttpServletRequestBuilder request = post("/v1/transfers")
+                .with(remoteAddress(clientAddress))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"account_id_from\":\"" + accountIdFrom + "\",\"account_id_to\":\"" + accountIdTo + "\",\"amount\":1}");
+        for (int i = 0; i < headers.length; i += 2) {
+            request.header(headers[i], headers[i + 1]);
+        }
+        return this.mockMvc.perform(request);
+    }
+
+    private static RequestPostProcessor remoteAddress(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.TransferResponse;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.NotificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+
+import static com.dws.challenge.util.JsonUtil.toObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"challenge.web.execution-mode=async", "challenge.transfer.engine=sharded"})
+@WebAppConfiguration
+class AsyncTransferControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+    @Autowired
+    private AccountsService accountsService;
+    @MockBean(answer = Answers.CALLS_REAL_METHODS)
+    private NotificationService notificationService;
+
+    private Account account1;
+    private Account account2;
+
+    @BeforeEach
+    void setUp() {
+        this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+        accountsService.getAccountsRepository().clearAccounts();
+
+        account1 = new Account("acc-1", new BigDecimal(1000));
+        account2 = new Account("acc-2", new BigDecimal(1000));
+        this.accountsService.createAccount(account1);
+        this.accountsService.createAccount(account2);
+    }
+
+    @Test
+    void executeTransfer() throws Exception {
+        // act
+        var started = this.mockMvc.perform(post("/v1/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":250}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        var mvcResult = this.mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        var transferResponse = toObject(mvcResult.getResponse().getContentAsString(), TransferResponse.class);
+
+        // assert
+        assertNotNull(transferResponse.getTransferId());
+        assertEquals(new BigDecimal(250), transferResponse.getAmount());
+        assertEquals(new BigDecimal(750), accountsService.getAccount("acc-1").getBalance());
+        assertEquals(new BigDecimal(1250), accountsService.getAccount("acc-2").getBalance());
+        verify(notificationService).notifyAboutTransfer(account1, "Successfully transfer 250 from your account to acc-2");
+        verify(notificationService).notifyAboutTransfer(account2, "Successfully received 250 on your account from acc-1");
+    }
+
+    @Test
+    void executeTransferAmountBiggerThanActual() throws Exception {
+        var started = this.mockMvc.perform(post("/v1/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":999999}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void executeTransferNonExistingAccountIsRejectedBeforeGoingAsync() throws Exception {
+        this.mockMvc.perform(post("/v1/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"account_id_from\":\"non-existing\",\"account_id_to\":\"acc-2\",\"amount\":1000}"))
+                .andExpect(status().isBadRequest());
+    }
+}
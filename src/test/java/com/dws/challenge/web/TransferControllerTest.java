@@ -1,6 +1,9 @@
 package com.dws.challenge.web;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.BatchTransferResponse;
+import com.dws.challenge.dto.BatchTransferResult;
+import com.dws.challenge.dto.MultiTransferResponse;
 import com.dws.challenge.dto.TransferResponse;
 import com.dws.challenge.service.AccountsService;
 import com.dws.challenge.service.NotificationService;
@@ -9,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Answers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -16,13 +20,18 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.math.BigDecimal;
 
 import static com.dws.challenge.util.JsonUtil.toObject;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -39,7 +48,7 @@ class TransferControllerTest {
     private WebApplicationContext webApplicationContext;
     @Autowired
     private AccountsService accountsService;
-    @MockBean
+    @MockBean(answer = Answers.CALLS_REAL_METHODS)
     private NotificationService notificationService;
 
     private Account account1;
@@ -195,4 +204,176 @@ class TransferControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void executeTransferWithIdempotencyKeyIsExecutedOnce() throws Exception {
+        var content = "{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":100}";
+        var mvcResult1 = this.mockMvc.perform(post("/v1/transfers")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(content))
+                .andExpect(status().isCreated())
+                .andReturn();
+        var mvcResult2 = this.mockMvc.perform(post("/v1/transfers")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(content))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        var transferResponse1 = toObject(mvcResult1.getResponse().getContentAsString(), TransferResponse.class);
+        var transferResponse2 = toObject(mvcResult2.getResponse().getContentAsString(), TransferResponse.class);
+
+        assertEquals(transferResponse1.getTransferId(), transferResponse2.getTransferId());
+        assertEquals(new BigDecimal(900), accountsService.getAccount("acc-1").getBalance());
+        assertEquals(new BigDecimal(1100), accountsService.getAccount("acc-2").getBalance());
+    }
+
+    @Test
+    void executeTransferWithIdempotencyKeyOfAnotherTransfer() throws Exception {
+        this.mockMvc.perform(post("/v1/transfers")
+                        .header("Idempotency-Key", "retry-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":100}"))
+                .andExpect(status().isCreated());
+
+        this.mockMvc.perform(post("/v1/transfers")
+                        .header("Idempotency-Key", "retry-2")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":200}"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void executeBatchTransferBestEffort() throws Exception {
+        var mvcResult = this.mockMvc.perform(post("/v1/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":["
+                                + "{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":300},"
+                                + "{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":800},"
+                                + "{\"account_id_from\":\"acc-1\",\"account_id_to\":\"non-existing\",\"amount\":100},"
+                                + "{\"account_id_from\":\"acc-2\",\"account_id_to\":\"acc-1\",\"amount\":1200}]}"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        var batchResponse = toObject(mvcResult.getResponse().getContentAsString(), BatchTransferResponse.class);
+
+        assertEquals(2, batchResponse.getExecuted());
+        assertEquals(2, batchResponse.getFailed());
+        assertEquals(0, batchResponse.getAborted());
+        assertEquals(BatchTransferResult.Status.EXECUTED, batchResponse.getResults().get(0).getStatus());
+        assertEquals(BatchTransferResult.Status.FAILED, batchResponse.getResults().get(1).getStatus());
+        assertEquals(BatchTransferResult.Status.FAILED, batchResponse.getResults().get(2).getStatus());
+        assertEquals(BatchTransferResult.Status.EXECUTED, batchResponse.getResults().get(3).getStatus());
+        assertNotNull(batchResponse.getResults().get(3).getTransfer().getTransferId());
+
+        assertEquals(new BigDecimal(1900), accountsService.getAccount("acc-1").getBalance());
+        assertEquals(new BigDecimal(100), accountsService.getAccount("acc-2").getBalance());
+        verify(notificationService).notifyAboutTransfer(account1, "Successfully transfer 300 from your account to acc-2");
+        verify(notificationService).notifyAboutTransfer(account1, "Successfully received 1200 on your account from acc-2");
+    }
+
+    @Test
+    void executeBatchTransferAllOrNothing() throws Exception {
+        var mvcResult = this.mockMvc.perform(post("/v1/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\":\"ALL_OR_NOTHING\",\"transfers\":["
+                                + "{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":300},"
+                                + "{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":800}]}"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        var batchResponse = toObject(mvcResult.getResponse().getContentAsString(), BatchTransferResponse.class);
+
+        assertEquals(0, batchResponse.getExecuted());
+        assertEquals(1, batchResponse.getFailed());
+        assertEquals(1, batchResponse.getAborted());
+        assertEquals(BatchTransferResult.Status.ABORTED, batchResponse.getResults().get(0).getStatus());
+        assertEquals(BatchTransferResult.Status.FAILED, batchResponse.getResults().get(1).getStatus());
+
+        assertEquals(new BigDecimal(1000), accountsService.getAccount("acc-1").getBalance());
+        assertEquals(new BigDecimal(1000), accountsService.getAccount("acc-2").getBalance());
+        verify(notificationService, never()).notifyAboutTransfer(any(), anyString());
+    }
+
+    @Test
+    void executeBatchTransferNoTransfers() throws Exception {
+        this.mockMvc.perform(post("/v1/transfers/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"mode\":\"BEST_EFFORT\",\"transfers\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void executeMultiTransfer() throws Exception {
+        this.accountsService.createAccount(new Account("acc-3", BigDecimal.ZERO));
+
+        var mvcResult = this.mockMvc.perform(post("/v1/transfers/multi")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"account_id_from\":\"acc-1\",\"legs\":["
+                                + "{\"account_id_to\":\"acc-2\",\"amount\":300},"
+                                + "{\"account_id_to\":\"acc-3\",\"amount\":200.5},"
+                                + "{\"account_id_to\":\"acc-2\",\"amount\":100}]}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        var multiResponse = toObject(mvcResult.getResponse().getContentAsString(), MultiTransferResponse.class);
+
+        assertNotNull(multiResponse.getMultiTransferId());
+        assertEquals(new BigDecimal("600.5"), multiResponse.getTotalAmount());
+        assertEquals(3, multiResponse.getTransfers().size());
+        assertEquals("acc-3", multiResponse.getTransfers().get(1).getAccountIdTo());
+        assertEquals(3, multiResponse.getTransfers().stream().map(TransferResponse::getTransferId).distinct().count());
+
+        assertEquals(new BigDecimal("399.5"), accountsService.getAccount("acc-1").getBalance());
+        assertEquals(new BigDecimal(1400), accountsService.getAccount("acc-2").getBalance());
+        assertEquals(new BigDecimal("200.5"), accountsService.getAccount("acc-3").getBalance());
+        verify(notificationService).notifyAboutTransfer(account1, "Successfully transfer 300 from your account to acc-2");
+        verify(notificationService).notifyAboutTransfer(account2, "Successfully received 100 on your account from acc-1");
+    }
+
+    @Test
+    void executeMultiTransferExceedingTheBalanceExecutesNoLeg() throws Exception {
+        this.mockMvc.perform(post("/v1/transfers/multi")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"account_id_from\":\"acc-1\",\"legs\":["
+                                + "{\"account_id_to\":\"acc-2\",\"amount\":600},"
+                                + "{\"account_id_to\":\"acc-2\",\"amount\":600}]}"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(new BigDecimal(1000), accountsService.getAccount("acc-1").getBalance());
+        assertEquals(new BigDecimal(1000), accountsService.getAccount("acc-2").getBalance());
+        verify(notificationService, never()).notifyAboutTransfer(any(), anyString());
+    }
+
+    @Test
+    void executeMultiTransferWithAnInvalidLegIsRejectedByValidation() throws Exception {
+        var mvcResult = this.mockMvc.perform(post("/v1/transfers/multi")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"account_id_from\":\"acc-1\",\"legs\":["
+                                + "{\"account_id_to\":\"acc-2\",\"amount\":1},"
+                                + "{\"account_id_to\":\"\",\"amount\":-1}]}"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        assertInstanceOf(MethodArgumentNotValidException.class, mvcResult.getResolvedException());
+        assertEquals(new BigDecimal(1000), accountsService.getAccount("acc-1").getBalance());
+        verify(notificationService, never()).notifyAboutTransfer(any(), anyString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"account_id_from\":\"acc-1\",\"legs\":[]}",
+            "{\"account_id_from\":\"acc-1\",\"legs\":[{\"account_id_to\":\"acc-1\",\"amount\":1}]}",
+            "{\"account_id_from\":\"acc-1\",\"legs\":[{\"account_id_to\":\"non-existing\",\"amount\":1}]}",
+            "{\"account_id_from\":\"acc-1\",\"legs\":[{\"account_id_to\":\"acc-2\",\"amount\":0}]}"
+    })
+    void executeMultiTransferInvalidInput(String content) throws Exception {
+        this.mockMvc.perform(post("/v1/transfers/multi")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(content))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(new BigDecimal(1000), accountsService.getAccount("acc-1").getBalance());
+    }
+
 }
@@ -0,0 +1,79 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferJsonCodecTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final TransferJsonCodec underTest = new TransferJsonCodec(objectMapper.getFactory());
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"account_id_from\":\"acc-1\",\"account_id_to\":\"acc-2\",\"amount\":200.50}",
+            "{\"amount\":\"200.50\",\"unknown\":{\"nested\":[1,2]},\"account_id_to\":\"acc-2\",\"account_id_from\":\"acc-1\"}",
+            " {\"account_id_from\" : \"acc-1\", \"account_id_to\" : \"acc-2\", \"amount\" : 2.0050e2} "
+    })
+    void readsRequestLikeObjectMapper(String json) throws Exception {
+        TransferRequest request = underTest.readRequest(json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(objectMapper.readValue(json, TransferRequest.class), request);
+        assertEquals("acc-1", request.getAccountIdFrom());
+        assertEquals(0, new BigDecimal("200.5").compareTo(request.getAmount()));
+    }
+
+    @Test
+    void readsMissingAndNullPropertiesAsNull() throws Exception {
+        TransferRequest request = underTest.readRequest("{\"account_id_from\":null,\"amount\":null}".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(request.getAccountIdFrom());
+        assertNull(request.getAccountIdTo());
+        assertNull(request.getAmount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "[]",
+            "{\"account_id_from\":\"acc-1\"",
+            "{\"account_id_from\":{\"id\":\"acc-1\"}}",
+            "{\"amount\":\"a lot\"}",
+            "{\"amount\":true}"
+    })
+    void rejectsMalformedRequest(String json) {
+        assertThrows(JsonProcessingException.class, () -> underTest.readRequest(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void writesResponseLikeObjectMapper() throws Exception {
+        var response = TransferResponse.builder()
+                .transferId(UUID.randomUUID())
+                .accountIdFrom("acc-\"1\"")
+                .accountIdTo("acc-2")
+                .amount(new BigDecimal("0.5"))
+                .build();
+        var out = new ByteArrayOutputStream();
+
+        underTest.writeResponse(response, out);
+
+        assertEquals(objectMapper.writeValueAsString(response), out.toString(StandardCharsets.UTF_8));
+        out.reset();
+        underTest.writeResponse(new TransferResponse(), out);
+        assertEquals(objectMapper.writeValueAsString(new TransferResponse()), out.toString(StandardCharsets.UTF_8));
+    }
+}